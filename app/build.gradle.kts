@@ -44,6 +44,7 @@ android {
 
 dependencies {
 
+    implementation(project(":duplicates-core"))
     implementation(libs.appcompat)
     implementation(libs.material)
     implementation(libs.constraintlayout)
@@ -4,9 +4,16 @@ import android.app.Activity;
 import android.app.Application;
 import android.os.Bundle;
 import android.content.SharedPreferences;
+import android.util.Log;
 
 import androidx.appcompat.app.AppCompatDelegate;
 
+import com.bretttech.gallery.data.MediaCatalog;
+import com.bretttech.gallery.utils.MediaMover;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 public class GalleryApplication extends Application {
 
     public static boolean isSecureFolderUnlocked = false;
@@ -22,6 +29,8 @@ public class GalleryApplication extends Application {
         int themeMode = prefs.getInt(SettingsActivity.KEY_THEME, AppCompatDelegate.MODE_NIGHT_FOLLOW_SYSTEM);
         AppCompatDelegate.setDefaultNightMode(themeMode);
 
+        resumeInterruptedMoves();
+
         // Register lifecycle callbacks to detect app foreground/background changes instantly
         registerActivityLifecycleCallbacks(new ActivityLifecycleCallbacks() {
 
@@ -50,4 +59,23 @@ public class GalleryApplication extends Application {
             @Override public void onActivityDestroyed(Activity activity) {}
         });
     }
+
+    /**
+     * Finishes album moves the last process was killed in the middle of, from where each file got to.
+     */
+    private void resumeInterruptedMoves() {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        executor.execute(() -> {
+            try {
+                if (new MediaMover(this).resumeInterrupted() > 0) {
+                    MediaCatalog.getInstance(this).invalidate();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                Log.e("GalleryApplication", "Error resuming interrupted moves", e);
+            }
+        });
+        executor.shutdown();
+    }
 }
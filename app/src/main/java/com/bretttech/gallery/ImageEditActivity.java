@@ -49,6 +49,7 @@ import androidx.exifinterface.media.ExifInterface;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
+import com.bretttech.gallery.data.MediaCatalog;
 import com.bretttech.gallery.filters.FilterListener;
 import com.bretttech.gallery.filters.FilterViewAdapter;
 import com.bretttech.gallery.text.ColorPickerAdapter;
@@ -607,6 +608,7 @@ public class ImageEditActivity extends AppCompatActivity implements OnPhotoEdito
                 values.put(MediaStore.Images.Media.IS_PENDING, 0);
             }
             resolver.update(uri, values, null, null);
+            MediaCatalog.getInstance(this).invalidate();
 
             runOnUiThread(() -> {
                 setResult(Activity.RESULT_OK);
@@ -35,6 +35,7 @@ import androidx.lifecycle.ViewModelProvider;
 import androidx.viewpager2.widget.ViewPager2;
 
 import com.bretttech.gallery.data.FavoritesManager;
+import com.bretttech.gallery.data.MediaCatalog;
 import com.bretttech.gallery.ui.pictures.Image;
 import com.bretttech.gallery.ui.pictures.MoveToAlbumDialogFragment;
 
@@ -146,6 +147,7 @@ public class PhotoViewActivity extends AppCompatActivity implements PhotoPagerAd
                 new ActivityResultContracts.StartActivityForResult(),
                 result -> {
                     if (result.getResultCode() == Activity.RESULT_OK) {
+                        MediaCatalog.getInstance(this).invalidate();
                         sharedViewModel.requestRefresh();
                         int currentItem = viewPager.getCurrentItem();
                         if (adapter != null) {
@@ -465,6 +467,7 @@ public class PhotoViewActivity extends AppCompatActivity implements PhotoPagerAd
     }
 
     private void removeCurrentImageFromPager() {
+        MediaCatalog.getInstance(this).invalidate();
         int currentPosition = viewPager.getCurrentItem();
         if (currentPosition < imageUris.size()) {
             imageUris.remove(currentPosition);
@@ -33,6 +33,7 @@ import androidx.core.view.WindowInsetsControllerCompat;
 import androidx.core.view.ViewCompat;
 import androidx.core.graphics.Insets;
 
+import com.bretttech.gallery.data.MediaCatalog;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
 
 import java.io.IOException;
@@ -267,6 +268,7 @@ public class VideoPlayerActivity extends AppCompatActivity {
         values.put(MediaStore.Images.Media.RELATIVE_PATH, Environment.DIRECTORY_PICTURES + "/GalleryApp");
 
         Uri uri = getContentResolver().insert(MediaStore.Images.Media.EXTERNAL_CONTENT_URI, values);
+        MediaCatalog.getInstance(this).invalidate();
         if (uri != null) {
             try (OutputStream outputStream = getContentResolver().openOutputStream(uri)) {
                 bitmap.compress(Bitmap.CompressFormat.PNG, 100, outputStream);
@@ -0,0 +1,170 @@
+package com.bretttech.gallery.data;
+
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * The distinct local days a library spans, each with its "yyyy-MM-dd" key
+ * formatted once. Date search turns a query into second ranges over these days.
+ * Testing an item is then a binary search on its DATE_ADDED, with no
+ * formatting or allocation per item.
+ */
+public final class DateIndex {
+
+    // Queries that are a leading part of a yyyy-MM-dd key map to one contiguous run of days.
+    private static final Pattern DATE_PREFIX = Pattern.compile("\\d{4}(-\\d{0,2}(-\\d{0,2})?)?");
+
+    private final long[] dayStarts; // ascending, seconds
+    private final long[] dayEnds; // exclusive, seconds
+    private final String[] dayKeys; // ascending, so also lexicographically sorted
+
+    private DateIndex(long[] dayStarts, long[] dayEnds, String[] dayKeys) {
+        this.dayStarts = dayStarts;
+        this.dayEnds = dayEnds;
+        this.dayKeys = dayKeys;
+    }
+
+    /**
+     * Builds the index from DATE_ADDED values sorted newest first, as a
+     * {@link MediaCatalog.Snapshot} stores them. Only one Calendar computation
+     * and one format call happen per distinct day.
+     */
+    static DateIndex fromDescendingSeconds(long[] datesAdded, int count) {
+        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault());
+        Calendar calendar = Calendar.getInstance();
+        long[] starts = new long[16];
+        long[] ends = new long[16];
+        String[] keys = new String[16];
+        int days = 0;
+        long currentStart = Long.MAX_VALUE;
+
+        for (int i = 0; i < count; i++) {
+            long seconds = datesAdded[i];
+            if (seconds >= currentStart) {
+                continue; // Same day as the previous row.
+            }
+            calendar.setTimeInMillis(seconds * 1000L);
+            calendar.set(Calendar.HOUR_OF_DAY, 0);
+            calendar.set(Calendar.MINUTE, 0);
+            calendar.set(Calendar.SECOND, 0);
+            calendar.set(Calendar.MILLISECOND, 0);
+            currentStart = calendar.getTimeInMillis() / 1000L;
+            calendar.add(Calendar.DAY_OF_MONTH, 1);
+            long end = calendar.getTimeInMillis() / 1000L;
+
+            if (days == starts.length) {
+                starts = Arrays.copyOf(starts, days * 2);
+                ends = Arrays.copyOf(ends, days * 2);
+                keys = Arrays.copyOf(keys, days * 2);
+            }
+            starts[days] = currentStart;
+            ends[days] = end;
+            keys[days] = sdf.format(new Date(currentStart * 1000L));
+            days++;
+        }
+
+        // Collected newest first; store ascending so binary searches read naturally.
+        long[] ascStarts = new long[days];
+        long[] ascEnds = new long[days];
+        String[] ascKeys = new String[days];
+        for (int i = 0; i < days; i++) {
+            ascStarts[i] = starts[days - 1 - i];
+            ascEnds[i] = ends[days - 1 - i];
+            ascKeys[i] = keys[days - 1 - i];
+        }
+        return new DateIndex(ascStarts, ascEnds, ascKeys);
+    }
+
+    /**
+     * Returns the time ranges whose "yyyy-MM-dd" key contains {@code lowerCaseQuery}.
+     */
+    public Ranges match(String lowerCaseQuery) {
+        if (lowerCaseQuery.isEmpty() || dayKeys.length == 0) {
+            return Ranges.EMPTY;
+        }
+        if (DATE_PREFIX.matcher(lowerCaseQuery).matches()) {
+            // Keys sort chronologically and the year only appears at the start, so this is one run.
+            int first = lowerBound(lowerCaseQuery);
+            int last = lowerBound(lowerCaseQuery + '\uffff');
+            if (first >= last) {
+                return Ranges.EMPTY;
+            }
+            return new Ranges(new long[] { dayStarts[first] }, new long[] { dayEnds[last - 1] });
+        }
+
+        long[] from = new long[8];
+        long[] to = new long[8];
+        int ranges = 0;
+        for (int day = 0; day < dayKeys.length; day++) {
+            if (!dayKeys[day].contains(lowerCaseQuery)) {
+                continue;
+            }
+            if (ranges > 0 && to[ranges - 1] >= dayStarts[day]) {
+                to[ranges - 1] = dayEnds[day]; // Adjacent day, extend the run.
+                continue;
+            }
+            if (ranges == from.length) {
+                from = Arrays.copyOf(from, ranges * 2);
+                to = Arrays.copyOf(to, ranges * 2);
+            }
+            from[ranges] = dayStarts[day];
+            to[ranges] = dayEnds[day];
+            ranges++;
+        }
+        return ranges == 0 ? Ranges.EMPTY : new Ranges(Arrays.copyOf(from, ranges), Arrays.copyOf(to, ranges));
+    }
+
+    private int lowerBound(String key) {
+        int low = 0;
+        int high = dayKeys.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (dayKeys[mid].compareTo(key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Sorted, non-overlapping [from, to) second ranges.
+     */
+    public static final class Ranges {
+        static final Ranges EMPTY = new Ranges(new long[0], new long[0]);
+
+        private final long[] from;
+        private final long[] to;
+
+        Ranges(long[] from, long[] to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        public boolean isEmpty() {
+            return from.length == 0;
+        }
+
+        public boolean contains(long seconds) {
+            // Last range starting at or before the timestamp.
+            int low = 0;
+            int high = from.length - 1;
+            int candidate = -1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (from[mid] <= seconds) {
+                    candidate = mid;
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return candidate >= 0 && seconds < to[candidate];
+        }
+    }
+}
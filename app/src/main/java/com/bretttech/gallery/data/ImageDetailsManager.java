@@ -4,18 +4,21 @@ import android.content.Context;
 import android.content.SharedPreferences;
 import android.net.Uri;
 import com.google.gson.Gson;
+import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
 public class ImageDetailsManager {
 
-    private static final String PREFS_NAME = "gallery_image_details";
+    static final String PREFS_NAME = "gallery_image_details";
     private final SharedPreferences sharedPreferences;
+    private final TagIndex tagIndex;
     private final Gson gson = new Gson();
     private final ExecutorService executor = Executors.newSingleThreadExecutor();
 
     public ImageDetailsManager(Context context) {
         sharedPreferences = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        tagIndex = TagIndex.getInstance(context);
     }
 
     public void getImageDetails(Uri imageUri, DetailsCallback callback) {
@@ -35,9 +38,18 @@ public class ImageDetailsManager {
         executor.execute(() -> {
             String json = gson.toJson(details);
             sharedPreferences.edit().putString(imageUri.toString(), json).apply();
+            tagIndex.setTags(imageUri.toString(), details.getTags());
         });
     }
 
+    /**
+     * Returns the URI strings of all images with a tag containing {@code query},
+     * ignoring case. Backed by {@link TagIndex}; call from a background thread.
+     */
+    public Set<String> findImagesWithTagContaining(String query) {
+        return tagIndex.findUrisWithTagContaining(query);
+    }
+
     public interface DetailsCallback {
         void onDetailsLoaded(ImageDetails details);
     }
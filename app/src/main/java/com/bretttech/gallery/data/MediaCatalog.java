@@ -0,0 +1,1109 @@
+package com.bretttech.gallery.data;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.Context;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.provider.MediaStore;
+import android.util.Log;
+
+import com.bretttech.gallery.ui.pictures.Image;
+import com.bretttech.gallery.ui.pictures.MediaList;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Process-wide, in-memory snapshot of every image and video in MediaStore.
+ * The library is read with a single cursor walk into parallel arrays, and the
+ * ViewModels slice it by bucket, date range or media type instead of running
+ * their own queries.
+ *
+ * After the first load the catalog only fetches rows that changed: on Android R+
+ * it remembers the highest GENERATION_MODIFIED it has seen (DATE_MODIFIED /
+ * DATE_ADDED below that) and falls back to a full reload only when
+ * MediaStore.getVersion changes. Each synced snapshot carries the {@link Delta}
+ * from its parent so consumers can patch their lists instead of rebuilding them.
+ *
+ * While anyone is listening, a ContentObserver on the Files table coalesces
+ * bursts of change notifications into one delta sync and hands every new
+ * snapshot to the registered {@link Listener}s.
+ */
+public class MediaCatalog {
+
+    private static final String TAG = "MediaCatalog";
+    // Wait for this much quiet before syncing, but never hold changes back longer than MAX_DELAY_MS.
+    private static final long DEBOUNCE_MS = 300;
+    private static final long MAX_DELAY_MS = 2000;
+
+    // Snapshot order. _ID breaks ties so paged queries can seek on (DATE_ADDED, _ID).
+    private static final String NEWEST_FIRST = MediaStore.Files.FileColumns.DATE_ADDED + " DESC, "
+            + MediaStore.Files.FileColumns._ID + " DESC";
+    private static final String OLDEST_FIRST = MediaStore.Files.FileColumns.DATE_ADDED + " ASC, "
+            + MediaStore.Files.FileColumns._ID + " ASC";
+
+    private static volatile MediaCatalog instance;
+
+    private final Context context;
+    private final Object loadLock = new Object();
+    private volatile Snapshot snapshot;
+    private volatile boolean stale = false;
+    private long nextSnapshotVersion = 1;
+
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService syncExecutor = Executors.newSingleThreadExecutor();
+    private final Runnable debouncedSync = this::onDebounceElapsed;
+    private long firstPendingChangeAt = 0;
+    private boolean observerRegistered = false;
+
+    private final ContentObserver mediaObserver = new ContentObserver(mainHandler) {
+        @Override
+        public void onChange(boolean selfChange) {
+            scheduleSync();
+        }
+    };
+
+    public interface Listener {
+        /**
+         * Called on a background thread for every new snapshot, in the order they
+         * were built, so each one is a child of the previous. Implementations should
+         * only hand the snapshot to their own executor.
+         */
+        void onSnapshotChanged(Snapshot snapshot);
+    }
+
+    private MediaCatalog(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    public static MediaCatalog getInstance(Context context) {
+        if (instance == null) {
+            synchronized (MediaCatalog.class) {
+                if (instance == null) {
+                    instance = new MediaCatalog(context);
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Whether a snapshot has been loaded, so {@link #getSnapshot()} won't run a full query.
+     */
+    public boolean hasSnapshot() {
+        return snapshot != null;
+    }
+
+    /**
+     * Returns the current snapshot, loading it or syncing it first if needed.
+     * Blocks while another thread is loading, so never call this on the main thread.
+     */
+    public Snapshot getSnapshot() {
+        Snapshot current = snapshot;
+        if (current != null && !stale) {
+            return current;
+        }
+        return sync();
+    }
+
+    /**
+     * Checks MediaStore for changes since the last load and returns the up-to-date
+     * snapshot. If nothing changed the returned snapshot has the same
+     * {@link Snapshot#getVersion()}, so callers can skip their own work.
+     */
+    public Snapshot sync() {
+        synchronized (loadLock) {
+            // Cleared before querying so an invalidate() that races with us triggers another sync.
+            stale = false;
+            Snapshot current = snapshot;
+            String version = getMediaStoreVersion();
+            if (current == null || !current.mediaStoreVersion.equals(version)) {
+                snapshot = queryAll(version);
+            } else {
+                Snapshot updated = queryDelta(current);
+                if (updated != null) {
+                    snapshot = updated;
+                }
+            }
+            // Dispatched under the lock so listeners see snapshots in build order.
+            if (current == null || snapshot.version != current.version) {
+                for (Listener listener : listeners) {
+                    listener.onSnapshotChanged(snapshot);
+                }
+            }
+            return snapshot;
+        }
+    }
+
+    /**
+     * Marks the snapshot as out of date after this app changed MediaStore.
+     * The next read fetches just the changed rows.
+     */
+    public void invalidate() {
+        stale = true;
+    }
+
+    /**
+     * Registers a listener for new snapshots. The MediaStore observer is active
+     * for as long as at least one listener is registered.
+     */
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+        mainHandler.post(this::updateObserverRegistration);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+        mainHandler.post(this::updateObserverRegistration);
+    }
+
+    private void updateObserverRegistration() {
+        boolean shouldObserve = !listeners.isEmpty();
+        if (shouldObserve == observerRegistered) {
+            return;
+        }
+        ContentResolver resolver = context.getContentResolver();
+        if (shouldObserve) {
+            resolver.registerContentObserver(MediaStore.Files.getContentUri("external"), true, mediaObserver);
+        } else {
+            resolver.unregisterContentObserver(mediaObserver);
+            mainHandler.removeCallbacks(debouncedSync);
+            firstPendingChangeAt = 0;
+        }
+        observerRegistered = shouldObserve;
+    }
+
+    // Runs on the main thread; a burst of notifications keeps pushing the sync back.
+    private void scheduleSync() {
+        long now = SystemClock.uptimeMillis();
+        if (firstPendingChangeAt == 0) {
+            firstPendingChangeAt = now;
+        }
+        long delay = Math.min(DEBOUNCE_MS, firstPendingChangeAt + MAX_DELAY_MS - now);
+        mainHandler.removeCallbacks(debouncedSync);
+        mainHandler.postDelayed(debouncedSync, Math.max(0, delay));
+    }
+
+    private void onDebounceElapsed() {
+        firstPendingChangeAt = 0;
+        syncExecutor.execute(() -> {
+            if (snapshot == null) {
+                return; // Nothing loaded yet; the first reader will do a full load.
+            }
+            try {
+                sync();
+            } catch (Exception e) {
+                Log.e(TAG, "Error syncing after MediaStore change", e);
+            }
+        });
+    }
+
+    public MediaList getImages() {
+        return getSnapshot().getImages();
+    }
+
+    public MediaList getTrashedImages() {
+        return getSnapshot().getTrashedImages();
+    }
+
+    public MediaList getImagesOfType(int mediaType) {
+        return getSnapshot().getImagesOfType(mediaType);
+    }
+
+    public MediaList getImagesInDateRange(long fromSeconds, long toSeconds) {
+        return getSnapshot().getImagesInDateRange(fromSeconds, toSeconds);
+    }
+
+    public MediaList getImagesInBucket(long bucketId) {
+        return getSnapshot().getImagesInBucket(bucketId);
+    }
+
+    public MediaList getImagesInFolder(String folderPath) {
+        return getSnapshot().getImagesInFolder(folderPath);
+    }
+
+    /**
+     * Brings a list that was built from {@code snapshot}'s parent up to date by
+     * applying the snapshot's delta, keeping only rows accepted by {@code filter}.
+     * The result is sorted by date added, newest first.
+     */
+    public static MediaList applyDelta(List<Image> images, Snapshot snapshot, RowFilter filter) {
+        Delta delta = snapshot.getDelta();
+        long[] changedIds = new long[delta.removedIds.length + delta.updatedIds.length];
+        System.arraycopy(delta.removedIds, 0, changedIds, 0, delta.removedIds.length);
+        System.arraycopy(delta.updatedIds, 0, changedIds, delta.removedIds.length, delta.updatedIds.length);
+        Arrays.sort(changedIds);
+
+        // Snapshot rows are newest first, so sorted row numbers are already in list order.
+        int[] addedRows = new int[delta.insertedIds.length + delta.updatedIds.length];
+        int addedCount = acceptedRows(snapshot, delta.insertedIds, filter, addedRows, 0);
+        addedCount = acceptedRows(snapshot, delta.updatedIds, filter, addedRows, addedCount);
+        Arrays.sort(addedRows, 0, addedCount);
+
+        MediaList kept = images instanceof MediaList ? (MediaList) images : MediaList.copyOf(images);
+        MediaList.Builder result = new MediaList.Builder(kept.size() + addedCount);
+        int next = 0;
+        for (int i = 0; i < kept.size(); i++) {
+            long id = kept.getId(i);
+            if (id < 0) {
+                id = idOf(kept.getUri(i));
+            }
+            if (id >= 0 && Arrays.binarySearch(changedIds, id) >= 0) {
+                continue;
+            }
+            long date = kept.getDateAdded(i);
+            while (next < addedCount && snapshot.getDateAdded(addedRows[next]) > date) {
+                snapshot.addRowTo(result, addedRows[next++]);
+            }
+            result.addFrom(kept, i);
+        }
+        while (next < addedCount) {
+            snapshot.addRowTo(result, addedRows[next++]);
+        }
+        return result.build();
+    }
+
+    private static int acceptedRows(Snapshot snapshot, long[] ids, RowFilter filter, int[] out, int count) {
+        for (long id : ids) {
+            int row = snapshot.rowOf(id);
+            if (row >= 0 && filter.accept(snapshot, row)) {
+                out[count++] = row;
+            }
+        }
+        return count;
+    }
+
+    public interface RowFilter {
+        boolean accept(Snapshot snapshot, int row);
+    }
+
+    public static final RowFilter VISIBLE = (snapshot, row) -> !snapshot.isTrashed(row);
+    public static final RowFilter TRASHED = (snapshot, row) -> snapshot.isTrashed(row);
+
+    public static RowFilter inBucket(long bucketId) {
+        return (snapshot, row) -> !snapshot.isTrashed(row) && snapshot.getBucketId(row) == bucketId;
+    }
+
+    private String getMediaStoreVersion() {
+        // The version changes when the database is rebuilt, which invalidates stored generations.
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            return MediaStore.getVersion(context);
+        }
+        return "";
+    }
+
+    private Snapshot queryAll(String mediaStoreVersion) {
+        SnapshotBuilder builder = new SnapshotBuilder(new HashMap<>());
+        long syncToken;
+        try (Cursor cursor = query(null, null, true)) {
+            syncToken = builder.readRows(cursor);
+        }
+        return builder.build(nextSnapshotVersion++, 0, mediaStoreVersion, syncToken, Delta.NONE);
+    }
+
+    /**
+     * Fetches rows changed since {@code current} was built and returns the merged
+     * snapshot, or null when nothing changed.
+     */
+    private Snapshot queryDelta(Snapshot current) {
+        String changedSelection;
+        String[] changedArgs;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+            changedSelection = MediaStore.MediaColumns.GENERATION_MODIFIED + " > ?";
+            changedArgs = new String[] { String.valueOf(current.syncToken) };
+        } else {
+            // No generations before R; DATE_ADDED catches copies that keep an old DATE_MODIFIED. The dates are
+            // in seconds, so rows changed later in the token's second only match with >=; the rows that
+            // match again unchanged are dropped below.
+            changedSelection = "(" + MediaStore.MediaColumns.DATE_MODIFIED + " >= ? OR "
+                    + MediaStore.MediaColumns.DATE_ADDED + " >= ?)";
+            changedArgs = new String[] { String.valueOf(current.syncToken), String.valueOf(current.syncToken) };
+        }
+
+        SnapshotBuilder incoming = new SnapshotBuilder(new HashMap<>(current.bucketInfo));
+        long syncToken;
+        try (Cursor cursor = query(changedSelection, changedArgs, true)) {
+            syncToken = Math.max(current.syncToken, incoming.readRows(cursor));
+        }
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.R) {
+            incoming = incoming.withoutUnchanged(current);
+        }
+
+        // Deleted rows never show up in a generation query, so compare the live row count.
+        long[] liveIds = null;
+        int expectedSize = current.size;
+        for (int i = 0; i < incoming.size; i++) {
+            if (current.rowOf(incoming.ids[i]) < 0) {
+                expectedSize++;
+            }
+        }
+        try (Cursor cursor = query(null, null, false)) {
+            if (cursor != null && cursor.getCount() != expectedSize) {
+                liveIds = new long[cursor.getCount()];
+                int count = 0;
+                int idColumn = cursor.getColumnIndexOrThrow(MediaStore.Files.FileColumns._ID);
+                while (cursor.moveToNext() && count < liveIds.length) {
+                    liveIds[count++] = cursor.getLong(idColumn);
+                }
+                liveIds = Arrays.copyOf(liveIds, count);
+                Arrays.sort(liveIds);
+            }
+        }
+
+        if (incoming.size == 0 && liveIds == null) {
+            return null;
+        }
+
+        Set<Long> incomingIds = new HashSet<>();
+        List<Long> inserted = new ArrayList<>();
+        List<Long> updated = new ArrayList<>();
+        for (int i = 0; i < incoming.size; i++) {
+            long id = incoming.ids[i];
+            incomingIds.add(id);
+            if (current.rowOf(id) >= 0) {
+                updated.add(id);
+            } else {
+                inserted.add(id);
+            }
+        }
+        List<Long> removed = new ArrayList<>();
+        if (liveIds != null) {
+            for (int row = 0; row < current.size; row++) {
+                long id = current.ids[row];
+                if (!incomingIds.contains(id) && Arrays.binarySearch(liveIds, id) < 0) {
+                    removed.add(id);
+                }
+            }
+        }
+        if (inserted.isEmpty() && updated.isEmpty() && removed.isEmpty()) {
+            return current.withSyncToken(syncToken);
+        }
+
+        // Both sides are sorted newest first, so a single merge keeps the snapshot ordered.
+        Set<Long> removedIds = new HashSet<>(removed);
+        SnapshotBuilder merged = new SnapshotBuilder(incoming.bucketInfo);
+        int oldRow = 0;
+        int newRow = 0;
+        while (oldRow < current.size || newRow < incoming.size) {
+            if (oldRow < current.size) {
+                long id = current.ids[oldRow];
+                if (incomingIds.contains(id) || removedIds.contains(id)) {
+                    oldRow++;
+                    continue;
+                }
+            }
+            // Same order as NEWEST_FIRST: date added, then _ID, both descending
+            boolean takeOld = newRow >= incoming.size
+                    || (oldRow < current.size && (current.datesAdded[oldRow] > incoming.datesAdded[newRow]
+                            || (current.datesAdded[oldRow] == incoming.datesAdded[newRow]
+                                    && current.ids[oldRow] > incoming.ids[newRow])));
+            if (takeOld) {
+                merged.copyRow(current.ids, current.mediaTypes, current.bucketIds, current.datesAdded,
+                        current.displayNames, current.trashed, oldRow++);
+            } else {
+                merged.copyRow(incoming.ids, incoming.mediaTypes, incoming.bucketIds, incoming.datesAdded,
+                        incoming.displayNames, incoming.trashed, newRow++);
+            }
+        }
+
+        Delta delta = new Delta(toArray(inserted), toArray(updated), toArray(removed));
+        return merged.build(nextSnapshotVersion++, current.version, current.mediaStoreVersion, syncToken, delta);
+    }
+
+    private Cursor query(String extraSelection, String[] extraArgs, boolean fullProjection) {
+        ContentResolver resolver = context.getContentResolver();
+        Uri queryUri = MediaStore.Files.getContentUri("external");
+
+        List<String> projection = new ArrayList<>();
+        projection.add(MediaStore.Files.FileColumns._ID);
+        if (fullProjection) {
+            projection.addAll(Arrays.asList(
+                    MediaStore.Files.FileColumns.MEDIA_TYPE,
+                    MediaStore.Files.FileColumns.DATA,
+                    MediaStore.Files.FileColumns.DATE_ADDED,
+                    MediaStore.Files.FileColumns.DATE_MODIFIED,
+                    MediaStore.Files.FileColumns.DISPLAY_NAME,
+                    MediaStore.Files.FileColumns.BUCKET_DISPLAY_NAME,
+                    Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q
+                            ? MediaStore.Files.FileColumns.BUCKET_ID
+                            : "bucket_id")); // Literal string for pre-Q
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+                projection.add(MediaStore.MediaColumns.IS_TRASHED);
+                projection.add(MediaStore.MediaColumns.GENERATION_MODIFIED);
+            }
+        }
+
+        List<String> selectionArgs = new ArrayList<>();
+        String selection = baseSelection(selectionArgs);
+        if (extraSelection != null) {
+            selection += " AND " + extraSelection;
+            selectionArgs.addAll(Arrays.asList(extraArgs));
+        }
+        String sortOrder = fullProjection ? NEWEST_FIRST : null;
+
+        String[] projectionArray = projection.toArray(new String[0]);
+        String[] argsArray = selectionArgs.toArray(new String[0]);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+            // Include trashed rows so the Trash screen can be served from the same snapshot.
+            Bundle queryArgs = new Bundle();
+            queryArgs.putString(ContentResolver.QUERY_ARG_SQL_SELECTION, selection);
+            queryArgs.putStringArray(ContentResolver.QUERY_ARG_SQL_SELECTION_ARGS, argsArray);
+            if (sortOrder != null) {
+                queryArgs.putString(ContentResolver.QUERY_ARG_SQL_SORT_ORDER, sortOrder);
+            }
+            queryArgs.putInt(MediaStore.QUERY_ARG_MATCH_TRASHED, MediaStore.MATCH_INCLUDE);
+            return resolver.query(queryUri, projectionArray, queryArgs, null);
+        }
+        return resolver.query(queryUri, projectionArray, selection, argsArray, sortOrder);
+    }
+
+    // Images and videos outside the secure folder.
+    private String baseSelection(List<String> selectionArgs) {
+        String securePathPrefix = context.getFilesDir().getAbsolutePath() + File.separator + "secure";
+        selectionArgs.addAll(Arrays.asList(
+                String.valueOf(MediaStore.Files.FileColumns.MEDIA_TYPE_IMAGE),
+                String.valueOf(MediaStore.Files.FileColumns.MEDIA_TYPE_VIDEO),
+                "%" + securePathPrefix + "%"));
+        return MediaStore.Files.FileColumns.MEDIA_TYPE + " IN (?, ?) AND "
+                + MediaStore.Files.FileColumns.DATA + " NOT LIKE ?";
+    }
+
+    /**
+     * Counts the visible (not trashed) items with an _ID-only query.
+     */
+    int queryVisibleCount() {
+        try (Cursor cursor = queryVisible(new String[] { MediaStore.Files.FileColumns._ID }, null, null, null, 0, 0)) {
+            return cursor != null ? cursor.getCount() : 0;
+        }
+    }
+
+    /**
+     * Reads up to {@code limit} visible items straight from MediaStore, newest
+     * first in snapshot order, without loading a snapshot. With a key row
+     * ({@code keyId >= 0}) the page continues from that row, older or newer,
+     * using an indexed seek. Without one it starts at {@code offset}.
+     */
+    MediaList queryVisiblePage(long keyDate, long keyId, boolean older, int offset, int limit) {
+        String keyset = null;
+        String[] keysetArgs = null;
+        String sortOrder = NEWEST_FIRST;
+        if (keyId >= 0) {
+            String op = older ? "<" : ">";
+            keyset = "(" + MediaStore.Files.FileColumns.DATE_ADDED + " " + op + " ? OR ("
+                    + MediaStore.Files.FileColumns.DATE_ADDED + " = ? AND "
+                    + MediaStore.Files.FileColumns._ID + " " + op + " ?))";
+            keysetArgs = new String[] { String.valueOf(keyDate), String.valueOf(keyDate), String.valueOf(keyId) };
+            offset = 0;
+            if (!older) {
+                sortOrder = OLDEST_FIRST; // Nearest newer rows first; reversed below.
+            }
+        }
+
+        String[] projection = {
+                MediaStore.Files.FileColumns._ID,
+                MediaStore.Files.FileColumns.MEDIA_TYPE,
+                MediaStore.Files.FileColumns.DISPLAY_NAME,
+                MediaStore.Files.FileColumns.DATE_ADDED };
+        MediaList.Builder builder = new MediaList.Builder(limit);
+        try (Cursor cursor = queryVisible(projection, keyset, keysetArgs, sortOrder, offset, limit)) {
+            if (cursor == null) {
+                return builder.build();
+            }
+            int idColumn = cursor.getColumnIndexOrThrow(MediaStore.Files.FileColumns._ID);
+            int mediaTypeColumn = cursor.getColumnIndexOrThrow(MediaStore.Files.FileColumns.MEDIA_TYPE);
+            int displayNameColumn = cursor.getColumnIndexOrThrow(MediaStore.Files.FileColumns.DISPLAY_NAME);
+            int dateAddedColumn = cursor.getColumnIndexOrThrow(MediaStore.Files.FileColumns.DATE_ADDED);
+            while (cursor.moveToNext()) {
+                builder.add(cursor.getLong(idColumn), cursor.getInt(mediaTypeColumn),
+                        cursor.getString(displayNameColumn), cursor.getLong(dateAddedColumn));
+            }
+        }
+        MediaList page = builder.build();
+        return OLDEST_FIRST.equals(sortOrder) ? page.reversed() : page;
+    }
+
+    private Cursor queryVisible(String[] projection, String extraSelection, String[] extraArgs, String sortOrder,
+            int offset, int limit) {
+        ContentResolver resolver = context.getContentResolver();
+        Uri queryUri = MediaStore.Files.getContentUri("external");
+        List<String> selectionArgs = new ArrayList<>();
+        String selection = baseSelection(selectionArgs);
+        if (extraSelection != null) {
+            selection += " AND " + extraSelection;
+            selectionArgs.addAll(Arrays.asList(extraArgs));
+        }
+        String[] argsArray = selectionArgs.toArray(new String[0]);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+            // Trashed rows are excluded by default here.
+            Bundle queryArgs = new Bundle();
+            queryArgs.putString(ContentResolver.QUERY_ARG_SQL_SELECTION, selection);
+            queryArgs.putStringArray(ContentResolver.QUERY_ARG_SQL_SELECTION_ARGS, argsArray);
+            if (sortOrder != null) {
+                queryArgs.putString(ContentResolver.QUERY_ARG_SQL_SORT_ORDER, sortOrder);
+            }
+            if (limit > 0) {
+                queryArgs.putInt(ContentResolver.QUERY_ARG_LIMIT, limit);
+                queryArgs.putInt(ContentResolver.QUERY_ARG_OFFSET, offset);
+            }
+            return resolver.query(queryUri, projection, queryArgs, null);
+        }
+        if (sortOrder != null && limit > 0) {
+            // Older MediaStore versions pass the sort order through to SQL, which is the only way to page.
+            sortOrder += " LIMIT " + limit + " OFFSET " + offset;
+        }
+        return resolver.query(queryUri, projection, selection, argsArray, sortOrder);
+    }
+
+    private static long[] toArray(List<Long> values) {
+        long[] result = new long[values.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = values.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * Ids that changed between a snapshot and its parent. Updated rows include
+     * trash/restore and renames; removed rows were deleted from MediaStore.
+     */
+    public static final class Delta {
+        static final Delta NONE = new Delta(new long[0], new long[0], new long[0]);
+
+        private final long[] insertedIds;
+        private final long[] updatedIds;
+        private final long[] removedIds;
+
+        Delta(long[] insertedIds, long[] updatedIds, long[] removedIds) {
+            this.insertedIds = insertedIds;
+            this.updatedIds = updatedIds;
+            this.removedIds = removedIds;
+        }
+
+        public long[] getInsertedIds() {
+            return insertedIds;
+        }
+
+        public long[] getUpdatedIds() {
+            return updatedIds;
+        }
+
+        public long[] getRemovedIds() {
+            return removedIds;
+        }
+
+        public boolean isEmpty() {
+            return insertedIds.length == 0 && updatedIds.length == 0 && removedIds.length == 0;
+        }
+    }
+
+    /**
+     * Immutable columnar view of the library, sorted by DATE_ADDED descending.
+     * Rows are addressed by index; {@link Bucket}s hold the row indices of their
+     * non-trashed items.
+     */
+    public static final class Snapshot {
+        // Row indices are packed below the id in the lookup index; 2^24 rows is far above any real library.
+        private static final int ROW_BITS = 24;
+
+        private final long version;
+        private final long parentVersion;
+        private final String mediaStoreVersion;
+        private final long syncToken;
+        private final Delta delta;
+
+        private final int size;
+        private final long[] ids;
+        private final int[] mediaTypes;
+        private final long[] bucketIds;
+        private final long[] datesAdded;
+        private final String[] displayNames;
+        private final boolean[] trashed;
+        private final Map<Long, String[]> bucketInfo;
+        private final Map<Long, Bucket> buckets;
+        private volatile long[] idIndex;
+        private volatile DateIndex dateIndex;
+
+        private Snapshot(long version, long parentVersion, String mediaStoreVersion, long syncToken, Delta delta,
+                int size, long[] ids, int[] mediaTypes, long[] bucketIds, long[] datesAdded, String[] displayNames,
+                boolean[] trashed, Map<Long, String[]> bucketInfo, Map<Long, Bucket> buckets) {
+            this.version = version;
+            this.parentVersion = parentVersion;
+            this.mediaStoreVersion = mediaStoreVersion;
+            this.syncToken = syncToken;
+            this.delta = delta;
+            this.size = size;
+            this.ids = ids;
+            this.mediaTypes = mediaTypes;
+            this.bucketIds = bucketIds;
+            this.datesAdded = datesAdded;
+            this.displayNames = displayNames;
+            this.trashed = trashed;
+            this.bucketInfo = bucketInfo;
+            this.buckets = buckets;
+        }
+
+        private Snapshot withSyncToken(long newSyncToken) {
+            if (newSyncToken == syncToken) {
+                return this;
+            }
+            Snapshot copy = new Snapshot(version, parentVersion, mediaStoreVersion, newSyncToken, delta, size, ids,
+                    mediaTypes, bucketIds, datesAdded, displayNames, trashed, bucketInfo, buckets);
+            copy.idIndex = idIndex;
+            copy.dateIndex = dateIndex;
+            return copy;
+        }
+
+        /**
+         * True when this snapshot was produced by syncing {@code other}, i.e.
+         * {@link #getDelta()} turns {@code other}'s contents into this one's.
+         */
+        public boolean isChildOf(Snapshot other) {
+            return other != null && parentVersion == other.version;
+        }
+
+        /**
+         * Increases every time the catalog contents change.
+         */
+        public long getVersion() {
+            return version;
+        }
+
+        public Delta getDelta() {
+            return delta;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public long getId(int row) {
+            return ids[row];
+        }
+
+        public int getMediaType(int row) {
+            return mediaTypes[row];
+        }
+
+        public long getBucketId(int row) {
+            return bucketIds[row];
+        }
+
+        public long getDateAdded(int row) {
+            return datesAdded[row];
+        }
+
+        public String getDisplayName(int row) {
+            return displayNames[row];
+        }
+
+        public boolean isTrashed(int row) {
+            return trashed[row];
+        }
+
+        public Uri getUri(int row) {
+            return contentUriFor(ids[row], mediaTypes[row]);
+        }
+
+        public Image toImage(int row) {
+            return new Image(ids[row], mediaTypes[row], displayNames[row], datesAdded[row]);
+        }
+
+        public MediaList toImages(int[] rows) {
+            MediaList.Builder result = new MediaList.Builder(rows.length);
+            for (int row : rows) {
+                addRowTo(result, row);
+            }
+            return result.build();
+        }
+
+        void addRowTo(MediaList.Builder builder, int row) {
+            builder.add(ids[row], mediaTypes[row], displayNames[row], datesAdded[row]);
+        }
+
+        public MediaList getImages() {
+            return select(VISIBLE);
+        }
+
+        public MediaList getTrashedImages() {
+            return select(TRASHED);
+        }
+
+        public MediaList getImagesOfType(int mediaType) {
+            return select((snapshot, row) -> !snapshot.isTrashed(row) && snapshot.getMediaType(row) == mediaType);
+        }
+
+        /**
+         * Returns the items added in [fromSeconds, toSeconds), newest first.
+         */
+        public MediaList getImagesInDateRange(long fromSeconds, long toSeconds) {
+            MediaList.Builder result = new MediaList.Builder(0);
+            for (int row = firstRowAddedBefore(toSeconds); row < size; row++) {
+                if (datesAdded[row] < fromSeconds) {
+                    break;
+                }
+                if (!trashed[row]) {
+                    addRowTo(result, row);
+                }
+            }
+            return result.build();
+        }
+
+        public MediaList getImagesInBucket(long bucketId) {
+            Bucket bucket = buckets.get(bucketId);
+            return bucket != null ? toImages(bucket.rows) : MediaList.empty();
+        }
+
+        public MediaList getImagesInFolder(String folderPath) {
+            Bucket bucket = findBucketByPath(folderPath);
+            return bucket != null ? toImages(bucket.rows) : MediaList.empty();
+        }
+
+        public MediaList select(RowFilter filter) {
+            MediaList.Builder result = new MediaList.Builder(size);
+            for (int row = 0; row < size; row++) {
+                if (filter.accept(this, row)) {
+                    addRowTo(result, row);
+                }
+            }
+            return result.build();
+        }
+
+        /**
+         * Non-trashed buckets, ordered by their newest item.
+         */
+        public List<Bucket> getBuckets() {
+            return new ArrayList<>(buckets.values());
+        }
+
+        public Bucket getBucket(long bucketId) {
+            return buckets.get(bucketId);
+        }
+
+        public Bucket findBucketByPath(String folderPath) {
+            for (Bucket bucket : buckets.values()) {
+                if (bucket.folderPath.equals(folderPath)) {
+                    return bucket;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Returns the row holding {@code id}, or -1 if it is not in this snapshot.
+         */
+        public int rowOf(long id) {
+            long[] index = idIndex;
+            if (index == null) {
+                index = new long[size];
+                for (int row = 0; row < size; row++) {
+                    index[row] = (ids[row] << ROW_BITS) | row;
+                }
+                Arrays.sort(index);
+                idIndex = index;
+            }
+            int low = 0;
+            int high = size - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                long midId = index[mid] >>> ROW_BITS;
+                if (midId < id) {
+                    low = mid + 1;
+                } else if (midId > id) {
+                    high = mid - 1;
+                } else {
+                    return (int) (index[mid] & ((1L << ROW_BITS) - 1));
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Day buckets of this snapshot, built on first use.
+         */
+        public DateIndex getDateIndex() {
+            DateIndex index = dateIndex;
+            if (index == null) {
+                index = DateIndex.fromDescendingSeconds(datesAdded, size);
+                dateIndex = index;
+            }
+            return index;
+        }
+
+        /**
+         * Index of the first row whose DATE_ADDED is strictly before {@code seconds}.
+         */
+        int firstRowAddedBefore(long seconds) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (datesAdded[mid] >= seconds) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+
+    /**
+     * A MediaStore bucket (folder) and the snapshot rows of its non-trashed items,
+     * newest first. The first row is the default album cover.
+     */
+    public static final class Bucket {
+        private final long bucketId;
+        private final String name;
+        private final String folderPath;
+        private final int[] rows;
+
+        Bucket(long bucketId, String name, String folderPath, int[] rows) {
+            this.bucketId = bucketId;
+            this.name = name;
+            this.folderPath = folderPath;
+            this.rows = rows;
+        }
+
+        public long getBucketId() {
+            return bucketId;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getFolderPath() {
+            return folderPath;
+        }
+
+        public int getCount() {
+            return rows.length;
+        }
+
+        public int getCoverRow() {
+            return rows[0];
+        }
+
+        public int[] getRows() {
+            return rows;
+        }
+    }
+
+    /**
+     * MediaStore _ID encoded in a media content Uri, or -1 for any other Uri.
+     */
+    public static long idOf(Uri uri) {
+        if (uri == null || !MediaStore.AUTHORITY.equals(uri.getAuthority())) {
+            return -1;
+        }
+        try {
+            return ContentUris.parseId(uri);
+        } catch (NumberFormatException | UnsupportedOperationException e) {
+            return -1;
+        }
+    }
+
+    public static Uri contentUriFor(long id, int mediaType) {
+        return mediaType == MediaStore.Files.FileColumns.MEDIA_TYPE_VIDEO
+                ? ContentUris.withAppendedId(MediaStore.Video.Media.EXTERNAL_CONTENT_URI, id)
+                : ContentUris.withAppendedId(MediaStore.Images.Media.EXTERNAL_CONTENT_URI, id);
+    }
+
+    /**
+     * Growable parallel arrays used while reading a cursor or merging a delta.
+     * Bucket name/path pairs are shared so a delta only resolves folders it has not seen.
+     */
+    private static final class SnapshotBuilder {
+        private long[] ids = new long[64];
+        private int[] mediaTypes = new int[64];
+        private long[] bucketIds = new long[64];
+        private long[] datesAdded = new long[64];
+        private String[] displayNames = new String[64];
+        private boolean[] trashed = new boolean[64];
+        private int size = 0;
+        private final Map<Long, String[]> bucketInfo;
+
+        SnapshotBuilder(Map<Long, String[]> bucketInfo) {
+            this.bucketInfo = bucketInfo;
+        }
+
+        /**
+         * Appends every cursor row and returns the highest sync token seen.
+         */
+        long readRows(Cursor cursor) {
+            long maxToken = 0;
+            if (cursor == null) {
+                return maxToken;
+            }
+            ensureCapacity(size + cursor.getCount());
+            int idColumn = cursor.getColumnIndexOrThrow(MediaStore.Files.FileColumns._ID);
+            int mediaTypeColumn = cursor.getColumnIndexOrThrow(MediaStore.Files.FileColumns.MEDIA_TYPE);
+            int dataColumn = cursor.getColumnIndexOrThrow(MediaStore.Files.FileColumns.DATA);
+            int dateAddedColumn = cursor.getColumnIndexOrThrow(MediaStore.Files.FileColumns.DATE_ADDED);
+            int dateModifiedColumn = cursor.getColumnIndexOrThrow(MediaStore.Files.FileColumns.DATE_MODIFIED);
+            int displayNameColumn = cursor.getColumnIndexOrThrow(MediaStore.Files.FileColumns.DISPLAY_NAME);
+            int bucketNameColumn = cursor.getColumnIndexOrThrow(MediaStore.Files.FileColumns.BUCKET_DISPLAY_NAME);
+            int bucketIdColumn = Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q
+                    ? cursor.getColumnIndexOrThrow(MediaStore.Files.FileColumns.BUCKET_ID)
+                    : cursor.getColumnIndex("bucket_id");
+            int trashedColumn = -1;
+            int generationColumn = -1;
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+                trashedColumn = cursor.getColumnIndex(MediaStore.MediaColumns.IS_TRASHED);
+                generationColumn = cursor.getColumnIndex(MediaStore.MediaColumns.GENERATION_MODIFIED);
+            }
+
+            while (cursor.moveToNext()) {
+                String path = null;
+                long bucketId;
+                if (bucketIdColumn != -1) {
+                    bucketId = cursor.getLong(bucketIdColumn);
+                } else {
+                    // Fallback for very old devices if bucket_id is missing (unlikely)
+                    path = cursor.getString(dataColumn);
+                    File parent = path != null ? new File(path).getParentFile() : null;
+                    bucketId = parent != null ? parent.getAbsolutePath().hashCode() : 0;
+                }
+
+                if (!bucketInfo.containsKey(bucketId)) {
+                    if (path == null) {
+                        path = cursor.getString(dataColumn);
+                    }
+                    File parentFile = path != null ? new File(path).getParentFile() : null;
+                    if (parentFile != null) {
+                        String name = cursor.getString(bucketNameColumn);
+                        // Fallback name if bucket name is null
+                        if (name == null) {
+                            name = parentFile.getName();
+                        }
+                        bucketInfo.put(bucketId, new String[] { name, parentFile.getAbsolutePath() });
+                    } else {
+                        bucketInfo.put(bucketId, null);
+                    }
+                }
+
+                long dateAdded = cursor.getLong(dateAddedColumn);
+                boolean isTrashed = trashedColumn != -1 && cursor.getInt(trashedColumn) == 1;
+                add(cursor.getLong(idColumn), cursor.getInt(mediaTypeColumn), bucketId, dateAdded,
+                        cursor.getString(displayNameColumn), isTrashed);
+
+                long token = generationColumn != -1
+                        ? cursor.getLong(generationColumn)
+                        : Math.max(dateAdded, cursor.getLong(dateModifiedColumn));
+                maxToken = Math.max(maxToken, token);
+            }
+            return maxToken;
+        }
+
+        void copyRow(long[] srcIds, int[] srcTypes, long[] srcBuckets, long[] srcDates, String[] srcNames,
+                boolean[] srcTrashed, int row) {
+            add(srcIds[row], srcTypes[row], srcBuckets[row], srcDates[row], srcNames[row], srcTrashed[row]);
+        }
+
+        /**
+         * A builder with the same buckets but only the rows that are new to {@code current} or differ
+         * from its copy, so a row fetched again by an inclusive date query isn't reported as updated.
+         */
+        SnapshotBuilder withoutUnchanged(Snapshot current) {
+            SnapshotBuilder changed = new SnapshotBuilder(bucketInfo);
+            for (int row = 0; row < size; row++) {
+                int oldRow = current.rowOf(ids[row]);
+                if (oldRow < 0 || current.mediaTypes[oldRow] != mediaTypes[row]
+                        || current.bucketIds[oldRow] != bucketIds[row]
+                        || current.datesAdded[oldRow] != datesAdded[row]
+                        || current.trashed[oldRow] != trashed[row]
+                        || !Objects.equals(current.displayNames[oldRow], displayNames[row])) {
+                    changed.copyRow(ids, mediaTypes, bucketIds, datesAdded, displayNames, trashed, row);
+                }
+            }
+            return changed;
+        }
+
+        private void add(long id, int mediaType, long bucketId, long dateAdded, String displayName,
+                boolean isTrashed) {
+            ensureCapacity(size + 1);
+            ids[size] = id;
+            mediaTypes[size] = mediaType;
+            bucketIds[size] = bucketId;
+            datesAdded[size] = dateAdded;
+            displayNames[size] = displayName;
+            trashed[size] = isTrashed;
+            size++;
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (capacity <= ids.length) {
+                return;
+            }
+            int newLength = Math.max(capacity, ids.length * 2);
+            ids = Arrays.copyOf(ids, newLength);
+            mediaTypes = Arrays.copyOf(mediaTypes, newLength);
+            bucketIds = Arrays.copyOf(bucketIds, newLength);
+            datesAdded = Arrays.copyOf(datesAdded, newLength);
+            displayNames = Arrays.copyOf(displayNames, newLength);
+            trashed = Arrays.copyOf(trashed, newLength);
+        }
+
+        Snapshot build(long version, long parentVersion, String mediaStoreVersion, long syncToken, Delta delta) {
+            Map<Long, RowList> bucketRows = new LinkedHashMap<>();
+            for (int row = 0; row < size; row++) {
+                if (trashed[row] || bucketInfo.get(bucketIds[row]) == null) {
+                    continue;
+                }
+                RowList rows = bucketRows.get(bucketIds[row]);
+                if (rows == null) {
+                    rows = new RowList();
+                    bucketRows.put(bucketIds[row], rows);
+                }
+                rows.add(row);
+            }
+
+            Map<Long, Bucket> buckets = new LinkedHashMap<>();
+            for (Map.Entry<Long, RowList> entry : bucketRows.entrySet()) {
+                String[] info = bucketInfo.get(entry.getKey());
+                buckets.put(entry.getKey(), new Bucket(entry.getKey(), info[0], info[1], entry.getValue().toArray()));
+            }
+
+            return new Snapshot(version, parentVersion, mediaStoreVersion, syncToken, delta, size,
+                    Arrays.copyOf(ids, size), Arrays.copyOf(mediaTypes, size), Arrays.copyOf(bucketIds, size),
+                    Arrays.copyOf(datesAdded, size), Arrays.copyOf(displayNames, size),
+                    Arrays.copyOf(trashed, size), bucketInfo, Collections.unmodifiableMap(buckets));
+        }
+    }
+
+    private static final class RowList {
+        private int[] rows = new int[8];
+        private int size = 0;
+
+        void add(int row) {
+            if (size == rows.length) {
+                rows = Arrays.copyOf(rows, size * 2);
+            }
+            rows[size++] = row;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(rows, size);
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package com.bretttech.gallery.data;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Persistent cache of the hashes DuplicateFinder computes, keyed by MediaStore
+ * _ID and hash kind. Each entry remembers the SIZE and DATE_MODIFIED of the
+ * file it was computed from, so an edited or replaced file misses the cache
+ * and is hashed again. A rescan of an unchanged library reads no files at all.
+ */
+public class MediaHashStore extends SQLiteOpenHelper {
+
+    private static final String DATABASE_NAME = "media_hashes.db";
+    private static final int DATABASE_VERSION = 4; // 3: perceptual hashes per PerceptualHash kind; 4: anchored video signatures
+
+    private static final String TABLE_HASHES = "hashes";
+    private static final String COLUMN_MEDIA_ID = "media_id";
+    private static final String COLUMN_KIND = "kind";
+    private static final String COLUMN_SIZE = "size";
+    private static final String COLUMN_DATE_MODIFIED = "date_modified";
+    private static final String COLUMN_VALUE = "value";
+
+    /** SHA-256 of the whole file, hex encoded. */
+    public static final String KIND_CONTENT = "sha256";
+    /** SHA-256 of the first and last 64 KB of the file, hex encoded. */
+    public static final String KIND_PARTIAL = "sha256_head_tail";
+    // Perceptual hashes are stored as 64-bit integers under each PerceptualHash's cacheKind.
+
+    private static volatile MediaHashStore instance;
+
+    private MediaHashStore(Context context) {
+        super(context.getApplicationContext(), DATABASE_NAME, null, DATABASE_VERSION);
+    }
+
+    public static MediaHashStore getInstance(Context context) {
+        if (instance == null) {
+            synchronized (MediaHashStore.class) {
+                if (instance == null) {
+                    instance = new MediaHashStore(context);
+                }
+            }
+        }
+        return instance;
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        // No type on the value column, so each kind can store text, integers or blobs as they are.
+        db.execSQL("CREATE TABLE " + TABLE_HASHES + " ("
+                + COLUMN_KIND + " TEXT NOT NULL, "
+                + COLUMN_MEDIA_ID + " INTEGER NOT NULL, "
+                + COLUMN_SIZE + " INTEGER NOT NULL, "
+                + COLUMN_DATE_MODIFIED + " INTEGER NOT NULL, "
+                + COLUMN_VALUE + ", "
+                + "PRIMARY KEY (" + COLUMN_KIND + ", " + COLUMN_MEDIA_ID + "))");
+        db.execSQL("CREATE INDEX idx_hashes_media_id ON " + TABLE_HASHES + " (" + COLUMN_MEDIA_ID + ")");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        if (oldVersion < 4) {
+            if (oldVersion < 3) {
+                // Older perceptual hashes ("ahash" strings, then "ahash64") are superseded; the file hashes are still good.
+                db.delete(TABLE_HASHES, COLUMN_KIND + " IN (?, ?)", new String[] { "ahash", "ahash64" });
+            }
+            // Video signatures ("video_<hash kind>") changed format; the image and file hashes are still good.
+            db.delete(TABLE_HASHES, COLUMN_KIND + " LIKE 'video\\_%' ESCAPE '\\'", null);
+            return;
+        }
+        // It is only a cache; anything dropped is recomputed on the next scan.
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_HASHES);
+        onCreate(db);
+    }
+
+    /**
+     * Loads every stored entry of one kind, keyed by media id. Call from a
+     * background thread.
+     */
+    public Map<Long, Entry> load(String kind) {
+        Map<Long, Entry> entries = new HashMap<>();
+        try (Cursor cursor = getReadableDatabase().query(TABLE_HASHES,
+                new String[] { COLUMN_MEDIA_ID, COLUMN_SIZE, COLUMN_DATE_MODIFIED, COLUMN_VALUE },
+                COLUMN_KIND + " = ?", new String[] { kind }, null, null, null)) {
+            while (cursor.moveToNext()) {
+                Object value;
+                switch (cursor.getType(3)) {
+                    case Cursor.FIELD_TYPE_INTEGER:
+                        value = cursor.getLong(3);
+                        break;
+                    case Cursor.FIELD_TYPE_BLOB:
+                        value = cursor.getBlob(3);
+                        break;
+                    case Cursor.FIELD_TYPE_NULL:
+                        value = null;
+                        break;
+                    default:
+                        value = cursor.getString(3);
+                        break;
+                }
+                long mediaId = cursor.getLong(0);
+                entries.put(mediaId, new Entry(mediaId, cursor.getLong(1), cursor.getLong(2), value));
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Every media id with at least one stored hash.
+     */
+    public Set<Long> loadMediaIds() {
+        Set<Long> ids = new HashSet<>();
+        try (Cursor cursor = getReadableDatabase().query(true, TABLE_HASHES, new String[] { COLUMN_MEDIA_ID },
+                null, null, null, null, null, null)) {
+            while (cursor.moveToNext()) {
+                ids.add(cursor.getLong(0));
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Stores entries of one kind in a single transaction, replacing older ones.
+     */
+    public void putAll(String kind, List<Entry> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try (SQLiteStatement insert = db.compileStatement("INSERT OR REPLACE INTO " + TABLE_HASHES + " ("
+                + COLUMN_KIND + ", " + COLUMN_MEDIA_ID + ", " + COLUMN_SIZE + ", " + COLUMN_DATE_MODIFIED + ", "
+                + COLUMN_VALUE + ") VALUES (?, ?, ?, ?, ?)")) {
+            for (Entry entry : entries) {
+                insert.clearBindings();
+                insert.bindString(1, kind);
+                insert.bindLong(2, entry.mediaId);
+                insert.bindLong(3, entry.size);
+                insert.bindLong(4, entry.dateModified);
+                if (entry.value instanceof Long) {
+                    insert.bindLong(5, (Long) entry.value);
+                } else if (entry.value instanceof byte[]) {
+                    insert.bindBlob(5, (byte[]) entry.value);
+                } else if (entry.value != null) {
+                    insert.bindString(5, entry.value.toString());
+                } else {
+                    insert.bindNull(5);
+                }
+                insert.executeInsert();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Drops every kind of entry for media that no longer exists.
+     */
+    public void removeAll(Collection<Long> mediaIds) {
+        if (mediaIds.isEmpty()) {
+            return;
+        }
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try (SQLiteStatement delete = db.compileStatement(
+                "DELETE FROM " + TABLE_HASHES + " WHERE " + COLUMN_MEDIA_ID + " = ?")) {
+            for (long mediaId : mediaIds) {
+                delete.bindLong(1, mediaId);
+                delete.executeUpdateDelete();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * One cached hash and the file state it was computed for.
+     */
+    public static final class Entry {
+        private final long mediaId;
+        private final long size;
+        private final long dateModified;
+        private final Object value;
+
+        public Entry(long mediaId, long size, long dateModified, Object value) {
+            this.mediaId = mediaId;
+            this.size = size;
+            this.dateModified = dateModified;
+            this.value = value;
+        }
+
+        public long getMediaId() {
+            return mediaId;
+        }
+
+        public Object getValue() {
+            return value;
+        }
+
+        /**
+         * Whether the file still has the size and modification time this hash was computed for.
+         */
+        public boolean matches(long size, long dateModified) {
+            return this.size == size && this.dateModified == dateModified;
+        }
+    }
+}
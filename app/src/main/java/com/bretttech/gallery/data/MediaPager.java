@@ -0,0 +1,115 @@
+package com.bretttech.gallery.data;
+
+import android.content.Context;
+
+import com.bretttech.gallery.ui.pictures.MediaList;
+
+/**
+ * Pages the visible library out of MediaStore, newest first, while the full
+ * {@link MediaCatalog} snapshot is still loading. Only a window of pages around
+ * the visible range is kept. The list it returns has the library's total size,
+ * with placeholders outside the window, so grids and fast scrollers still see
+ * the full length.
+ *
+ * Pages next to the window continue from its first or last row with a keyset
+ * seek on (DATE_ADDED, _ID). A jump elsewhere (e.g. a fast-scroll drag) reads
+ * the new window with one LIMIT/OFFSET query.
+ *
+ * Not thread-safe; use it from one background thread.
+ */
+public class MediaPager {
+
+    public static final int DEFAULT_PAGE_SIZE = 240; // A multiple of the grid's 2, 3 and 4 columns
+    public static final int DEFAULT_WINDOW_PAGES = 2; // Pages kept on each side of the visible ones
+
+    private final MediaCatalog mediaCatalog;
+    private final int pageSize;
+    private final int windowPages;
+
+    private int totalCount = -1;
+    private int firstPage = 0; // First page in the window
+    private MediaList window = MediaList.empty(); // Loaded rows, starting at firstPage * pageSize
+
+    public MediaPager(Context context) {
+        this(context, DEFAULT_PAGE_SIZE, DEFAULT_WINDOW_PAGES);
+    }
+
+    public MediaPager(Context context, int pageSize, int windowPages) {
+        this.mediaCatalog = MediaCatalog.getInstance(context);
+        this.pageSize = pageSize;
+        this.windowPages = windowPages;
+    }
+
+    /**
+     * Counts the library and loads the window at the top. Blocks.
+     */
+    public MediaList start() {
+        totalCount = mediaCatalog.queryVisibleCount();
+        firstPage = 0;
+        window = MediaList.empty();
+        MediaList moved = moveTo(0, 0);
+        return moved != null ? moved : current();
+    }
+
+    /**
+     * Loads the pages around the visible positions and drops those that fell out
+     * of the window. Blocks. Returns the new list, or null when the window
+     * already covered the range.
+     */
+    public MediaList moveTo(int firstVisible, int lastVisible) {
+        if (totalCount <= 0) {
+            return null;
+        }
+        int lastPageIndex = (totalCount - 1) / pageSize;
+        int wantFirst = Math.max(0, Math.min(firstVisible, totalCount - 1) / pageSize - windowPages);
+        int wantLast = Math.min(lastPageIndex, Math.max(lastVisible, 0) / pageSize + windowPages);
+
+        int haveFirst = firstPage;
+        int haveLast = firstPage + (window.size() + pageSize - 1) / pageSize - 1;
+        if (!window.isEmpty() && wantFirst >= haveFirst && wantLast <= haveLast) {
+            return null;
+        }
+
+        int wantStart = wantFirst * pageSize;
+        int wantEnd = Math.min(totalCount, (wantLast + 1) * pageSize);
+        int haveStart = haveFirst * pageSize;
+        int haveEnd = haveStart + window.size();
+
+        MediaList.Builder builder = new MediaList.Builder(wantEnd - wantStart);
+        if (window.isEmpty() || wantEnd <= haveStart || wantStart >= haveEnd) {
+            // No overlap: read the whole window at its offset.
+            appendAll(builder, mediaCatalog.queryVisiblePage(0, -1, true, wantStart, wantEnd - wantStart));
+        } else {
+            if (wantStart < haveStart) {
+                appendAll(builder, mediaCatalog.queryVisiblePage(window.getDateAdded(0), window.getId(0), false,
+                        0, haveStart - wantStart));
+            }
+            int keepFrom = Math.max(wantStart, haveStart) - haveStart;
+            int keepTo = Math.min(wantEnd, haveEnd) - haveStart;
+            for (int i = keepFrom; i < keepTo; i++) {
+                builder.addFrom(window, i);
+            }
+            if (wantEnd > haveEnd) {
+                int last = window.size() - 1;
+                appendAll(builder, mediaCatalog.queryVisiblePage(window.getDateAdded(last), window.getId(last), true,
+                        0, wantEnd - haveEnd));
+            }
+        }
+
+        firstPage = wantFirst;
+        window = builder.build();
+        return current();
+    }
+
+    private MediaList current() {
+        int leading = firstPage * pageSize;
+        int trailing = Math.max(0, totalCount - leading - window.size());
+        return MediaList.withPlaceholders(window, leading, trailing);
+    }
+
+    private static void appendAll(MediaList.Builder builder, MediaList page) {
+        for (int i = 0; i < page.size(); i++) {
+            builder.addFrom(page, i);
+        }
+    }
+}
@@ -0,0 +1,431 @@
+package com.bretttech.gallery.data;
+
+import android.content.Context;
+import android.net.Uri;
+
+import com.bretttech.gallery.ui.pictures.Image;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The one place search matching lives. It offers two modes:
+ * <ul>
+ * <li>{@link #search} runs a full library query over the {@link MediaCatalog}
+ * snapshot. It understands filename words, tags, album names, media type
+ * keywords ("videos", "photos"), absolute dates ("2024", "2024-06",
+ * "2024-06-15") and relative dates ("today", "last week"). Results are ranked
+ * by where each term matched, then by recency.</li>
+ * <li>{@link #substringMatcher} and {@link #bucketsWithTagContaining} are the
+ * plain substring tests used by the search-as-you-type filters on the Pictures,
+ * Album and Albums screens.</li>
+ * </ul>
+ */
+public class MediaSearchEngine {
+
+    // Rows scanned between progress callbacks and cancellation checks.
+    private static final int SCAN_CHUNK = 2048;
+
+    private static final int SCORE_NAME_WORD = 30;
+    private static final int SCORE_NAME = 20;
+    private static final int SCORE_TAG = 15;
+    private static final int SCORE_ALBUM = 10;
+
+    private static final Pattern DATE_PATTERN = Pattern.compile("(\\d{4})(?:-(\\d{1,2}))?(?:-(\\d{1,2}))?");
+
+    private final MediaCatalog mediaCatalog;
+    private final ImageDetailsManager imageDetailsManager;
+
+    public MediaSearchEngine(Context context) {
+        mediaCatalog = MediaCatalog.getInstance(context);
+        imageDetailsManager = new ImageDetailsManager(context);
+    }
+
+    public interface ResultCallback {
+        /**
+         * Called on the searching thread, first with partial results while the
+         * library is being scanned and finally with {@code complete} set.
+         */
+        void onResults(Results results, boolean complete);
+    }
+
+    /**
+     * Ranked search over the whole library. Blocks; call from a background thread.
+     */
+    public void search(String rawQuery, ResultCallback callback, BooleanSupplier isCancelled) {
+        Query query = Query.parse(rawQuery, Calendar.getInstance());
+        MediaCatalog.Snapshot snapshot = mediaCatalog.getSnapshot();
+        if (query.isEmpty()) {
+            callback.onResults(new Results(snapshot, new int[0], new int[0], 0), true);
+            return;
+        }
+
+        // One tag-index probe per term, turned into ids so rows can be checked without building Uris.
+        List<Set<Long>> tagIds = new ArrayList<>(query.terms.size());
+        for (String term : query.terms) {
+            tagIds.add(toIds(imageDetailsManager.findImagesWithTagContaining(term)));
+        }
+
+        // Rows are sorted newest first, so a date range is a contiguous slice.
+        int startRow = query.toSeconds == Long.MAX_VALUE ? 0 : snapshot.firstRowAddedBefore(query.toSeconds);
+        int[] rows = new int[64];
+        int[] scores = new int[64];
+        int matches = 0;
+        boolean firstPagePosted = false;
+
+        for (int row = startRow; row < snapshot.size(); row++) {
+            if (snapshot.getDateAdded(row) < query.fromSeconds) {
+                break;
+            }
+            if ((row - startRow) % SCAN_CHUNK == 0 && row != startRow) {
+                if (isCancelled.getAsBoolean()) {
+                    return;
+                }
+                // Post early so the first screen of results shows up before the scan finishes.
+                if (!firstPagePosted && matches > 0) {
+                    callback.onResults(new Results(snapshot, rows, scores, matches), false);
+                    firstPagePosted = matches >= Results.PAGE_SIZE;
+                }
+            }
+            int score = score(snapshot, row, query, tagIds);
+            if (score > 0) {
+                if (matches == rows.length) {
+                    rows = Arrays.copyOf(rows, matches * 2);
+                    scores = Arrays.copyOf(scores, matches * 2);
+                }
+                rows[matches] = row;
+                scores[matches] = score;
+                matches++;
+            }
+        }
+        if (!isCancelled.getAsBoolean()) {
+            callback.onResults(new Results(snapshot, rows, scores, matches), true);
+        }
+    }
+
+    private static int score(MediaCatalog.Snapshot snapshot, int row, Query query, List<Set<Long>> tagIds) {
+        if (snapshot.isTrashed(row)) {
+            return 0;
+        }
+        if (query.mediaType != 0 && snapshot.getMediaType(row) != query.mediaType) {
+            return 0;
+        }
+        if (query.terms.isEmpty()) {
+            return 1; // Only type/date constraints, which already passed.
+        }
+
+        String name = snapshot.getDisplayName(row);
+        MediaCatalog.Bucket bucket = null;
+        boolean bucketResolved = false;
+        int total = 0;
+        for (int i = 0; i < query.terms.size(); i++) {
+            String term = query.terms.get(i);
+            int best = 0;
+            int nameIndex = indexOfIgnoreCase(name, term);
+            if (nameIndex == 0 || (nameIndex > 0 && !Character.isLetterOrDigit(name.charAt(nameIndex - 1)))) {
+                best = SCORE_NAME_WORD;
+            } else if (nameIndex > 0) {
+                best = SCORE_NAME;
+            }
+            if (best < SCORE_TAG && tagIds.get(i).contains(snapshot.getId(row))) {
+                best = SCORE_TAG;
+            }
+            if (best == 0) {
+                if (!bucketResolved) {
+                    bucket = snapshot.getBucket(snapshot.getBucketId(row));
+                    bucketResolved = true;
+                }
+                if (bucket != null && indexOfIgnoreCase(bucket.getName(), term) >= 0) {
+                    best = SCORE_ALBUM;
+                }
+            }
+            if (best == 0) {
+                return 0; // Every term has to match somewhere.
+            }
+            total += best;
+        }
+        return total;
+    }
+
+    /**
+     * Legacy search-as-you-type test: filename, "yyyy-MM-dd" date or tag contains
+     * the query. Does the tag-index and date-index probes up front; call from a
+     * background thread.
+     */
+    public Predicate<Image> substringMatcher(String lowerCaseQuery) {
+        Set<String> tagMatchingUris = imageDetailsManager.findImagesWithTagContaining(lowerCaseQuery);
+        Set<Long> tagMatchingIds = toIds(tagMatchingUris);
+        DateIndex.Ranges matchingDates = mediaCatalog.getSnapshot().getDateIndex().match(lowerCaseQuery);
+
+        // Filter by filename, date, OR tag match
+        return image -> {
+            // Check if matches by filename
+            if (indexOfIgnoreCase(image.getDisplayName(), lowerCaseQuery) >= 0) {
+                return true;
+            }
+            // Check if matches by date
+            if (matchingDates.contains(image.getDateAdded())) {
+                return true;
+            }
+            // Check if matches by tag; catalog items are checked by id so no Uri is built
+            if (image.getMediaStoreId() >= 0) {
+                return tagMatchingIds.contains(image.getMediaStoreId());
+            }
+            return tagMatchingUris.contains(image.getUri().toString());
+        };
+    }
+
+    /**
+     * Bucket ids of albums holding at least one image with a tag containing the query.
+     */
+    public Set<Long> bucketsWithTagContaining(String lowerCaseQuery) {
+        Set<Long> buckets = new HashSet<>();
+        Set<Long> ids = toIds(imageDetailsManager.findImagesWithTagContaining(lowerCaseQuery));
+        if (ids.isEmpty()) {
+            return buckets;
+        }
+        MediaCatalog.Snapshot snapshot = mediaCatalog.getSnapshot();
+        for (long id : ids) {
+            int row = snapshot.rowOf(id);
+            if (row >= 0 && !snapshot.isTrashed(row)) {
+                buckets.add(snapshot.getBucketId(row));
+            }
+        }
+        return buckets;
+    }
+
+    private static Set<Long> toIds(Set<String> uris) {
+        Set<Long> ids = new HashSet<>();
+        for (String uri : uris) {
+            try {
+                ids.add(Long.parseLong(Uri.parse(uri).getLastPathSegment()));
+            } catch (NumberFormatException | NullPointerException ignored) {
+                // Not a MediaStore item (e.g. a secure folder file); it cannot be in the catalog.
+            }
+        }
+        return ids;
+    }
+
+    // Case-insensitive indexOf without allocating a lower-cased copy of the haystack.
+    private static int indexOfIgnoreCase(String haystack, String needle) {
+        if (haystack == null) {
+            return -1;
+        }
+        int max = haystack.length() - needle.length();
+        for (int i = 0; i <= max; i++) {
+            if (haystack.regionMatches(true, i, needle, 0, needle.length())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * A page-able, ranked view over the rows a search matched.
+     */
+    public static final class Results {
+        public static final int PAGE_SIZE = 120;
+
+        private final MediaCatalog.Snapshot snapshot;
+        private final int[] rankedRows;
+
+        Results(MediaCatalog.Snapshot snapshot, int[] rows, int[] scores, int count) {
+            this.snapshot = snapshot;
+            Integer[] order = new Integer[count];
+            for (int i = 0; i < count; i++) {
+                order[i] = i;
+            }
+            // Best score first; rows are already newest first, so ties keep recency order.
+            Arrays.sort(order, (a, b) -> scores[b] != scores[a] ? Integer.compare(scores[b], scores[a])
+                    : Integer.compare(rows[a], rows[b]));
+            rankedRows = new int[count];
+            for (int i = 0; i < count; i++) {
+                rankedRows[i] = rows[order[i]];
+            }
+        }
+
+        public int size() {
+            return rankedRows.length;
+        }
+
+        /**
+         * The best {@code count} results as Images.
+         */
+        public List<Image> getTop(int count) {
+            int end = Math.min(count, rankedRows.length);
+            List<Image> images = new ArrayList<>(end);
+            for (int i = 0; i < end; i++) {
+                images.add(snapshot.toImage(rankedRows[i]));
+            }
+            return images;
+        }
+    }
+
+    /**
+     * A parsed query: media-type and date constraints plus the free-text terms
+     * left over, all lower-cased.
+     */
+    static final class Query {
+        int mediaType = 0;
+        long fromSeconds = Long.MIN_VALUE;
+        long toSeconds = Long.MAX_VALUE;
+        final List<String> terms = new ArrayList<>();
+        boolean hasConstraint = false;
+
+        boolean isEmpty() {
+            return terms.isEmpty() && !hasConstraint;
+        }
+
+        static Query parse(String raw, Calendar now) {
+            Query query = new Query();
+            if (raw == null) {
+                return query;
+            }
+            List<String> tokens = new ArrayList<>();
+            Collections.addAll(tokens, raw.trim().toLowerCase(Locale.ROOT).split("\\s+"));
+            tokens.removeIf(String::isEmpty);
+
+            for (int i = 0; i < tokens.size(); i++) {
+                String token = tokens.get(i);
+                String next = i + 1 < tokens.size() ? tokens.get(i + 1) : null;
+                switch (token) {
+                    case "video":
+                    case "videos":
+                        query.setMediaType(Image.MEDIA_TYPE_VIDEO);
+                        continue;
+                    case "photo":
+                    case "photos":
+                    case "image":
+                    case "images":
+                    case "picture":
+                    case "pictures":
+                        query.setMediaType(Image.MEDIA_TYPE_IMAGE);
+                        continue;
+                    case "today":
+                        query.setRange(startOf(now, Calendar.DAY_OF_MONTH, 0), Calendar.DAY_OF_MONTH);
+                        continue;
+                    case "yesterday":
+                        query.setRange(startOf(now, Calendar.DAY_OF_MONTH, -1), Calendar.DAY_OF_MONTH);
+                        continue;
+                    case "this":
+                    case "last":
+                        int field = periodField(next);
+                        if (field != -1) {
+                            query.setRange(startOf(now, field, token.equals("last") ? -1 : 0), field);
+                            i++;
+                            continue;
+                        }
+                        break;
+                    default:
+                        break;
+                }
+                Matcher date = DATE_PATTERN.matcher(token);
+                if (date.matches() && query.setDate(date)) {
+                    continue;
+                }
+                query.terms.add(token);
+            }
+            return query;
+        }
+
+        private void setMediaType(int type) {
+            mediaType = type;
+            hasConstraint = true;
+        }
+
+        private boolean setDate(Matcher date) {
+            int year = Integer.parseInt(date.group(1));
+            int month = date.group(2) != null ? Integer.parseInt(date.group(2)) : 0;
+            int day = date.group(3) != null ? Integer.parseInt(date.group(3)) : 0;
+            if (month > 12 || day > 31 || (date.group(2) != null && month == 0) || (date.group(3) != null && day == 0)) {
+                return false;
+            }
+            Calendar start = Calendar.getInstance();
+            start.clear();
+            int field;
+            if (day > 0) {
+                start.set(year, month - 1, day);
+                field = Calendar.DAY_OF_MONTH;
+            } else if (month > 0) {
+                start.set(year, month - 1, 1);
+                field = Calendar.MONTH;
+            } else {
+                start.set(year, Calendar.JANUARY, 1);
+                field = Calendar.YEAR;
+            }
+            setRange(start, field);
+            return true;
+        }
+
+        // Intersects with any range already set, so "2024 last month" narrows rather than widens.
+        private void setRange(Calendar start, int field) {
+            Calendar end = (Calendar) start.clone();
+            if (field == Calendar.WEEK_OF_YEAR) {
+                end.add(Calendar.DAY_OF_MONTH, 7);
+            } else {
+                end.add(field, 1);
+            }
+            fromSeconds = Math.max(fromSeconds, start.getTimeInMillis() / 1000L);
+            toSeconds = Math.min(toSeconds, end.getTimeInMillis() / 1000L);
+            hasConstraint = true;
+        }
+
+        private static int periodField(String word) {
+            if (word == null) {
+                return -1;
+            }
+            switch (word) {
+                case "week":
+                    return Calendar.WEEK_OF_YEAR;
+                case "month":
+                    return Calendar.MONTH;
+                case "year":
+                    return Calendar.YEAR;
+                default:
+                    return -1;
+            }
+        }
+
+        /**
+         * Start of the day/week/month/year containing {@code now}, shifted by {@code offset} periods.
+         */
+        private static Calendar startOf(Calendar now, int field, int offset) {
+            Calendar start = (Calendar) now.clone();
+            start.set(Calendar.HOUR_OF_DAY, 0);
+            start.set(Calendar.MINUTE, 0);
+            start.set(Calendar.SECOND, 0);
+            start.set(Calendar.MILLISECOND, 0);
+            switch (field) {
+                case Calendar.WEEK_OF_YEAR:
+                    start.set(Calendar.DAY_OF_WEEK, start.getFirstDayOfWeek());
+                    if (start.after(now)) {
+                        start.add(Calendar.DAY_OF_MONTH, -7);
+                    }
+                    start.add(Calendar.DAY_OF_MONTH, 7 * offset);
+                    break;
+                case Calendar.MONTH:
+                    start.set(Calendar.DAY_OF_MONTH, 1);
+                    start.add(Calendar.MONTH, offset);
+                    break;
+                case Calendar.YEAR:
+                    start.set(Calendar.DAY_OF_YEAR, 1);
+                    start.add(Calendar.YEAR, offset);
+                    break;
+                default:
+                    start.add(Calendar.DAY_OF_MONTH, offset);
+                    break;
+            }
+            return start;
+        }
+    }
+}
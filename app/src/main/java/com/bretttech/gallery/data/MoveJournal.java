@@ -0,0 +1,193 @@
+package com.bretttech.gallery.data;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.net.Uri;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * On-disk record of the moves MediaMover has in flight, one row per file.
+ * A batch is removed once it finishes, so whatever is still here after a
+ * restart was interrupted and can be resumed from each file's last state.
+ */
+public class MoveJournal extends SQLiteOpenHelper {
+
+    private static final String DATABASE_NAME = "move_journal.db";
+    private static final int DATABASE_VERSION = 1;
+
+    private static final String TABLE_MOVES = "moves";
+    private static final String COLUMN_ID = "_id";
+    private static final String COLUMN_BATCH_ID = "batch_id";
+    private static final String COLUMN_SOURCE = "source";
+    private static final String COLUMN_DESTINATION = "destination";
+    private static final String COLUMN_STATE = "state";
+    private static final String COLUMN_SIZE = "size";
+
+    /** Not started, or interrupted before the copy finished. */
+    public static final int STATE_PENDING = 0;
+    /** Destination fully written; the source is untouched. */
+    public static final int STATE_COPIED = 1;
+    /** Destination size matches the source; the source may be deleted. */
+    public static final int STATE_VERIFIED = 2;
+    /** Source gone: deleted after the copy, or moved by a rename. */
+    public static final int STATE_SOURCE_DELETED = 3;
+
+    private static volatile MoveJournal instance;
+
+    private MoveJournal(Context context) {
+        super(context.getApplicationContext(), DATABASE_NAME, null, DATABASE_VERSION);
+        // Lets the move workers update states without blocking each other's readers.
+        setWriteAheadLoggingEnabled(true);
+    }
+
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        // WAL defaults to NORMAL, which can lose the last commits on power loss. A source is deleted on the
+        // strength of its VERIFIED row, so every commit has to be synced.
+        db.execSQL("PRAGMA synchronous = FULL");
+    }
+
+    public static MoveJournal getInstance(Context context) {
+        if (instance == null) {
+            synchronized (MoveJournal.class) {
+                if (instance == null) {
+                    instance = new MoveJournal(context);
+                }
+            }
+        }
+        return instance;
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_MOVES + " ("
+                + COLUMN_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + COLUMN_BATCH_ID + " INTEGER NOT NULL, "
+                + COLUMN_SOURCE + " TEXT NOT NULL, "
+                + COLUMN_DESTINATION + " TEXT NOT NULL, "
+                + COLUMN_STATE + " INTEGER NOT NULL, "
+                + COLUMN_SIZE + " INTEGER NOT NULL DEFAULT -1)");
+        db.execSQL("CREATE INDEX idx_moves_batch_id ON " + TABLE_MOVES + " (" + COLUMN_BATCH_ID + ")");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_MOVES);
+        onCreate(db);
+    }
+
+    /**
+     * Records a new batch with every entry pending, in one transaction, and
+     * fills in the entries' ids.
+     *
+     * @return the batch id
+     */
+    public synchronized long begin(List<Entry> entries) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try (Cursor cursor = db.rawQuery("SELECT IFNULL(MAX(" + COLUMN_BATCH_ID + "), 0) + 1 FROM " + TABLE_MOVES, null);
+             SQLiteStatement insert = db.compileStatement("INSERT INTO " + TABLE_MOVES + " ("
+                     + COLUMN_BATCH_ID + ", " + COLUMN_SOURCE + ", " + COLUMN_DESTINATION + ", " + COLUMN_STATE
+                     + ") VALUES (?, ?, ?, " + STATE_PENDING + ")")) {
+            cursor.moveToFirst();
+            long batchId = cursor.getLong(0);
+            for (Entry entry : entries) {
+                insert.clearBindings();
+                insert.bindLong(1, batchId);
+                insert.bindString(2, entry.source.toString());
+                insert.bindString(3, entry.destination.getAbsolutePath());
+                entry.id = insert.executeInsert();
+            }
+            db.setTransactionSuccessful();
+            return batchId;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Ids of batches that were started but never finished.
+     */
+    public List<Long> loadBatchIds() {
+        List<Long> ids = new ArrayList<>();
+        try (Cursor cursor = getReadableDatabase().query(true, TABLE_MOVES, new String[] { COLUMN_BATCH_ID },
+                null, null, null, null, COLUMN_BATCH_ID, null)) {
+            while (cursor.moveToNext()) {
+                ids.add(cursor.getLong(0));
+            }
+        }
+        return ids;
+    }
+
+    public List<Entry> loadEntries(long batchId) {
+        List<Entry> entries = new ArrayList<>();
+        try (Cursor cursor = getReadableDatabase().query(TABLE_MOVES,
+                new String[] { COLUMN_ID, COLUMN_SOURCE, COLUMN_DESTINATION, COLUMN_STATE, COLUMN_SIZE },
+                COLUMN_BATCH_ID + " = ?", new String[] { String.valueOf(batchId) }, null, null, COLUMN_ID)) {
+            while (cursor.moveToNext()) {
+                Entry entry = new Entry(Uri.parse(cursor.getString(1)), new File(cursor.getString(2)));
+                entry.id = cursor.getLong(0);
+                entry.state = cursor.getInt(3);
+                entry.size = cursor.getLong(4);
+                entries.add(entry);
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Persists an entry's state and size. The commit is synced before this
+     * returns, so the step it records survives the process dying or a power loss.
+     */
+    public void update(Entry entry) {
+        ContentValues values = new ContentValues();
+        values.put(COLUMN_STATE, entry.state);
+        values.put(COLUMN_SIZE, entry.size);
+        getWritableDatabase().update(TABLE_MOVES, values, COLUMN_ID + " = ?",
+                new String[] { String.valueOf(entry.id) });
+    }
+
+    /**
+     * Forgets a batch that has run to the end, whether or not every file moved,
+     * except the entries in {@code keep}, which stay for a later resume.
+     */
+    public void finish(long batchId, Collection<Entry> keep) {
+        StringBuilder where = new StringBuilder(COLUMN_BATCH_ID + " = ?");
+        List<String> args = new ArrayList<>();
+        args.add(String.valueOf(batchId));
+        if (!keep.isEmpty()) {
+            where.append(" AND ").append(COLUMN_ID).append(" NOT IN (");
+            for (Entry entry : keep) {
+                where.append(args.size() > 1 ? ", ?" : "?");
+                args.add(String.valueOf(entry.id));
+            }
+            where.append(")");
+        }
+        getWritableDatabase().delete(TABLE_MOVES, where.toString(), args.toArray(new String[0]));
+    }
+
+    /**
+     * One file of a batch. Mutable so MediaMover can advance it; only the
+     * thread moving the file touches it.
+     */
+    public static final class Entry {
+        public final Uri source;
+        public final File destination;
+        private long id;
+        public int state = STATE_PENDING;
+        public long size = -1; // Bytes copied, once COPIED
+
+        public Entry(Uri source, File destination) {
+            this.source = source;
+            this.destination = destination;
+        }
+    }
+}
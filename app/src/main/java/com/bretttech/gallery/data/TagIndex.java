@@ -0,0 +1,222 @@
+package com.bretttech.gallery.data;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.util.Log;
+
+import com.google.gson.Gson;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Inverted index from tag to image URI, persisted in SQLite next to the
+ * SharedPreferences the tags themselves live in. Substring queries of three or
+ * more characters are answered from a trigram table; shorter ones scan the
+ * (small) tag vocabulary. Either way a search is a couple of indexed queries
+ * instead of a JSON decode per image.
+ */
+public class TagIndex extends SQLiteOpenHelper {
+
+    private static final String TAG = "TagIndex";
+    private static final String DATABASE_NAME = "tag_index.db";
+    private static final int DATABASE_VERSION = 1;
+
+    private static final String TABLE_IMAGE_TAGS = "image_tags";
+    private static final String TABLE_TRIGRAMS = "tag_trigrams";
+    private static final String COLUMN_URI = "uri";
+    private static final String COLUMN_TAG = "tag";
+    private static final String COLUMN_TRIGRAM = "trigram";
+    private static final int MAX_QUERY_ARGS = 500;
+
+    private static volatile TagIndex instance;
+
+    private final Context context;
+
+    private TagIndex(Context context) {
+        super(context.getApplicationContext(), DATABASE_NAME, null, DATABASE_VERSION);
+        this.context = context.getApplicationContext();
+    }
+
+    public static TagIndex getInstance(Context context) {
+        if (instance == null) {
+            synchronized (TagIndex.class) {
+                if (instance == null) {
+                    instance = new TagIndex(context);
+                }
+            }
+        }
+        return instance;
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_IMAGE_TAGS + " ("
+                + COLUMN_URI + " TEXT NOT NULL, "
+                + COLUMN_TAG + " TEXT NOT NULL, "
+                + "PRIMARY KEY (" + COLUMN_TAG + ", " + COLUMN_URI + "))");
+        db.execSQL("CREATE INDEX idx_image_tags_uri ON " + TABLE_IMAGE_TAGS + " (" + COLUMN_URI + ")");
+        db.execSQL("CREATE TABLE " + TABLE_TRIGRAMS + " ("
+                + COLUMN_TRIGRAM + " TEXT NOT NULL, "
+                + COLUMN_TAG + " TEXT NOT NULL, "
+                + "PRIMARY KEY (" + COLUMN_TRIGRAM + ", " + COLUMN_TAG + "))");
+        importExistingDetails(db);
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_IMAGE_TAGS);
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_TRIGRAMS);
+        onCreate(db);
+    }
+
+    /**
+     * One-time backfill from the tags saved before the index existed.
+     */
+    private void importExistingDetails(SQLiteDatabase db) {
+        SharedPreferences prefs = context.getSharedPreferences(ImageDetailsManager.PREFS_NAME, Context.MODE_PRIVATE);
+        Gson gson = new Gson();
+        for (Map.Entry<String, ?> entry : prefs.getAll().entrySet()) {
+            if (!(entry.getValue() instanceof String)) {
+                continue;
+            }
+            try {
+                ImageDetails details = gson.fromJson((String) entry.getValue(), ImageDetails.class);
+                if (details != null && details.getTags() != null) {
+                    insertTags(db, entry.getKey(), details.getTags());
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "Skipping unreadable details for " + entry.getKey(), e);
+            }
+        }
+    }
+
+    /**
+     * Replaces the indexed tags of one image. Call from a background thread.
+     */
+    public void setTags(String uri, List<String> tags) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            db.delete(TABLE_IMAGE_TAGS, COLUMN_URI + " = ?", new String[] { uri });
+            insertTags(db, uri, tags);
+            // Drop trigrams of tags that no image uses any more.
+            db.execSQL("DELETE FROM " + TABLE_TRIGRAMS + " WHERE " + COLUMN_TAG + " NOT IN (SELECT "
+                    + COLUMN_TAG + " FROM " + TABLE_IMAGE_TAGS + ")");
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    private static void insertTags(SQLiteDatabase db, String uri, List<String> tags) {
+        if (tags == null) {
+            return;
+        }
+        for (String tag : tags) {
+            if (tag == null || tag.trim().isEmpty()) {
+                continue;
+            }
+            String normalized = normalize(tag);
+            ContentValues values = new ContentValues();
+            values.put(COLUMN_URI, uri);
+            values.put(COLUMN_TAG, normalized);
+            db.insertWithOnConflict(TABLE_IMAGE_TAGS, null, values, SQLiteDatabase.CONFLICT_IGNORE);
+
+            for (String trigram : trigrams(normalized)) {
+                ContentValues trigramValues = new ContentValues();
+                trigramValues.put(COLUMN_TRIGRAM, trigram);
+                trigramValues.put(COLUMN_TAG, normalized);
+                db.insertWithOnConflict(TABLE_TRIGRAMS, null, trigramValues, SQLiteDatabase.CONFLICT_IGNORE);
+            }
+        }
+    }
+
+    /**
+     * Returns the URIs of images with at least one tag containing {@code query},
+     * ignoring case. Call from a background thread.
+     */
+    public Set<String> findUrisWithTagContaining(String query) {
+        Set<String> uris = new HashSet<>();
+        String normalized = normalize(query);
+        if (normalized.isEmpty()) {
+            return uris;
+        }
+        List<String> matchingTags = findTagsContaining(normalized);
+        if (matchingTags.isEmpty()) {
+            return uris;
+        }
+
+        SQLiteDatabase db = getReadableDatabase();
+        // Chunked to stay under SQLite's bound-parameter limit for very short queries.
+        for (int start = 0; start < matchingTags.size(); start += MAX_QUERY_ARGS) {
+            List<String> chunk = matchingTags.subList(start, Math.min(start + MAX_QUERY_ARGS, matchingTags.size()));
+            String sql = "SELECT " + COLUMN_URI + " FROM " + TABLE_IMAGE_TAGS + " WHERE " + COLUMN_TAG
+                    + " IN (" + placeholders(chunk.size()) + ")";
+            try (Cursor cursor = db.rawQuery(sql, chunk.toArray(new String[0]))) {
+                while (cursor.moveToNext()) {
+                    uris.add(cursor.getString(0));
+                }
+            }
+        }
+        return uris;
+    }
+
+    /**
+     * Returns the distinct indexed tags containing {@code normalized}.
+     */
+    private List<String> findTagsContaining(String normalized) {
+        SQLiteDatabase db = getReadableDatabase();
+        List<String> tags = new ArrayList<>();
+        Set<String> queryTrigrams = trigrams(normalized);
+
+        Cursor cursor;
+        if (queryTrigrams.isEmpty()) {
+            cursor = db.rawQuery("SELECT DISTINCT " + COLUMN_TAG + " FROM " + TABLE_IMAGE_TAGS, null);
+        } else {
+            // Tags holding every trigram of the query; verified below since that is necessary, not sufficient.
+            cursor = db.rawQuery("SELECT " + COLUMN_TAG + " FROM " + TABLE_TRIGRAMS + " WHERE " + COLUMN_TRIGRAM
+                    + " IN (" + placeholders(queryTrigrams.size()) + ") GROUP BY " + COLUMN_TAG
+                    + " HAVING COUNT(*) = " + queryTrigrams.size(), queryTrigrams.toArray(new String[0]));
+        }
+        try {
+            while (cursor.moveToNext()) {
+                String tag = cursor.getString(0);
+                if (tag.contains(normalized)) {
+                    tags.add(tag);
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+        return tags;
+    }
+
+    private static String normalize(String text) {
+        return text.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static Set<String> trigrams(String text) {
+        Set<String> result = new HashSet<>();
+        for (int i = 0; i + 3 <= text.length(); i++) {
+            result.add(text.substring(i, i + 3));
+        }
+        return result;
+    }
+
+    private static String placeholders(int count) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            builder.append(i == 0 ? "?" : ",?");
+        }
+        return builder.toString();
+    }
+}
@@ -36,9 +36,11 @@ import com.bretttech.gallery.R;
 import com.bretttech.gallery.VideoPlayerActivity;
 import com.bretttech.gallery.WallpaperPreviewActivity;
 import com.bretttech.gallery.data.FavoritesManager;
+import com.bretttech.gallery.data.MediaCatalog;
 import com.bretttech.gallery.databinding.FragmentAlbumDetailBinding;
 import com.bretttech.gallery.ui.common.FastScroller;
 import com.bretttech.gallery.ui.pictures.Image;
+import com.bretttech.gallery.ui.pictures.MediaList;
 import com.bretttech.gallery.ui.pictures.MoveToAlbumDialogFragment;
 import com.bretttech.gallery.ui.pictures.PicturesAdapter;
 import com.bretttech.gallery.ui.pictures.PicturesAdapter;
@@ -71,6 +73,7 @@ public class AlbumDetailFragment extends Fragment implements androidx.appcompat.
                 } else {
                     Toast.makeText(getContext(), "Failed to move item(s) to trash", Toast.LENGTH_SHORT).show();
                 }
+                MediaCatalog.getInstance(requireContext()).invalidate();
                 viewModel.loadImagesFromAlbum(albumFolderPath, bucketId);
             });
 
@@ -241,9 +244,13 @@ public class AlbumDetailFragment extends Fragment implements androidx.appcompat.
                             requireActivity().setResult(AppCompatActivity.RESULT_OK, resultIntent);
                             requireActivity().finish();
                         } else if (images != null && !images.isEmpty()) {
-                            ImageDataHolder.getInstance().setImageList(images);
+                            // The pager removes deleted items from its list; keep the ViewModel's intact.
+                            List<Image> viewerImages = images instanceof MediaList
+                                    ? ((MediaList) images).loadedItems()
+                                    : images;
+                            ImageDataHolder.getInstance().setImageList(viewerImages);
                             Intent intent = new Intent(getContext(), PhotoViewActivity.class);
-                            intent.putExtra(PhotoViewActivity.EXTRA_IMAGE_POSITION, images.indexOf(image));
+                            intent.putExtra(PhotoViewActivity.EXTRA_IMAGE_POSITION, viewerImages.indexOf(image));
 
                             View sharedView = null;
                             RecyclerView.ViewHolder viewHolder = binding.recyclerViewAlbumDetail
@@ -391,6 +398,7 @@ public class AlbumDetailFragment extends Fragment implements androidx.appcompat.
                     Toast.makeText(getContext(), uris.size() + " item(s) permanently deleted", Toast.LENGTH_SHORT)
                             .show();
                 }
+                MediaCatalog.getInstance(requireContext()).invalidate();
                 viewModel.loadImagesFromAlbum(albumFolderPath, bucketId);
             }
             for (Uri uri : uris) {
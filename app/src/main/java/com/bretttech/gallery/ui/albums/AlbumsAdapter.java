@@ -10,6 +10,8 @@ import android.widget.ImageView;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.AsyncListDiffer;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.bretttech.gallery.R;
@@ -21,13 +23,21 @@ import com.bumptech.glide.signature.ObjectKey;
 import com.google.android.material.card.MaterialCardView;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
 public class AlbumsAdapter extends RecyclerView.Adapter<AlbumsAdapter.AlbumViewHolder> {
 
-    private final List<Album> albums;
+    // Partial-bind payload: only the selection overlay changed.
+    private static final Object PAYLOAD_SELECTION = new Object();
+
+    private final AsyncListDiffer<AlbumRow> differ = new AsyncListDiffer<>(this, AlbumRow.DIFF_CALLBACK);
     private final OnAlbumClickListener listener;
     private final List<Album> selectedAlbums = new ArrayList<>();
+    // Stable ids handed out per album key, so no two albums share one. Main thread.
+    private final Map<String, Long> stableIds = new HashMap<>();
     private int spanCount;
 
     public interface OnAlbumClickListener {
@@ -37,13 +47,14 @@ public class AlbumsAdapter extends RecyclerView.Adapter<AlbumsAdapter.AlbumViewH
     }
 
     public AlbumsAdapter(List<Album> albums, OnAlbumClickListener listener) {
-        this.albums = albums != null ? albums : new ArrayList<>();
         this.listener = listener;
+        setHasStableIds(true);
+        setAlbums(albums);
     }
 
     public void setSpanCount(int spanCount) {
         this.spanCount = spanCount;
-        notifyDataSetChanged();
+        notifyItemRangeChanged(0, getItemCount());
     }
 
     @NonNull
@@ -54,23 +65,67 @@ public class AlbumsAdapter extends RecyclerView.Adapter<AlbumsAdapter.AlbumViewH
         return new AlbumViewHolder(view);
     }
 
+    @Override
+    public void onBindViewHolder(@NonNull AlbumViewHolder holder, int position, @NonNull List<Object> payloads) {
+        if (!payloads.isEmpty() && allSelectionPayloads(payloads)) {
+            Album album = differ.getCurrentList().get(position).album;
+            holder.bindSelection(selectedAlbums.contains(album));
+            return;
+        }
+        onBindViewHolder(holder, position);
+    }
+
     @Override
     public void onBindViewHolder(@NonNull AlbumViewHolder holder, int position) {
-        Album album = albums.get(position);
+        Album album = differ.getCurrentList().get(position).album;
         holder.bind(album, listener, selectedAlbums.contains(album), spanCount);
     }
 
+    private static boolean allSelectionPayloads(List<Object> payloads) {
+        for (Object payload : payloads) {
+            if (payload != PAYLOAD_SELECTION) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     @Override
     public int getItemCount() {
-        return albums.size();
+        return differ.getCurrentList().size();
     }
 
+    @Override
+    public long getItemId(int position) {
+        return differ.getCurrentList().get(position).stableId;
+    }
+
+    /**
+     * Shows {@code newAlbums}, diffing against the current list in the
+     * background so only albums whose name, count or cover changed are rebound.
+     */
     public void setAlbums(List<Album> newAlbums) {
-        albums.clear();
+        // Albums are updated in place by the ViewModel, so diff against what was bound, not the objects.
+        List<AlbumRow> rows = new ArrayList<>(newAlbums != null ? newAlbums.size() : 0);
         if (newAlbums != null) {
-            albums.addAll(newAlbums);
+            for (Album album : newAlbums) {
+                rows.add(new AlbumRow(album, stableIdOf(album)));
+            }
         }
-        notifyDataSetChanged();
+        differ.submitList(rows);
+    }
+
+    private long stableIdOf(Album album) {
+        // Albums without a folder are told apart by bucket id
+        String key = album.getFolderPath() != null
+                ? album.getFolderPath()
+                : "bucket:" + album.getBucketId();
+        Long id = stableIds.get(key);
+        if (id == null) {
+            id = (long) stableIds.size();
+            stableIds.put(key, id);
+        }
+        return id;
     }
 
     public void toggleSelection(Album album) {
@@ -79,7 +134,17 @@ public class AlbumsAdapter extends RecyclerView.Adapter<AlbumsAdapter.AlbumViewH
         } else {
             selectedAlbums.add(album);
         }
-        notifyDataSetChanged();
+        notifySelectionChanged(album);
+    }
+
+    private void notifySelectionChanged(Album album) {
+        List<AlbumRow> rows = differ.getCurrentList();
+        for (int i = 0; i < rows.size(); i++) {
+            if (rows.get(i).album == album) {
+                notifyItemChanged(i, PAYLOAD_SELECTION);
+                return;
+            }
+        }
     }
 
     public List<Album> getSelectedAlbums() {
@@ -87,8 +152,51 @@ public class AlbumsAdapter extends RecyclerView.Adapter<AlbumsAdapter.AlbumViewH
     }
 
     public void clearSelection() {
+        List<Album> previouslySelected = new ArrayList<>(selectedAlbums);
         selectedAlbums.clear();
-        notifyDataSetChanged();
+        for (Album album : previouslySelected) {
+            notifySelectionChanged(album);
+        }
+    }
+
+    /**
+     * What a cell showed for an album when it was submitted.
+     */
+    private static final class AlbumRow {
+        static final DiffUtil.ItemCallback<AlbumRow> DIFF_CALLBACK = new DiffUtil.ItemCallback<AlbumRow>() {
+            @Override
+            public boolean areItemsTheSame(@NonNull AlbumRow oldRow, @NonNull AlbumRow newRow) {
+                return oldRow.stableId == newRow.stableId;
+            }
+
+            @Override
+            public boolean areContentsTheSame(@NonNull AlbumRow oldRow, @NonNull AlbumRow newRow) {
+                return oldRow.album == newRow.album
+                        && Objects.equals(oldRow.name, newRow.name)
+                        && oldRow.imageCount == newRow.imageCount
+                        && Objects.equals(oldRow.coverUri, newRow.coverUri)
+                        && oldRow.coverVideo == newRow.coverVideo
+                        && oldRow.cacheBusterId == newRow.cacheBusterId;
+            }
+        };
+
+        final Album album;
+        final long stableId;
+        final String name;
+        final int imageCount;
+        final Uri coverUri;
+        final boolean coverVideo;
+        final long cacheBusterId;
+
+        AlbumRow(Album album, long stableId) {
+            this.album = album;
+            this.stableId = stableId;
+            this.name = album.getName();
+            this.imageCount = album.getImageCount();
+            this.coverUri = album.getCoverImageUri();
+            this.coverVideo = album.isCoverVideo();
+            this.cacheBusterId = album.getCacheBusterId();
+        }
     }
 
     static class AlbumViewHolder extends RecyclerView.ViewHolder {
@@ -140,7 +248,7 @@ public class AlbumsAdapter extends RecyclerView.Adapter<AlbumsAdapter.AlbumViewH
                 videoIndicator.setVisibility(View.GONE);
             }
 
-            selectionOverlay.setVisibility(isSelected ? View.VISIBLE : View.GONE);
+            bindSelection(isSelected);
 
             // Apply album border preferences
             boolean showBorders = SettingsActivity.isAlbumBordersEnabled(itemView.getContext());
@@ -164,6 +272,10 @@ public class AlbumsAdapter extends RecyclerView.Adapter<AlbumsAdapter.AlbumViewH
             });
         }
 
+        void bindSelection(boolean isSelected) {
+            selectionOverlay.setVisibility(isSelected ? View.VISIBLE : View.GONE);
+        }
+
         private int dpToPx(Context context, int dp) {
             float density = context.getResources().getDisplayMetrics().density;
             return Math.round(dp * density);
@@ -49,6 +49,7 @@ import androidx.transition.TransitionManager;
 import com.bretttech.gallery.R;
 import com.bretttech.gallery.SharedViewModel;
 import com.bretttech.gallery.SettingsActivity;
+import com.bretttech.gallery.data.MediaCatalog;
 import com.bretttech.gallery.ui.common.FastScroller;
 import com.bretttech.gallery.ui.pictures.Image;
 import java.io.File;
@@ -152,6 +153,7 @@ public class AlbumsFragment extends Fragment implements androidx.appcompat.view.
 
         sharedViewModel.getRefreshRequest().observe(getViewLifecycleOwner(), event -> {
             if (event.getContentIfNotHandled() != null) {
+                MediaCatalog.getInstance(requireContext()).invalidate();
                 if (actionMode == null) {
                     albumsViewModel.loadAlbums();
                 }
@@ -530,6 +532,7 @@ public class AlbumsFragment extends Fragment implements androidx.appcompat.view.
                     deleteDirectory(folder);
                 }
             }
+            MediaCatalog.getInstance(albumsViewModel.getApplication()).invalidate();
             if (isAdded()) {
                 requireActivity().runOnUiThread(() -> albumsViewModel.loadAlbums());
             }
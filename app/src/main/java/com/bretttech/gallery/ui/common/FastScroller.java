@@ -11,6 +11,7 @@ import android.view.View;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 /**
@@ -209,10 +210,7 @@ public class FastScroller extends View {
                     float newTop  = Math.max(top, Math.min(event.getY() - dragOffset, maxTop));
                     float fraction = (newTop - top) / Math.max(1f, maxTop - top);
 
-                    int scrollRange  = recyclerView.computeVerticalScrollRange();
-                    int scrollExtent = recyclerView.computeVerticalScrollExtent();
-                    int targetOffset = (int) (fraction * (scrollRange - scrollExtent));
-                    recyclerView.scrollBy(0, targetOffset - recyclerView.computeVerticalScrollOffset());
+                    scrollToFraction(fraction);
                     return true;
                 }
                 return false;
@@ -231,6 +229,36 @@ public class FastScroller extends View {
         return false;
     }
 
+    /**
+     * Scrolls to a fraction of the whole list. Linear and grid layouts jump
+     * straight to the matching adapter position, so a long drag over a paged
+     * list doesn't lay out every row in between.
+     */
+    private void scrollToFraction(float fraction) {
+        RecyclerView.LayoutManager layoutManager = recyclerView.getLayoutManager();
+        RecyclerView.Adapter<?> adapter = recyclerView.getAdapter();
+        if (layoutManager instanceof LinearLayoutManager && adapter != null && adapter.getItemCount() > 0) {
+            int target = Math.round(fraction * (adapter.getItemCount() - 1));
+            ((LinearLayoutManager) layoutManager).scrollToPositionWithOffset(target, 0);
+            // scrollToPosition doesn't report a scroll until the next layout; keep the thumb under the finger.
+            show();
+            updateThumbAt(fraction);
+            return;
+        }
+        int scrollRange  = recyclerView.computeVerticalScrollRange();
+        int scrollExtent = recyclerView.computeVerticalScrollExtent();
+        int targetOffset = (int) (fraction * (scrollRange - scrollExtent));
+        recyclerView.scrollBy(0, targetOffset - recyclerView.computeVerticalScrollOffset());
+    }
+
+    private void updateThumbAt(float fraction) {
+        float top = trackPaddingV;
+        float maxTop = getHeight() - trackPaddingV - thumbRect.height();
+        float thumbTop = top + (maxTop - top) * fraction;
+        thumbRect.offsetTo(thumbRect.left, thumbTop);
+        invalidate();
+    }
+
     /** Checks whether the touch coordinates are within the thumb's touch target. */
     private boolean isTouchingThumb(float x, float y) {
         float pad = 16 * getResources().getDisplayMetrics().density;
@@ -13,6 +13,7 @@ import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.bretttech.gallery.R;
+import com.bretttech.gallery.similarity.PerceptualHash;
 import com.bretttech.gallery.ui.pictures.Image;
 import com.bretttech.gallery.utils.DuplicateFinder;
 import com.bumptech.glide.Glide;
@@ -30,16 +31,47 @@ public class DuplicateGroupsAdapter extends RecyclerView.Adapter<DuplicateGroups
         this.context = context;
     }
 
+    /**
+     * Shows {@code groups}. While a scan streams in results each list extends
+     * the previous one, so only the new groups are inserted and the user can
+     * keep reviewing the ones already shown.
+     */
     public void setDuplicateGroups(List<DuplicateFinder.DuplicateGroup> groups) {
+        int shown = duplicateGroups.size();
+        if (groups.size() >= shown && startsWithShownGroups(groups)) {
+            if (groups.size() > shown) {
+                duplicateGroups.addAll(groups.subList(shown, groups.size()));
+                notifyItemRangeInserted(shown, groups.size() - shown);
+            }
+            return;
+        }
         this.duplicateGroups.clear();
         this.duplicateGroups.addAll(groups);
         notifyDataSetChanged();
     }
 
+    private boolean startsWithShownGroups(List<DuplicateFinder.DuplicateGroup> groups) {
+        for (int i = 0; i < duplicateGroups.size(); i++) {
+            if (groups.get(i) != duplicateGroups.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public List<DuplicateFinder.DuplicateGroup> getDuplicateGroups() {
+        return duplicateGroups;
+    }
+
     public List<Image> getSelectedDuplicates() {
         return new ArrayList<>(selectedImages);
     }
 
+    public void clearSelection() {
+        selectedImages.clear();
+        notifyDataSetChanged();
+    }
+
     @NonNull
     @Override
     public GroupViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
@@ -74,7 +106,15 @@ public class DuplicateGroupsAdapter extends RecyclerView.Adapter<DuplicateGroups
         }
 
         public void bind(DuplicateFinder.DuplicateGroup group) {
-            String matchType = group.matchType == 0 ? "Exact Match" : "Similar";
+            String matchType;
+            if (group.matchType == DuplicateFinder.DuplicateGroup.MATCH_EXACT) {
+                matchType = "Exact Match";
+            } else if (group.matchType == DuplicateFinder.DuplicateGroup.MATCH_SIMILAR_VIDEO) {
+                matchType = "Similar Video";
+            } else {
+                PerceptualHash hash = PerceptualHash.forMatchType(group.matchType);
+                matchType = hash != null ? "Similar (" + hash.label + ")" : "Similar";
+            }
             groupTitle.setText(String.format("%s (%d images)", matchType, group.images.size()));
             imagesAdapter.setImages(group.images);
         }
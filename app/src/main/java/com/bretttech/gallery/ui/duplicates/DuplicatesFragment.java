@@ -1,6 +1,12 @@
 package com.bretttech.gallery.ui.duplicates;
 
+import android.app.Activity;
+import android.app.PendingIntent;
+import android.net.Uri;
+import android.os.Build;
 import android.os.Bundle;
+import android.provider.MediaStore;
+import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -8,6 +14,9 @@ import android.widget.ProgressBar;
 import android.widget.TextView;
 import android.widget.Toast;
 
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.IntentSenderRequest;
+import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.appcompat.app.AppCompatActivity;
@@ -16,8 +25,10 @@ import androidx.lifecycle.ViewModelProvider;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
+import com.bretttech.gallery.Event;
 import com.bretttech.gallery.R;
 import com.bretttech.gallery.databinding.FragmentDuplicatesBinding;
+import com.bretttech.gallery.similarity.PerceptualHash;
 import com.bretttech.gallery.ui.pictures.Image;
 import com.bretttech.gallery.utils.DuplicateFinder;
 
@@ -31,6 +42,24 @@ public class DuplicatesFragment extends Fragment {
     private DuplicateGroupsAdapter adapter;
     private DuplicateFinder duplicateFinder;
 
+    private final ActivityResultLauncher<IntentSenderRequest> deleteResultLauncher = registerForActivityResult(
+            new ActivityResultContracts.StartIntentSenderForResult(),
+            result -> {
+                List<Image> images = viewModel.takePendingDeletion();
+                if (result.getResultCode() != Activity.RESULT_OK || images.isEmpty()) {
+                    Toast.makeText(requireContext(), "Duplicates were not deleted", Toast.LENGTH_SHORT).show();
+                    return;
+                }
+                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+                    viewModel.onDuplicatesDeleted(toUris(images));
+                    adapter.clearSelection();
+                    Toast.makeText(requireContext(), images.size() + " duplicate(s) moved to trash", Toast.LENGTH_SHORT).show();
+                } else {
+                    // Access granted on Q; delete what the first attempt couldn't.
+                    viewModel.deleteDuplicates(images);
+                }
+            });
+
     @Nullable
     @Override
     public View onCreateView(@NonNull LayoutInflater inflater, @Nullable ViewGroup container, @Nullable Bundle savedInstanceState) {
@@ -52,29 +81,22 @@ public class DuplicatesFragment extends Fragment {
             if (!images.isEmpty()) {
                 startDuplicateScan(images);
             } else {
-                binding.emptyStateMessage.setText(R.string.no_duplicates_found);
-                binding.emptyStateMessage.setVisibility(View.VISIBLE);
-                binding.progressBar.setVisibility(View.GONE);
-                binding.duplicatesRecyclerView.setVisibility(View.GONE);
+                duplicateFinder.cancel();
+                viewModel.setDuplicateGroups(new ArrayList<>());
             }
         });
 
+        // Groups stream in while the scan runs, so the list is shown (and usable) before it finishes.
         viewModel.getDuplicateGroups().observe(getViewLifecycleOwner(), groups -> {
-            if (groups != null && !groups.isEmpty()) {
-                adapter.setDuplicateGroups(groups);
-                binding.emptyStateMessage.setVisibility(View.GONE);
-                binding.duplicatesRecyclerView.setVisibility(View.VISIBLE);
-                binding.progressBar.setVisibility(View.GONE);
-                updateStatusMessage(groups);
-            } else {
-                binding.emptyStateMessage.setText(R.string.no_duplicates_found);
-                binding.emptyStateMessage.setVisibility(View.VISIBLE);
-                binding.duplicatesRecyclerView.setVisibility(View.GONE);
-                binding.progressBar.setVisibility(View.GONE);
-            }
+            adapter.setDuplicateGroups(groups != null ? groups : new ArrayList<>());
+            updateViews();
         });
+        viewModel.getScanProgress().observe(getViewLifecycleOwner(), progress -> updateViews());
+        viewModel.isScanning().observe(getViewLifecycleOwner(), scanning -> updateViews());
+        viewModel.getDeleteResult().observe(getViewLifecycleOwner(), this::onDeleteResult);
 
         // Load all images and start scan
+        viewModel.onScanStarted();
         viewModel.loadAllImages();
     }
 
@@ -86,17 +108,45 @@ public class DuplicatesFragment extends Fragment {
 
     private void setupButtons() {
         binding.buttonDeleteDuplicates.setOnClickListener(v -> deleteDuplicates());
-        binding.buttonRescan.setOnClickListener(v -> {
-            binding.progressBar.setVisibility(View.VISIBLE);
-            binding.duplicatesRecyclerView.setVisibility(View.GONE);
-            viewModel.loadAllImages();
-        });
+        binding.buttonRescan.setOnClickListener(v -> chooseSimilarityHash());
+    }
+
+    // Lets the user trade accuracy for speed, then rescans with the choice; it is kept for later scans.
+    private void chooseSimilarityHash() {
+        PerceptualHash[] hashes = PerceptualHash.values();
+        String[] labels = new String[hashes.length];
+        for (int i = 0; i < hashes.length; i++) {
+            labels[i] = formatHash(hashes[i]);
+        }
+        PerceptualHash[] chosen = {viewModel.getSimilarityHash()};
+        new androidx.appcompat.app.AlertDialog.Builder(requireContext())
+                .setTitle("Compare pictures by")
+                .setSingleChoiceItems(labels, chosen[0].ordinal(), (dialog, which) -> chosen[0] = hashes[which])
+                .setPositiveButton("Rescan", (dialog, which) -> {
+                    viewModel.setSimilarityHash(chosen[0]);
+                    binding.progressBar.setVisibility(View.VISIBLE);
+                    viewModel.loadAllImages();
+                })
+                .setNegativeButton("Cancel", null)
+                .show();
+    }
+
+    private static String formatHash(PerceptualHash hash) {
+        switch (hash) {
+            case AVERAGE:
+                return hash.label + " (fastest, misses exposure changes)";
+            case DIFFERENCE:
+                return hash.label + " (fast, steadier under exposure changes)";
+            case DCT:
+                return hash.label + " (slowest, best with recompressed or edited copies)";
+            default:
+                return hash.label;
+        }
     }
 
     private void startDuplicateScan(List<Image> images) {
-        binding.progressBar.setVisibility(View.VISIBLE);
-        binding.duplicatesRecyclerView.setVisibility(View.GONE);
-        binding.emptyStateMessage.setVisibility(View.GONE);
+        viewModel.onScanStarted();
+        duplicateFinder.setSimilarityHash(viewModel.getSimilarityHash());
 
         duplicateFinder.findDuplicates(images, new DuplicateFinder.DuplicateFinderCallback() {
             @Override
@@ -104,18 +154,54 @@ public class DuplicatesFragment extends Fragment {
                 viewModel.setDuplicateGroups(duplicateGroups);
             }
 
+            @Override
+            public void onGroupsFound(List<DuplicateFinder.DuplicateGroup> newGroups) {
+                viewModel.appendDuplicateGroups(newGroups);
+            }
+
+            @Override
+            public void onProgress(DuplicateFinder.ScanProgress progress) {
+                viewModel.setScanProgress(progress);
+            }
+
             @Override
             public void onError(String error) {
                 requireActivity().runOnUiThread(() -> {
+                    if (binding == null) return; // View destroyed while the error was posted
                     Toast.makeText(requireContext(), "Error: " + error, Toast.LENGTH_SHORT).show();
-                    binding.progressBar.setVisibility(View.GONE);
-                    binding.emptyStateMessage.setVisibility(View.VISIBLE);
-                    binding.emptyStateMessage.setText(error);
+                    viewModel.onScanStopped();
+                    if (adapter.getItemCount() == 0) {
+                        binding.emptyStateMessage.setText(error);
+                    }
                 });
             }
         });
     }
 
+    private void updateViews() {
+        boolean scanning = Boolean.TRUE.equals(viewModel.isScanning().getValue());
+        boolean hasGroups = adapter.getItemCount() > 0;
+
+        binding.progressBar.setVisibility(scanning ? View.VISIBLE : View.GONE);
+        binding.duplicatesRecyclerView.setVisibility(hasGroups ? View.VISIBLE : View.GONE);
+        if (!scanning && !hasGroups) {
+            binding.emptyStateMessage.setText(R.string.no_duplicates_found);
+            binding.emptyStateMessage.setVisibility(View.VISIBLE);
+        } else {
+            binding.emptyStateMessage.setVisibility(View.GONE);
+        }
+
+        DuplicateFinder.ScanProgress progress = viewModel.getScanProgress().getValue();
+        if (scanning && progress != null && progress.total > 0) {
+            binding.progressBar.setIndeterminate(false);
+            binding.progressBar.setMax(progress.total);
+            binding.progressBar.setProgress(progress.processed);
+        } else {
+            binding.progressBar.setIndeterminate(true);
+        }
+        updateStatusMessage(adapter.getDuplicateGroups(), scanning ? progress : null);
+    }
+
     private void deleteDuplicates() {
         List<Image> selectedImages = adapter.getSelectedDuplicates();
         if (selectedImages.isEmpty()) {
@@ -123,27 +209,79 @@ public class DuplicatesFragment extends Fragment {
             return;
         }
 
-        viewModel.deleteDuplicates(selectedImages);
-        Toast.makeText(requireContext(), selectedImages.size() + " duplicate(s) deleted", Toast.LENGTH_SHORT).show();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+            // One system prompt for the whole selection, and trashed items can still be restored.
+            try {
+                PendingIntent trashIntent = MediaStore.createTrashRequest(
+                        requireContext().getContentResolver(), toUris(selectedImages), true);
+                viewModel.setPendingDeletion(selectedImages);
+                deleteResultLauncher.launch(new IntentSenderRequest.Builder(trashIntent.getIntentSender()).build());
+            } catch (Exception e) {
+                Log.e("DuplicatesFragment", "Error creating trash request for Android R+", e);
+                Toast.makeText(requireContext(), "Error creating trash request.", Toast.LENGTH_SHORT).show();
+            }
+        } else {
+            viewModel.deleteDuplicates(selectedImages);
+        }
+    }
 
-        // Refresh the list
-        binding.progressBar.setVisibility(View.VISIBLE);
-        viewModel.loadAllImages();
+    private void onDeleteResult(Event<DuplicatesViewModel.DeleteResult> event) {
+        DuplicatesViewModel.DeleteResult result = event != null ? event.getContentIfNotHandled() : null;
+        if (result == null) return;
+        if (result.deletedCount > 0) {
+            adapter.clearSelection();
+            Toast.makeText(requireContext(), result.deletedCount + " duplicate(s) deleted", Toast.LENGTH_SHORT).show();
+        }
+        if (result.userAction != null) {
+            viewModel.setPendingDeletion(result.remaining);
+            deleteResultLauncher.launch(new IntentSenderRequest.Builder(result.userAction).build());
+        }
     }
 
-    private void updateStatusMessage(List<DuplicateFinder.DuplicateGroup> groups) {
+    private static List<Uri> toUris(List<Image> images) {
+        List<Uri> uris = new ArrayList<>(images.size());
+        for (Image image : images) {
+            uris.add(image.getUri());
+        }
+        return uris;
+    }
+
+    private void updateStatusMessage(List<DuplicateFinder.DuplicateGroup> groups,
+            @Nullable DuplicateFinder.ScanProgress progress) {
+        if (groups.isEmpty() && progress == null) {
+            binding.statusText.setVisibility(View.GONE);
+            return;
+        }
         int totalDuplicates = 0;
         for (DuplicateFinder.DuplicateGroup group : groups) {
             totalDuplicates += group.images.size() - 1; // -1 because one is the original
         }
         String message = String.format("Found %d group(s) with %d duplicate(s)", groups.size(), totalDuplicates);
+        if (progress != null) {
+            message = formatProgress(progress) + "\n" + message;
+        }
         binding.statusText.setText(message);
         binding.statusText.setVisibility(View.VISIBLE);
     }
 
+    private static String formatProgress(DuplicateFinder.ScanProgress progress) {
+        String stage = progress.stage == DuplicateFinder.ScanProgress.STAGE_EXACT
+                ? "Comparing files" : "Comparing pictures";
+        String message = String.format("%s: %d of %d (%.0f/s)", stage, progress.processed, progress.total,
+                progress.itemsPerSecond);
+        long etaSeconds = progress.getEtaMillis() / 1000;
+        if (progress.processed < progress.total && etaSeconds >= 0) {
+            message += etaSeconds < 60
+                    ? String.format(", about %d s left", etaSeconds)
+                    : String.format(", about %d min left", (etaSeconds + 59) / 60);
+        }
+        return message;
+    }
+
     @Override
     public void onDestroyView() {
         super.onDestroyView();
+        // Cancels the scan too, so queued hashing stops instead of running on without a view.
         duplicateFinder.shutdown();
         binding = null;
     }
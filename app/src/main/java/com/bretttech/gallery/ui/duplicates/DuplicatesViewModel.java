@@ -1,34 +1,95 @@
 package com.bretttech.gallery.ui.duplicates;
 
 import android.app.Application;
+import android.app.RecoverableSecurityException;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentResolver;
-import android.content.ContentUris;
-import android.database.Cursor;
+import android.content.Context;
+import android.content.IntentSender;
+import android.content.OperationApplicationException;
+import android.content.SharedPreferences;
 import android.net.Uri;
 import android.os.Build;
+import android.os.RemoteException;
 import android.provider.MediaStore;
+import android.util.Log;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.lifecycle.AndroidViewModel;
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
 
+import com.bretttech.gallery.Event;
+import com.bretttech.gallery.data.MediaCatalog;
+import com.bretttech.gallery.similarity.PerceptualHash;
 import com.bretttech.gallery.ui.pictures.Image;
 import com.bretttech.gallery.utils.DuplicateFinder;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
 public class DuplicatesViewModel extends AndroidViewModel {
 
+    private static final String TAG = "DuplicatesViewModel";
+    // Operations per applyBatch call, so one huge selection doesn't become one huge binder transaction.
+    private static final int DELETE_BATCH_SIZE = 250;
+    private static final String PREFS_NAME = "duplicates_prefs";
+    private static final String KEY_SIMILARITY_HASH = "similarity_hash";
+
+    /**
+     * Outcome of a {@link #deleteDuplicates} call. If {@link #userAction} is set, the user has to
+     * grant access before {@link #remaining} can be deleted.
+     */
+    public static class DeleteResult {
+        public final int deletedCount;
+        @Nullable
+        public final IntentSender userAction;
+        public final List<Image> remaining;
+
+        DeleteResult(int deletedCount, @Nullable IntentSender userAction, List<Image> remaining) {
+            this.deletedCount = deletedCount;
+            this.userAction = userAction;
+            this.remaining = remaining;
+        }
+    }
+
     private final MutableLiveData<List<Image>> allImages = new MutableLiveData<>();
     private final MutableLiveData<List<DuplicateFinder.DuplicateGroup>> duplicateGroups = new MutableLiveData<>();
+    private final MutableLiveData<DuplicateFinder.ScanProgress> scanProgress = new MutableLiveData<>();
+    private final MutableLiveData<Boolean> scanning = new MutableLiveData<>(false);
+    private final MutableLiveData<Event<DeleteResult>> deleteResult = new MutableLiveData<>();
+    // The selection behind the system prompt currently shown: trashed on R+, retried on Q. Main thread.
+    private List<Image> pendingDeletion = new ArrayList<>();
+    // Groups streamed in by the running scan, guarded by itself.
+    private final List<DuplicateFinder.DuplicateGroup> foundGroups = new ArrayList<>();
+    // Deleted since the scan started, so groups it hashed before the delete don't bring them back. Guarded by foundGroups.
+    private final Set<Uri> removedUris = new HashSet<>();
     private final ExecutorService executorService = Executors.newSingleThreadExecutor();
+    private final MediaCatalog mediaCatalog;
+    private final SharedPreferences prefs;
 
     public DuplicatesViewModel(@NonNull Application application) {
         super(application);
+        mediaCatalog = MediaCatalog.getInstance(application);
+        prefs = application.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * The hash similar images are grouped by, as last chosen by the user.
+     */
+    public PerceptualHash getSimilarityHash() {
+        return PerceptualHash.fromName(prefs.getString(KEY_SIMILARITY_HASH, null));
+    }
+
+    public void setSimilarityHash(PerceptualHash hash) {
+        prefs.edit().putString(KEY_SIMILARITY_HASH, hash.name()).apply();
     }
 
     public LiveData<List<Image>> getAllImages() {
@@ -39,75 +100,163 @@ public class DuplicatesViewModel extends AndroidViewModel {
         return duplicateGroups;
     }
 
+    public LiveData<DuplicateFinder.ScanProgress> getScanProgress() {
+        return scanProgress;
+    }
+
+    public LiveData<Boolean> isScanning() {
+        return scanning;
+    }
+
+    public LiveData<Event<DeleteResult>> getDeleteResult() {
+        return deleteResult;
+    }
+
+    /**
+     * Remembers the images a system delete prompt is about to be shown for, so the answer can still
+     * be applied after a configuration change. Main thread.
+     */
+    public void setPendingDeletion(List<Image> images) {
+        pendingDeletion = images;
+    }
+
+    /**
+     * Returns and forgets the images set by {@link #setPendingDeletion}. Main thread.
+     */
+    public List<Image> takePendingDeletion() {
+        List<Image> images = pendingDeletion;
+        pendingDeletion = new ArrayList<>();
+        return images;
+    }
+
+    /**
+     * Clears the previous results for a new scan. Main thread.
+     */
+    public void onScanStarted() {
+        synchronized (foundGroups) {
+            foundGroups.clear();
+            removedUris.clear();
+        }
+        scanProgress.setValue(null);
+        duplicateGroups.setValue(new ArrayList<>());
+        scanning.setValue(true);
+    }
+
+    /**
+     * Appends groups found by the running scan. Any thread.
+     */
+    public void appendDuplicateGroups(List<DuplicateFinder.DuplicateGroup> groups) {
+        synchronized (foundGroups) {
+            foundGroups.addAll(withoutRemoved(groups));
+            // A copy, so a coalesced post still shows everything found so far.
+            duplicateGroups.postValue(new ArrayList<>(foundGroups));
+        }
+    }
+
+    public void setScanProgress(DuplicateFinder.ScanProgress progress) {
+        scanProgress.postValue(progress);
+    }
+
+    /**
+     * Final results of a scan. Any thread.
+     */
     public void setDuplicateGroups(List<DuplicateFinder.DuplicateGroup> groups) {
-        duplicateGroups.postValue(groups);
+        synchronized (foundGroups) {
+            foundGroups.clear();
+            foundGroups.addAll(withoutRemoved(groups));
+            duplicateGroups.postValue(new ArrayList<>(foundGroups));
+        }
+        scanning.postValue(false);
+    }
+
+    /**
+     * Marks the scan as over without results, e.g. after an error. Main thread.
+     */
+    public void onScanStopped() {
+        scanning.setValue(false);
     }
 
     public void loadAllImages() {
+        executorService.execute(() -> allImages.postValue(mediaCatalog.sync().getImages()));
+    }
+
+    /**
+     * Deletes the images with batched provider operations, for devices without
+     * {@link MediaStore#createDeleteRequest}. On Q, items the app doesn't own stop the batch and come
+     * back in {@link DeleteResult#remaining} with the access prompt to show.
+     */
+    public void deleteDuplicates(List<Image> images) {
+        List<Image> toDelete = new ArrayList<>(images);
         executorService.execute(() -> {
-            List<Image> images = new ArrayList<>();
-            Uri queryUri = MediaStore.Files.getContentUri("external");
-
-            String[] projection = {
-                    MediaStore.Files.FileColumns._ID,
-                    MediaStore.Files.FileColumns.MEDIA_TYPE,
-                    MediaStore.Files.FileColumns.DISPLAY_NAME,
-                    MediaStore.Files.FileColumns.DATE_ADDED
-            };
-
-            String selection = MediaStore.Files.FileColumns.MEDIA_TYPE + " IN (?, ?)" +
-                    " AND " + MediaStore.MediaColumns.IS_TRASHED + " != 1";
-            String[] selectionArgs = {
-                    String.valueOf(MediaStore.Files.FileColumns.MEDIA_TYPE_IMAGE),
-                    String.valueOf(MediaStore.Files.FileColumns.MEDIA_TYPE_VIDEO)
-            };
-
-            try (Cursor cursor = getApplication().getContentResolver().query(
-                    queryUri,
-                    projection,
-                    selection,
-                    selectionArgs,
-                    null
-            )) {
-                if (cursor != null) {
-                    int idColumn = cursor.getColumnIndexOrThrow(MediaStore.Files.FileColumns._ID);
-                    int mediaTypeColumn = cursor.getColumnIndexOrThrow(MediaStore.Files.FileColumns.MEDIA_TYPE);
-                    int displayNameColumn = cursor.getColumnIndexOrThrow(MediaStore.Files.FileColumns.DISPLAY_NAME);
-                    int dateAddedColumn = cursor.getColumnIndexOrThrow(MediaStore.Files.FileColumns.DATE_ADDED);
-
-                    while (cursor.moveToNext()) {
-                        long id = cursor.getLong(idColumn);
-                        int mediaType = cursor.getInt(mediaTypeColumn);
-                        String displayName = cursor.getString(displayNameColumn);
-                        long dateAdded = cursor.getLong(dateAddedColumn);
-
-                        Uri contentUri;
-                        if (mediaType == MediaStore.Files.FileColumns.MEDIA_TYPE_VIDEO) {
-                            contentUri = ContentUris.withAppendedId(MediaStore.Video.Media.EXTERNAL_CONTENT_URI, id);
-                        } else {
-                            contentUri = ContentUris.withAppendedId(MediaStore.Images.Media.EXTERNAL_CONTENT_URI, id);
+            ContentResolver contentResolver = getApplication().getContentResolver();
+            List<Uri> deleted = new ArrayList<>();
+            IntentSender userAction = null;
+            List<Image> remaining = new ArrayList<>();
+            for (int start = 0; start < toDelete.size(); start += DELETE_BATCH_SIZE) {
+                List<Image> batch = toDelete.subList(start, Math.min(toDelete.size(), start + DELETE_BATCH_SIZE));
+                ArrayList<ContentProviderOperation> operations = new ArrayList<>(batch.size());
+                for (Image image : batch) {
+                    operations.add(ContentProviderOperation.newDelete(image.getUri()).build());
+                }
+                try {
+                    ContentProviderResult[] results = contentResolver.applyBatch(MediaStore.AUTHORITY, operations);
+                    for (int i = 0; i < results.length; i++) {
+                        if (results[i].count != null && results[i].count > 0) {
+                            deleted.add(batch.get(i).getUri());
                         }
-
-                        images.add(new Image(contentUri, mediaType, displayName, dateAdded));
                     }
+                } catch (SecurityException e) {
+                    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q && e instanceof RecoverableSecurityException) {
+                        // Items before the failing one may already be gone; deleting them again is a no-op.
+                        userAction = ((RecoverableSecurityException) e).getUserAction().getActionIntent().getIntentSender();
+                        remaining.addAll(toDelete.subList(start, toDelete.size()));
+                        break;
+                    }
+                    Log.e(TAG, "Permission denied deleting duplicates", e);
+                    break;
+                } catch (RemoteException | OperationApplicationException e) {
+                    Log.e(TAG, "Error deleting duplicates", e);
                 }
             }
-
-            allImages.postValue(images);
+            onDuplicatesDeleted(deleted);
+            deleteResult.postValue(new Event<>(new DeleteResult(deleted.size(), userAction, remaining)));
         });
     }
 
-    public void deleteDuplicates(List<Image> images) {
-        executorService.execute(() -> {
-            ContentResolver contentResolver = getApplication().getContentResolver();
-            for (Image image : images) {
-                try {
-                    contentResolver.delete(image.getUri(), null, null);
-                } catch (Exception e) {
-                    e.printStackTrace();
+    /**
+     * Drops deleted items from the shown groups instead of rescanning, and groups left with a single
+     * item. Any thread.
+     */
+    public void onDuplicatesDeleted(Collection<Uri> uris) {
+        if (uris.isEmpty()) return;
+        synchronized (foundGroups) {
+            removedUris.addAll(uris);
+            List<DuplicateFinder.DuplicateGroup> kept = withoutRemoved(foundGroups);
+            foundGroups.clear();
+            foundGroups.addAll(kept);
+            duplicateGroups.postValue(new ArrayList<>(foundGroups));
+        }
+        mediaCatalog.invalidate();
+    }
+
+    // Callers hold foundGroups. Unchanged groups are kept as they are.
+    private List<DuplicateFinder.DuplicateGroup> withoutRemoved(List<DuplicateFinder.DuplicateGroup> groups) {
+        if (removedUris.isEmpty()) return groups;
+        List<DuplicateFinder.DuplicateGroup> kept = new ArrayList<>(groups.size());
+        for (DuplicateFinder.DuplicateGroup group : groups) {
+            List<Image> images = new ArrayList<>(group.images.size());
+            for (Image image : group.images) {
+                if (!removedUris.contains(image.getUri())) {
+                    images.add(image);
                 }
             }
-        });
+            if (images.size() == group.images.size()) {
+                kept.add(group);
+            } else if (images.size() > 1) {
+                kept.add(new DuplicateFinder.DuplicateGroup(images, group.matchType));
+            }
+        }
+        return kept;
     }
 
     @Override
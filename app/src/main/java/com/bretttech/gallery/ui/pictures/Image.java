@@ -3,19 +3,32 @@ package com.bretttech.gallery.ui.pictures;
 import android.net.Uri;
 import android.os.Parcel;
 import android.os.Parcelable;
+import com.bretttech.gallery.data.MediaCatalog;
 import java.util.Objects;
 
 public class Image implements Parcelable {
     public static final int MEDIA_TYPE_IMAGE = 1;
     public static final int MEDIA_TYPE_VIDEO = 3;
 
-    private final Uri uri;
+    private Uri uri; // Built lazily for catalog items
+    private final long mediaStoreId;
     private final int mediaType;
     private final String displayName; // Added for filename
     private final long dateAdded;     // Added for date
 
     public Image(Uri uri, int mediaType, String displayName, long dateAdded) {
         this.uri = uri;
+        this.mediaStoreId = -1;
+        this.mediaType = mediaType;
+        this.displayName = displayName;
+        this.dateAdded = dateAdded;
+    }
+
+    /**
+     * A MediaStore item whose Uri is only built if someone asks for it.
+     */
+    public Image(long mediaStoreId, int mediaType, String displayName, long dateAdded) {
+        this.mediaStoreId = mediaStoreId;
         this.mediaType = mediaType;
         this.displayName = displayName;
         this.dateAdded = dateAdded;
@@ -23,6 +36,7 @@ public class Image implements Parcelable {
 
     protected Image(Parcel in) {
         uri = in.readParcelable(Uri.class.getClassLoader());
+        mediaStoreId = -1;
         mediaType = in.readInt();
         displayName = in.readString();
         dateAdded = in.readLong();
@@ -41,9 +55,19 @@ public class Image implements Parcelable {
     };
 
     public Uri getUri() {
+        if (uri == null && mediaStoreId != -1) {
+            uri = MediaCatalog.contentUriFor(mediaStoreId, mediaType);
+        }
         return uri;
     }
 
+    /**
+     * The MediaStore _ID when this Image came from the catalog, otherwise -1.
+     */
+    public long getMediaStoreId() {
+        return mediaStoreId;
+    }
+
     public boolean isVideo() {
         return mediaType == MEDIA_TYPE_VIDEO;
     }
@@ -65,12 +89,15 @@ public class Image implements Parcelable {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         Image image = (Image) o;
-        return Objects.equals(uri, image.uri);
+        if (mediaStoreId != -1 && image.mediaStoreId != -1) {
+            return mediaStoreId == image.mediaStoreId;
+        }
+        return Objects.equals(getUri(), image.getUri());
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(uri);
+        return Objects.hash(getUri());
     }
 
     @Override
@@ -80,7 +107,7 @@ public class Image implements Parcelable {
 
     @Override
     public void writeToParcel(Parcel dest, int flags) {
-        dest.writeParcelable(uri, flags);
+        dest.writeParcelable(getUri(), flags);
         dest.writeInt(mediaType);
         dest.writeString(displayName);
         dest.writeLong(dateAdded);
@@ -0,0 +1,491 @@
+package com.bretttech.gallery.ui.pictures;
+
+import android.net.Uri;
+
+import com.bretttech.gallery.data.MediaCatalog;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * Columnar list of media items: MediaStore ids, media types, dates and names in
+ * parallel arrays. Uris and {@link Image}s are only built when asked for, so a
+ * 100k-item grid keeps a few flat arrays on the heap instead of 100k Image and
+ * Uri objects. Adapters bind straight from the per-position getters.
+ *
+ * Items that are not MediaStore rows (e.g. secure-folder files) keep their Uri.
+ * The list is read-only apart from {@link #remove(int)}, which PhotoViewActivity
+ * uses when an item is deleted from the pager. Lists derived from one another
+ * share their arrays, so remove copies them first and leaves the others intact.
+ *
+ * A windowed list (see {@link #withPlaceholders}) holds one contiguous run of
+ * loaded items inside a longer list. The positions around it are placeholders:
+ * {@link #get} returns null for them and the column getters return empty values.
+ * Only the pictures adapter sees placeholders; anything handed elsewhere, such
+ * as the viewer's list, should be {@link #loadedItems()}.
+ */
+public final class MediaList extends AbstractList<Image> implements RandomAccess {
+
+    private static final long NO_ID = -1;
+    // Positions are packed below the id in the lookup index; 2^24 items is far above any real library.
+    private static final int POSITION_BITS = 24;
+
+    private long[] ids;
+    private int[] mediaTypes;
+    private long[] datesAdded;
+    private String[] displayNames;
+    private Uri[] uris; // null, or an explicit Uri where ids[i] == NO_ID
+    private int size; // Loaded items
+    private int leading; // Placeholders before the loaded items
+    private int trailing; // Placeholders after them
+    private volatile long[] idIndex; // Built lazily; may be read from a diffing thread
+
+    private MediaList(long[] ids, int[] mediaTypes, long[] datesAdded, String[] displayNames, Uri[] uris, int size) {
+        this.ids = ids;
+        this.mediaTypes = mediaTypes;
+        this.datesAdded = datesAdded;
+        this.displayNames = displayNames;
+        this.uris = uris;
+        this.size = size;
+    }
+
+    /**
+     * Returns {@code loaded} placed at position {@code leading} of a list of
+     * {@code leading + loaded.size() + trailing} items. The arrays are shared,
+     * not copied.
+     */
+    public static MediaList withPlaceholders(MediaList loaded, int leading, int trailing) {
+        MediaList result = new MediaList(loaded.ids, loaded.mediaTypes, loaded.datesAdded, loaded.displayNames,
+                loaded.uris, loaded.size);
+        result.leading = leading;
+        result.trailing = trailing;
+        return result;
+    }
+
+    public static MediaList empty() {
+        return new Builder(0).build();
+    }
+
+    /**
+     * Returns an independent copy. Copying another MediaList is a handful of
+     * array copies; any other list is converted item by item.
+     */
+    public static MediaList copyOf(List<Image> images) {
+        if (images instanceof MediaList) {
+            MediaList other = (MediaList) images;
+            MediaList copy = new MediaList(Arrays.copyOf(other.ids, other.size),
+                    Arrays.copyOf(other.mediaTypes, other.size), Arrays.copyOf(other.datesAdded, other.size),
+                    Arrays.copyOf(other.displayNames, other.size),
+                    other.uris != null ? Arrays.copyOf(other.uris, other.size) : null, other.size);
+            copy.leading = other.leading;
+            copy.trailing = other.trailing;
+            return copy;
+        }
+        Builder builder = new Builder(images != null ? images.size() : 0);
+        if (images != null) {
+            for (Image image : images) {
+                builder.add(image);
+            }
+        }
+        return builder.build();
+    }
+
+    @Override
+    public int size() {
+        return leading + size + trailing;
+    }
+
+    /**
+     * Number of loaded (non-placeholder) items.
+     */
+    public int getLoadedCount() {
+        return size;
+    }
+
+    /**
+     * Position of the first loaded item.
+     */
+    public int getLoadedStart() {
+        return leading;
+    }
+
+    /**
+     * The loaded items without the surrounding placeholders, as a new list that
+     * shares the arrays. Removing from it leaves this list unchanged.
+     */
+    public MediaList loadedItems() {
+        return withPlaceholders(this, 0, 0);
+    }
+
+    public boolean isPlaceholder(int position) {
+        return toIndex(position) < 0;
+    }
+
+    /**
+     * Returns the item, or null for a placeholder.
+     */
+    @Override
+    public Image get(int position) {
+        int i = toIndex(position);
+        if (i < 0) {
+            return null;
+        }
+        if (ids[i] == NO_ID) {
+            return new Image(uris[i], mediaTypes[i], displayNames[i], datesAdded[i]);
+        }
+        return new Image(ids[i], mediaTypes[i], displayNames[i], datesAdded[i]);
+    }
+
+    /**
+     * MediaStore _ID of the item, or -1 if it is not a MediaStore row.
+     */
+    public long getId(int position) {
+        int i = toIndex(position);
+        return i >= 0 ? ids[i] : NO_ID;
+    }
+
+    public int getMediaType(int position) {
+        int i = toIndex(position);
+        return i >= 0 ? mediaTypes[i] : 0;
+    }
+
+    public boolean isVideo(int position) {
+        return getMediaType(position) == Image.MEDIA_TYPE_VIDEO;
+    }
+
+    public long getDateAdded(int position) {
+        int i = toIndex(position);
+        return i >= 0 ? datesAdded[i] : 0;
+    }
+
+    public String getDisplayName(int position) {
+        int i = toIndex(position);
+        return i >= 0 ? displayNames[i] : null;
+    }
+
+    /**
+     * Returns the item's Uri, or null for a placeholder.
+     */
+    public Uri getUri(int position) {
+        int i = toIndex(position);
+        if (i < 0) {
+            return null;
+        }
+        if (ids[i] == NO_ID) {
+            return uris[i];
+        }
+        return MediaCatalog.contentUriFor(ids[i], mediaTypes[i]);
+    }
+
+    /**
+     * Id for {@link androidx.recyclerview.widget.RecyclerView.Adapter#getItemId}:
+     * the MediaStore _ID, or a negative 64-bit hash of the Uri for other items so
+     * the two ranges never collide.
+     */
+    public long getStableId(int position) {
+        int i = toIndex(position);
+        if (i < 0) {
+            return Long.MIN_VALUE + position; // Bit 62 clear, so never equal to a Uri hash
+        }
+        if (ids[i] != NO_ID) {
+            return ids[i];
+        }
+        String key = String.valueOf(uris[i]);
+        long hash = 0xcbf29ce484222325L; // FNV-1a
+        for (int c = 0; c < key.length(); c++) {
+            hash ^= key.charAt(c);
+            hash *= 0x100000001b3L;
+        }
+        return hash | 0xc000000000000000L;
+    }
+
+    /**
+     * Whether the item at {@code position} is the same media item as
+     * {@code other}'s item at {@code otherPosition}. No objects are built.
+     */
+    public boolean isSameItem(int position, MediaList other, int otherPosition) {
+        boolean placeholder = isPlaceholder(position);
+        if (placeholder || other.isPlaceholder(otherPosition)) {
+            return placeholder && other.isPlaceholder(otherPosition) && position == otherPosition;
+        }
+        long id = getId(position);
+        if (id != other.getId(otherPosition)) {
+            return false;
+        }
+        return id != NO_ID || getUri(position).equals(other.getUri(otherPosition));
+    }
+
+    /**
+     * Whether the two items would render the same, assuming they are the same item.
+     */
+    public boolean hasSameContents(int position, MediaList other, int otherPosition) {
+        return getMediaType(position) == other.getMediaType(otherPosition)
+                && getDateAdded(position) == other.getDateAdded(otherPosition)
+                && Objects.equals(getDisplayName(position), other.getDisplayName(otherPosition));
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        if (!(o instanceof Image)) {
+            return -1;
+        }
+        Image image = (Image) o;
+        if (image.getMediaStoreId() != NO_ID) {
+            return positionOfId(image.getMediaStoreId());
+        }
+        return positionOf(image.getUri());
+    }
+
+    /**
+     * Position of the item with this Uri, or -1.
+     */
+    public int positionOf(Uri uri) {
+        if (uri == null) {
+            return -1;
+        }
+        int position = positionOfId(MediaCatalog.idOf(uri));
+        if (position >= 0 && uri.equals(getUri(position))) {
+            return position;
+        }
+        if (uris != null) {
+            for (int i = 0; i < size; i++) {
+                if (ids[i] == NO_ID && uri.equals(uris[i])) {
+                    return leading + i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Position of the MediaStore item with this id, or -1. Binary search over an
+     * index built on first use.
+     */
+    public int positionOfId(long id) {
+        if (id == NO_ID) {
+            return -1;
+        }
+        long[] index = idIndex;
+        if (index == null) {
+            index = new long[size];
+            int count = 0;
+            for (int i = 0; i < size; i++) {
+                if (ids[i] != NO_ID) {
+                    index[count++] = (ids[i] << POSITION_BITS) | i;
+                }
+            }
+            index = Arrays.copyOf(index, count);
+            Arrays.sort(index);
+            idIndex = index;
+        }
+        int low = 0;
+        int high = index.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long midId = index[mid] >>> POSITION_BITS;
+            if (midId < id) {
+                low = mid + 1;
+            } else if (midId > id) {
+                high = mid - 1;
+            } else {
+                return leading + (int) (index[mid] & ((1L << POSITION_BITS) - 1));
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public int lastIndexOf(Object o) {
+        return indexOf(o);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return indexOf(o) >= 0;
+    }
+
+    /**
+     * Returns a copy without the given items. Each Uri is found with a binary
+     * search on its id, and the survivors are compacted in one pass of bulk
+     * array copies.
+     */
+    public MediaList without(Collection<Uri> urisToRemove) {
+        boolean[] removed = new boolean[size];
+        int removedCount = 0;
+        for (Uri uri : urisToRemove) {
+            int i = positionOf(uri) - leading;
+            if (i >= 0 && !removed[i]) {
+                removed[i] = true;
+                removedCount++;
+            }
+        }
+        if (removedCount == 0) {
+            return copyOf(this);
+        }
+
+        int newSize = size - removedCount;
+        MediaList result = new MediaList(new long[newSize], new int[newSize], new long[newSize],
+                new String[newSize], uris != null ? new Uri[newSize] : null, 0);
+        result.leading = leading;
+        result.trailing = trailing;
+        int runStart = 0;
+        for (int i = 0; i <= size; i++) {
+            if (i == size || removed[i]) {
+                result.appendRange(this, runStart, i - runStart);
+                runStart = i + 1;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns a copy in reverse order, e.g. oldest first for a newest-first list.
+     */
+    public MediaList reversed() {
+        Builder builder = new Builder(size);
+        for (int i = size - 1; i >= 0; i--) {
+            builder.addFrom(this, leading + i);
+        }
+        return withPlaceholders(builder.build(), trailing, leading);
+    }
+
+    @Override
+    public Image remove(int position) {
+        checkIndex(position);
+        Image removed = get(position);
+        int i = toIndex(position);
+        if (i < 0) {
+            if (position < leading) {
+                leading--;
+            } else {
+                trailing--;
+            }
+            modCount++;
+            return null;
+        }
+        // Copy-on-write: the arrays may be shared with the list this one was derived from
+        MediaList source = withPlaceholders(this, 0, 0);
+        int newSize = size - 1;
+        ids = new long[newSize];
+        mediaTypes = new int[newSize];
+        datesAdded = new long[newSize];
+        displayNames = new String[newSize];
+        uris = source.uris != null ? new Uri[newSize] : null;
+        size = 0;
+        appendRange(source, 0, i);
+        appendRange(source, i + 1, newSize - i);
+        idIndex = null;
+        modCount++;
+        return removed;
+    }
+
+    private void appendRange(MediaList source, int start, int length) {
+        if (length <= 0) {
+            return;
+        }
+        System.arraycopy(source.ids, start, ids, size, length);
+        System.arraycopy(source.mediaTypes, start, mediaTypes, size, length);
+        System.arraycopy(source.datesAdded, start, datesAdded, size, length);
+        System.arraycopy(source.displayNames, start, displayNames, size, length);
+        if (source.uris != null) {
+            System.arraycopy(source.uris, start, uris, size, length);
+        }
+        size += length;
+    }
+
+    // Index into the arrays, or -1 for a placeholder position.
+    private int toIndex(int position) {
+        checkIndex(position);
+        int i = position - leading;
+        return i < size ? i : -1;
+    }
+
+    private void checkIndex(int position) {
+        if (position < 0 || position >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + position + ", Size: " + size());
+        }
+    }
+
+    /**
+     * Appends items column by column. Names are stored as-is; MediaStore already
+     * hands the catalog one String per row, so nothing is duplicated.
+     */
+    public static final class Builder {
+        private long[] ids;
+        private int[] mediaTypes;
+        private long[] datesAdded;
+        private String[] displayNames;
+        private Uri[] uris;
+        private int size = 0;
+
+        public Builder(int capacity) {
+            int initial = Math.max(capacity, 8);
+            ids = new long[initial];
+            mediaTypes = new int[initial];
+            datesAdded = new long[initial];
+            displayNames = new String[initial];
+        }
+
+        public Builder add(long id, int mediaType, String displayName, long dateAdded) {
+            ensureCapacity();
+            ids[size] = id;
+            mediaTypes[size] = mediaType;
+            displayNames[size] = displayName;
+            datesAdded[size] = dateAdded;
+            size++;
+            return this;
+        }
+
+        public Builder add(Image image) {
+            long id = image.getMediaStoreId();
+            if (id != NO_ID) {
+                return add(id, image.getMediaType(), image.getDisplayName(), image.getDateAdded());
+            }
+            add(NO_ID, image.getMediaType(), image.getDisplayName(), image.getDateAdded());
+            if (uris == null) {
+                uris = new Uri[ids.length];
+            }
+            uris[size - 1] = image.getUri();
+            return this;
+        }
+
+        /**
+         * Appends {@code source}'s item at {@code position}, which must not be a placeholder.
+         */
+        public Builder addFrom(MediaList source, int position) {
+            int i = source.toIndex(position);
+            add(source.ids[i], source.mediaTypes[i], source.displayNames[i], source.datesAdded[i]);
+            if (source.uris != null && source.ids[i] == NO_ID) {
+                if (uris == null) {
+                    uris = new Uri[ids.length];
+                }
+                uris[size - 1] = source.uris[i];
+            }
+            return this;
+        }
+
+        private void ensureCapacity() {
+            if (size < ids.length) {
+                return;
+            }
+            int newLength = ids.length * 2;
+            ids = Arrays.copyOf(ids, newLength);
+            mediaTypes = Arrays.copyOf(mediaTypes, newLength);
+            datesAdded = Arrays.copyOf(datesAdded, newLength);
+            displayNames = Arrays.copyOf(displayNames, newLength);
+            if (uris != null) {
+                uris = Arrays.copyOf(uris, newLength);
+            }
+        }
+
+        public MediaList build() {
+            return new MediaList(Arrays.copyOf(ids, size), Arrays.copyOf(mediaTypes, size),
+                    Arrays.copyOf(datesAdded, size), Arrays.copyOf(displayNames, size),
+                    uris != null ? Arrays.copyOf(uris, size) : null, size);
+        }
+    }
+}
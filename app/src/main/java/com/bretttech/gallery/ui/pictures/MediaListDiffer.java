@@ -0,0 +1,148 @@
+package com.bretttech.gallery.ui.pictures;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.Nullable;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Diffs {@link MediaList}s off the main thread and dispatches only the changed
+ * ranges to an adapter, like AsyncListDiffer but comparing ids column by column
+ * instead of building an Image per comparison.
+ *
+ * DiffUtil runs in O(N + D^2) for D edits, so re-sorts and bulk replacements
+ * (where D is close to N) fall back to a plain full refresh instead of a
+ * multi-second diff.
+ */
+public final class MediaListDiffer {
+
+    // Beyond this many insertions and removals a full refresh is cheaper than the diff.
+    private static final int MAX_DIFF_EDITS = 5000;
+
+    private static final ExecutorService DIFF_EXECUTOR = Executors.newSingleThreadExecutor();
+
+    private final RecyclerView.Adapter<?> adapter;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private MediaList currentList = MediaList.empty();
+    private int generation = 0; // Main thread only
+
+    public MediaListDiffer(RecyclerView.Adapter<?> adapter) {
+        this.adapter = adapter;
+    }
+
+    public MediaList getCurrentList() {
+        return currentList;
+    }
+
+    /**
+     * Replaces the displayed list. The list must not be modified afterwards.
+     * {@code commitCallback} runs on the main thread once the list is shown.
+     */
+    public void submitList(MediaList newList, @Nullable Runnable commitCallback) {
+        int runGeneration = ++generation;
+        MediaList oldList = currentList;
+        if (oldList.isEmpty() || newList.isEmpty()) {
+            commit(newList, null, commitCallback);
+            return;
+        }
+        DIFF_EXECUTOR.execute(() -> {
+            DiffUtil.DiffResult result = isWorthDiffing(oldList, newList)
+                    ? DiffUtil.calculateDiff(new Callback(oldList, newList), false)
+                    : null;
+            mainHandler.post(() -> {
+                if (runGeneration == generation) {
+                    commit(newList, result, commitCallback);
+                }
+            });
+        });
+    }
+
+    private void commit(MediaList newList, @Nullable DiffUtil.DiffResult result, @Nullable Runnable commitCallback) {
+        MediaList oldList = currentList;
+        currentList = newList;
+        if (result != null) {
+            result.dispatchUpdatesTo(adapter);
+        } else if (oldList.isEmpty()) {
+            adapter.notifyItemRangeInserted(0, newList.size());
+        } else if (newList.isEmpty()) {
+            adapter.notifyItemRangeRemoved(0, oldList.size());
+        } else {
+            adapter.notifyDataSetChanged();
+        }
+        if (commitCallback != null) {
+            commitCallback.run();
+        }
+    }
+
+    /**
+     * Counts insertions and removals with id lookups and rejects reversed
+     * orderings, which DiffUtil sees as N moves. Placeholders only match
+     * placeholders at the same position.
+     */
+    private static boolean isWorthDiffing(MediaList oldList, MediaList newList) {
+        int inserted = 0;
+        int firstKept = -1;
+        int lastKept = -1;
+        for (int i = 0; i < newList.size(); i++) {
+            if (newList.isPlaceholder(i)) {
+                if (i >= oldList.size() || !oldList.isPlaceholder(i)) {
+                    inserted++;
+                    if (inserted > MAX_DIFF_EDITS) {
+                        return false;
+                    }
+                }
+                continue;
+            }
+            long id = newList.getId(i);
+            int oldPosition = id >= 0 ? oldList.positionOfId(id) : oldList.positionOf(newList.getUri(i));
+            if (oldPosition < 0) {
+                inserted++;
+                if (inserted > MAX_DIFF_EDITS) {
+                    return false;
+                }
+                continue;
+            }
+            if (firstKept < 0) {
+                firstKept = oldPosition;
+            }
+            lastKept = oldPosition;
+        }
+        int removed = oldList.size() - (newList.size() - inserted);
+        return inserted + removed <= MAX_DIFF_EDITS && firstKept <= lastKept;
+    }
+
+    private static final class Callback extends DiffUtil.Callback {
+        private final MediaList oldList;
+        private final MediaList newList;
+
+        Callback(MediaList oldList, MediaList newList) {
+            this.oldList = oldList;
+            this.newList = newList;
+        }
+
+        @Override
+        public int getOldListSize() {
+            return oldList.size();
+        }
+
+        @Override
+        public int getNewListSize() {
+            return newList.size();
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+            return oldList.isSameItem(oldItemPosition, newList, newItemPosition);
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+            return oldList.hasSameContents(oldItemPosition, newList, newItemPosition);
+        }
+    }
+}
@@ -1,16 +1,16 @@
 package com.bretttech.gallery.ui.pictures;
 
+import android.app.Activity;
 import android.app.Dialog;
-import android.content.ContentResolver;
+import android.app.PendingIntent;
 import android.content.Context;
 import android.content.Intent;
-import android.database.Cursor;
-import android.media.MediaScannerConnection;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
 import android.os.Environment;
 import android.provider.MediaStore;
+import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -18,6 +18,9 @@ import android.widget.Button;
 import android.widget.EditText;
 import android.widget.TextView;
 import android.widget.Toast;
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.IntentSenderRequest;
+import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.appcompat.app.AlertDialog;
@@ -27,16 +30,13 @@ import androidx.recyclerview.widget.GridLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 import com.bretttech.gallery.R;
 import com.bretttech.gallery.SharedViewModel;
+import com.bretttech.gallery.data.MediaCatalog;
 import com.bretttech.gallery.ui.albums.Album;
 import com.bretttech.gallery.ui.albums.AlbumsAdapter;
 import com.bretttech.gallery.ui.albums.AlbumsViewModel;
+import com.bretttech.gallery.utils.MediaMover;
 import com.google.android.material.bottomsheet.BottomSheetDialogFragment;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
@@ -53,10 +53,14 @@ public class MoveToAlbumDialogFragment extends BottomSheetDialogFragment {
     private static final String ARG_URIS = "uris_to_move";
     private static final String ARG_IS_SECURE_MOVE = "is_secure_move";
     private static final String ARG_IS_MOVING_OUT_OF_SECURE = "is_moving_out_of_secure";
+    private static final String STATE_PENDING_ALBUM_PATH = "pending_album_path";
 
     private List<Uri> urisToMove;
     private boolean isSecureMove = false;
     private boolean isMovingOutOfSecure = false;
+    // Destination of a move waiting on the write-access prompt
+    @Nullable
+    private String pendingAlbumPath;
 
     private RecyclerView albumsRecyclerView;
     private EditText newAlbumNameEditText;
@@ -68,6 +72,25 @@ public class MoveToAlbumDialogFragment extends BottomSheetDialogFragment {
 
     private final ExecutorService executor = Executors.newSingleThreadExecutor();
 
+    private final ActivityResultLauncher<IntentSenderRequest> writeResultLauncher = registerForActivityResult(
+            new ActivityResultContracts.StartIntentSenderForResult(),
+            result -> {
+                // Declined: items the app doesn't own are copied instead and their originals need a delete prompt
+                String albumPath = pendingAlbumPath;
+                pendingAlbumPath = null;
+                if (albumPath != null) {
+                    runMove(albumPath);
+                }
+            });
+
+    private final ActivityResultLauncher<IntentSenderRequest> deleteResultLauncher = registerForActivityResult(
+            new ActivityResultContracts.StartIntentSenderForResult(),
+            result -> {
+                // Declined: the files were still copied, but the originals stay too
+                MediaCatalog.getInstance(requireContext()).invalidate();
+                finishMove(result.getResultCode() == Activity.RESULT_OK);
+            });
+
     public static MoveToAlbumDialogFragment newInstance(List<Uri> uris, boolean isSecureMove) {
         MoveToAlbumDialogFragment fragment = new MoveToAlbumDialogFragment();
         Bundle args = new Bundle();
@@ -96,6 +119,15 @@ public class MoveToAlbumDialogFragment extends BottomSheetDialogFragment {
         if (urisToMove == null) {
             urisToMove = new ArrayList<>();
         }
+        if (savedInstanceState != null) {
+            pendingAlbumPath = savedInstanceState.getString(STATE_PENDING_ALBUM_PATH);
+        }
+    }
+
+    @Override
+    public void onSaveInstanceState(@NonNull Bundle outState) {
+        super.onSaveInstanceState(outState);
+        outState.putString(STATE_PENDING_ALBUM_PATH, pendingAlbumPath);
     }
 
     @Nullable
@@ -180,138 +212,72 @@ public class MoveToAlbumDialogFragment extends BottomSheetDialogFragment {
     }
 
     private void startMoveOperation(String albumPath) {
+        List<Uri> renamable = MediaMover.renameCandidates(urisToMove, new File(albumPath));
+        if (!renamable.isEmpty() && Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+            // One prompt for the batch, so items the app didn't create are renamed in place, not copied
+            try {
+                PendingIntent writeIntent = MediaStore.createWriteRequest(requireContext().getContentResolver(),
+                        renamable);
+                pendingAlbumPath = albumPath;
+                writeResultLauncher.launch(new IntentSenderRequest.Builder(writeIntent.getIntentSender()).build());
+                return;
+            } catch (Exception e) {
+                Log.e(TAG, "Error creating write request, moving by copy", e);
+                pendingAlbumPath = null;
+            }
+        }
+        runMove(albumPath);
+    }
+
+    private void runMove(String albumPath) {
         String albumName = new File(albumPath).getName();
+        Context appContext = requireContext().getApplicationContext();
         Toast.makeText(getContext(), "Moving " + urisToMove.size() + " items to " + albumName + "...", Toast.LENGTH_LONG).show();
         executor.execute(() -> {
-            boolean success = moveMedia(albumPath);
+            MediaMover.BatchResult result = moveMedia(appContext, albumPath);
+            MediaCatalog.getInstance(appContext).invalidate();
             if (isAdded()) {
                 requireActivity().runOnUiThread(() -> {
-                    if (success) {
-                        Toast.makeText(getContext(), "Move completed successfully.", Toast.LENGTH_SHORT).show();
+                    if (result != null && !result.sourcesNeedingConsent.isEmpty()
+                            && Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+                        // Copies are in place; one prompt removes every original the app doesn't own
+                        requestSourceDeletion(result.sourcesNeedingConsent);
                     } else {
-                        Toast.makeText(getContext(), "Move failed.", Toast.LENGTH_SHORT).show();
+                        finishMove(result != null && result.failedCount == 0);
                     }
-                    notifyCallingFragment(success);
-                    dismiss();
                 });
             }
         });
     }
 
-    private boolean moveMedia(String albumPath) {
-        boolean allSuccess = true;
-
-        File destinationDir = new File(albumPath);
-        if (!destinationDir.exists() && !destinationDir.mkdirs()) {
-            return false; // Failed to create directory
-        }
-
-        List<Uri> urisToDelete = new ArrayList<>();
-
-        for (Uri sourceUri : urisToMove) {
-            try {
-                String displayName = getFileNameFromUri(sourceUri);
-                if (displayName == null) {
-                    displayName = "file_" + System.currentTimeMillis(); // Fallback filename
-                }
-
-                File destinationFile = new File(destinationDir, displayName);
-                destinationFile = ensureUniqueFile(destinationFile);
-
-                if (isMovingOutOfSecure) {
-                    File sourceFile = new File(sourceUri.getPath());
-                    try (InputStream in = new FileInputStream(sourceFile);
-                         OutputStream out = new FileOutputStream(destinationFile)) {
-                        byte[] buf = new byte[8192];
-                        int len;
-                        while ((len = in.read(buf)) > 0) {
-                            out.write(buf, 0, len);
-                        }
-                        // delete original only after successful copy
-                        //noinspection ResultOfMethodCallIgnored
-                        sourceFile.delete();
-                        scanFile(requireContext(), destinationFile.getAbsolutePath());
-                    } catch (Exception e) {
-                        e.printStackTrace();
-                        allSuccess = false;
-                    }
-                } else {
-                    copyStream(requireContext().getContentResolver().openInputStream(sourceUri), new FileOutputStream(destinationFile));
-                    urisToDelete.add(sourceUri);
-                    scanFile(requireContext(), destinationFile.getAbsolutePath());
-                }
-
-            } catch (Exception e) {
-                e.printStackTrace();
-                allSuccess = false;
-            }
-        }
-
-        if (!urisToDelete.isEmpty() && allSuccess) {
-            try {
-                ContentResolver resolver = requireContext().getContentResolver();
-                for (Uri uri : urisToDelete) {
-                    resolver.delete(uri, null, null);
-                }
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
-        }
-
-        return allSuccess;
-    }
-
-    private File ensureUniqueFile(File file) {
-        if (!file.exists()) return file;
-        String name = file.getName();
-        String base = name;
-        String ext = "";
-        int dot = name.lastIndexOf('.');
-        if (dot != -1) {
-            base = name.substring(0, dot);
-            ext = name.substring(dot);
+    private void requestSourceDeletion(List<Uri> sources) {
+        try {
+            PendingIntent deleteIntent = MediaStore.createDeleteRequest(requireContext().getContentResolver(), sources);
+            deleteResultLauncher.launch(new IntentSenderRequest.Builder(deleteIntent.getIntentSender()).build());
+        } catch (Exception e) {
+            Log.e(TAG, "Error creating delete request for moved originals", e);
+            finishMove(false);
         }
-        int i = 1;
-        File candidate;
-        do {
-            candidate = new File(file.getParentFile(), base + "(" + i + ")" + ext);
-            i++;
-        } while (candidate.exists());
-        return candidate;
-    }
-
-    private void scanFile(Context context, String path) {
-        if (context == null || path == null) return;
-        MediaScannerConnection.scanFile(context, new String[]{path}, null, null);
     }
 
-    private String getFileNameFromUri(Uri uri) {
-        String displayName = null;
-        if (uri.getScheme().equals("content")) {
-            String[] projection = { MediaStore.MediaColumns.DISPLAY_NAME };
-            try (Cursor cursor = requireContext().getContentResolver().query(uri, projection, null, null, null)) {
-                if (cursor != null && cursor.moveToFirst()) {
-                    displayName = cursor.getString(cursor.getColumnIndexOrThrow(MediaStore.MediaColumns.DISPLAY_NAME));
-                }
-            } catch (Exception e) {
-                // Fallback to path name is handled below
-            }
-        }
-
-        if (displayName == null && uri.getPath() != null) {
-            displayName = new File(uri.getPath()).getName();
+    private void finishMove(boolean success) {
+        if (success) {
+            Toast.makeText(getContext(), "Move completed successfully.", Toast.LENGTH_SHORT).show();
+        } else {
+            Toast.makeText(getContext(), "Move failed.", Toast.LENGTH_SHORT).show();
         }
-        return displayName;
+        notifyCallingFragment(success);
+        dismiss();
     }
 
-    private void copyStream(InputStream input, OutputStream output) throws IOException {
-        byte[] buffer = new byte[8 * 1024];
-        int bytes;
-        while ((bytes = input.read(buffer)) != -1) {
-            output.write(buffer, 0, bytes);
+    @Nullable
+    private MediaMover.BatchResult moveMedia(Context context, String albumPath) {
+        try {
+            return new MediaMover(context).moveAll(urisToMove, new File(albumPath));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
         }
-        input.close();
-        output.close();
     }
 
     private void notifyCallingFragment(boolean success) {
@@ -14,12 +14,17 @@ import com.bumptech.glide.load.engine.DiskCacheStrategy;
 import com.bumptech.glide.signature.ObjectKey;
 
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 public class PicturesAdapter extends RecyclerView.Adapter<PicturesAdapter.PictureViewHolder> {
 
-    private List<Image> images = new ArrayList<>();
-    private final List<Image> selectedImages = new ArrayList<>();
+    // Partial-bind payload: only the selection overlay changed.
+    private static final Object PAYLOAD_SELECTION = new Object();
+
+    private final MediaListDiffer differ = new MediaListDiffer(this);
+    private final Set<Image> selectedImages = new LinkedHashSet<>();
     private final OnImageClickListener clickListener;
     private final OnImageClickListener longClickListener;
 
@@ -30,6 +35,7 @@ public class PicturesAdapter extends RecyclerView.Adapter<PicturesAdapter.Pictur
     public PicturesAdapter(OnImageClickListener clickListener, OnImageClickListener longClickListener) {
         this.clickListener = clickListener;
         this.longClickListener = longClickListener;
+        setHasStableIds(true);
     }
 
     @NonNull
@@ -39,10 +45,30 @@ public class PicturesAdapter extends RecyclerView.Adapter<PicturesAdapter.Pictur
         return new PictureViewHolder(view);
     }
 
+    @Override
+    public void onBindViewHolder(@NonNull PictureViewHolder holder, int position, @NonNull List<Object> payloads) {
+        if (!payloads.isEmpty() && allSelectionPayloads(payloads)) {
+            bindSelection(holder, differ.getCurrentList(), position);
+            return;
+        }
+        onBindViewHolder(holder, position);
+    }
+
     @Override
     public void onBindViewHolder(@NonNull PictureViewHolder holder, int position) {
-        Image image = images.get(position);
-        Uri uri = image.getUri();
+        MediaList images = differ.getCurrentList();
+        // Bind straight from the list's columns; an Image is only built on click or for selection.
+        Uri uri = images.getUri(position);
+        if (uri == null) {
+            // Placeholder for a page that is still loading.
+            Glide.with(holder.imageView.getContext()).clear(holder.imageView);
+            holder.imageView.setTransitionName(null);
+            holder.videoIndicator.setVisibility(View.GONE);
+            holder.selectionOverlay.setVisibility(View.GONE);
+            holder.itemView.setOnClickListener(null);
+            holder.itemView.setOnLongClickListener(null);
+            return;
+        }
 
         Glide.with(holder.imageView.getContext())
                 .load(uri)
@@ -53,69 +79,96 @@ public class PicturesAdapter extends RecyclerView.Adapter<PicturesAdapter.Pictur
 
         holder.imageView.setTransitionName(uri.toString());
 
-        holder.videoIndicator.setVisibility(image.isVideo() ? View.VISIBLE : View.GONE);
-        holder.selectionOverlay.setVisibility(selectedImages.contains(image) ? View.VISIBLE : View.GONE);
+        holder.videoIndicator.setVisibility(images.isVideo(position) ? View.VISIBLE : View.GONE);
+        bindSelection(holder, images, position);
 
         holder.itemView.setOnClickListener(v -> {
-            if (clickListener != null) {
+            int adapterPosition = holder.getBindingAdapterPosition();
+            Image image = adapterPosition != RecyclerView.NO_POSITION
+                    ? differ.getCurrentList().get(adapterPosition)
+                    : null;
+            if (clickListener != null && image != null) {
                 clickListener.onImageClick(image);
             }
         });
 
         holder.itemView.setOnLongClickListener(v -> {
-            if (longClickListener != null) {
+            int adapterPosition = holder.getBindingAdapterPosition();
+            Image image = adapterPosition != RecyclerView.NO_POSITION
+                    ? differ.getCurrentList().get(adapterPosition)
+                    : null;
+            if (longClickListener != null && image != null) {
                 longClickListener.onImageClick(image);
             }
             return true;
         });
     }
 
+    private void bindSelection(PictureViewHolder holder, MediaList images, int position) {
+        boolean selected = !selectedImages.isEmpty() && selectedImages.contains(images.get(position));
+        holder.selectionOverlay.setVisibility(selected ? View.VISIBLE : View.GONE);
+    }
+
+    private static boolean allSelectionPayloads(List<Object> payloads) {
+        for (Object payload : payloads) {
+            if (payload != PAYLOAD_SELECTION) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     @Override
     public int getItemCount() {
-        return images.size();
+        return differ.getCurrentList().size();
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return differ.getCurrentList().getStableId(position);
     }
 
+    /**
+     * Shows {@code images}. The new list is diffed against the current one in
+     * the background, and only changed cells are rebound.
+     */
     public void setImages(List<Image> images) {
-        this.images.clear();
-        if (images != null) {
-            this.images.addAll(images);
-        }
-        notifyDataSetChanged();
+        // Copy so callers (e.g. PhotoViewActivity's shared list) can't mutate what is displayed.
+        differ.submitList(MediaList.copyOf(images), null);
     }
 
     public void removeImagesByUri(List<Uri> urisToRemove) {
-        if (urisToRemove == null || urisToRemove.isEmpty() || this.images.isEmpty()) {
+        if (urisToRemove == null || urisToRemove.isEmpty() || getItemCount() == 0) {
             return;
         }
 
-        List<Image> itemsToRemove = new ArrayList<>();
-        for (Uri uri : urisToRemove) {
-            for (Image image : this.images) {
-                if (image.getUri().equals(uri)) {
-                    itemsToRemove.add(image);
-                    break;
-                }
-            }
-        }
-
-        if (!itemsToRemove.isEmpty()) {
-            this.images.removeAll(itemsToRemove);
-            notifyDataSetChanged();
+        MediaList images = differ.getCurrentList();
+        MediaList remaining = images.without(urisToRemove);
+        if (remaining.size() != images.size()) {
+            differ.submitList(remaining, null);
         }
     }
 
     public void toggleSelection(Image image) {
-        if (selectedImages.contains(image)) {
-            selectedImages.remove(image);
-        } else {
+        if (!selectedImages.remove(image)) {
             selectedImages.add(image);
         }
-        notifyDataSetChanged();
+        notifySelectionChanged(image);
     }
 
     public void clearSelection() {
+        List<Image> previouslySelected = new ArrayList<>(selectedImages);
         selectedImages.clear();
-        notifyDataSetChanged();
+        for (Image image : previouslySelected) {
+            notifySelectionChanged(image);
+        }
+    }
+
+    private void notifySelectionChanged(Image image) {
+        int position = differ.getCurrentList().indexOf(image);
+        if (position >= 0) {
+            notifyItemChanged(position, PAYLOAD_SELECTION);
+        }
     }
 
     public List<Image> getSelectedImages() {
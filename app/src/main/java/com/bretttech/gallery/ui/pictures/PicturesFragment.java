@@ -29,6 +29,7 @@ import androidx.core.content.ContextCompat;
 import androidx.fragment.app.Fragment;
 import androidx.lifecycle.ViewModelProvider;
 import androidx.recyclerview.widget.GridLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 
 import com.bretttech.gallery.ImageDataHolder;
 import com.bretttech.gallery.PhotoViewActivity;
@@ -36,6 +37,7 @@ import com.bretttech.gallery.R;
 import com.bretttech.gallery.SharedViewModel;
 import com.bretttech.gallery.VideoPlayerActivity;
 import com.bretttech.gallery.data.FavoritesManager;
+import com.bretttech.gallery.data.MediaCatalog;
 import com.bretttech.gallery.databinding.FragmentPicturesBinding;
 import com.bretttech.gallery.ui.albums.AlbumsViewModel;
 import com.bretttech.gallery.ui.common.FastScroller;
@@ -79,6 +81,7 @@ public class PicturesFragment extends Fragment implements androidx.appcompat.vie
                 } else {
                     Toast.makeText(getContext(), "Failed to move item(s) to trash", Toast.LENGTH_SHORT).show();
                 }
+                MediaCatalog.getInstance(requireContext()).invalidate();
                 picturesViewModel.loadImages();
             });
 
@@ -123,6 +126,7 @@ public class PicturesFragment extends Fragment implements androidx.appcompat.vie
         // Listen for refresh requests from other parts of the app
         sharedViewModel.getRefreshRequest().observe(getViewLifecycleOwner(), event -> {
             if (event.getContentIfNotHandled() != null) {
+                MediaCatalog.getInstance(requireContext()).invalidate();
                 if (actionMode == null) {
                     picturesViewModel.loadImages();
                 }
@@ -192,16 +196,33 @@ public class PicturesFragment extends Fragment implements androidx.appcompat.vie
                             requireActivity().setResult(AppCompatActivity.RESULT_OK, resultIntent);
                             requireActivity().finish();
                         } else if (images != null && !images.isEmpty()) {
-                            ImageDataHolder.getInstance().setImageList(images);
+                            // While the grid is still paged, the viewer only gets the loaded window. Its own
+                            // list, so deleting in the pager doesn't shrink the ViewModel's.
+                            List<Image> viewerImages = images instanceof MediaList
+                                    ? ((MediaList) images).loadedItems()
+                                    : images;
+                            ImageDataHolder.getInstance().setImageList(viewerImages);
                             Intent intent = new Intent(getContext(), PhotoViewActivity.class);
-                            intent.putExtra(PhotoViewActivity.EXTRA_IMAGE_POSITION, images.indexOf(image));
+                            intent.putExtra(PhotoViewActivity.EXTRA_IMAGE_POSITION, viewerImages.indexOf(image));
                             startActivity(intent);
                         }
                     }
                 },
                 this::toggleSelection);
-        binding.recyclerViewPictures.setLayoutManager(new GridLayoutManager(getContext(), 3));
+        GridLayoutManager layoutManager = new GridLayoutManager(getContext(), 3);
+        binding.recyclerViewPictures.setLayoutManager(layoutManager);
         binding.recyclerViewPictures.setAdapter(picturesAdapter);
+        binding.recyclerViewPictures.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                // Only matters while the list still has placeholders to fill.
+                if (images instanceof MediaList
+                        && ((MediaList) images).getLoadedCount() < images.size()) {
+                    picturesViewModel.onVisibleRangeChanged(layoutManager.findFirstVisibleItemPosition(),
+                            layoutManager.findLastVisibleItemPosition());
+                }
+            }
+        });
     }
 
     private void toggleSelection(Image image) {
@@ -303,11 +324,12 @@ public class PicturesFragment extends Fragment implements androidx.appcompat.vie
                     Toast.makeText(getContext(), uris.size() + " item(s) permanently deleted", Toast.LENGTH_SHORT)
                             .show();
                 }
+                MediaCatalog.getInstance(requireContext()).invalidate();
                 picturesViewModel.loadImages();
             }
             for (Uri uri : uris) {
                 for (Image image : images) {
-                    if (image.getUri().equals(uri)) {
+                    if (image != null && uri.equals(image.getUri())) {
                         favoritesManager.removeFavorite(image);
                         break;
                     }
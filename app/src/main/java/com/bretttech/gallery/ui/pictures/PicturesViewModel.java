@@ -1,36 +1,38 @@
 package com.bretttech.gallery.ui.pictures;
 
 import android.app.Application;
-import android.content.ContentUris;
-import android.database.Cursor;
-import android.net.Uri;
-import android.provider.MediaStore;
 import androidx.annotation.NonNull;
 import androidx.lifecycle.AndroidViewModel;
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
-import com.bretttech.gallery.data.ImageDetails;
-import com.bretttech.gallery.data.ImageDetailsManager;
-import java.text.SimpleDateFormat;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.Date;
+import com.bretttech.gallery.data.MediaCatalog;
+import com.bretttech.gallery.data.MediaPager;
+import com.bretttech.gallery.data.MediaSearchEngine;
+import com.bretttech.gallery.utils.SearchPipeline;
 import java.util.List;
-import java.util.Locale;
-import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.stream.Collectors;
+import java.util.function.Predicate;
 
 public class PicturesViewModel extends AndroidViewModel {
 
     private final MutableLiveData<List<Image>> images = new MutableLiveData<>();
     private final ExecutorService executorService = Executors.newSingleThreadExecutor();
-    private List<Image> allImages = new ArrayList<>();
-    private SortOrder currentSortOrder = SortOrder.DATE_DESC;
-    private String currentSearchQuery = null;
-    private final ImageDetailsManager imageDetailsManager;
+    private MediaList allImages = MediaList.empty();
+    private volatile SortOrder currentSortOrder = SortOrder.DATE_DESC;
+    private final MediaSearchEngine searchEngine;
+    private final MediaCatalog mediaCatalog;
+    private MediaCatalog.Snapshot loadedSnapshot;
+    private final MediaCatalog.Listener catalogListener = this::onSnapshotChanged;
+    private final SearchPipeline<Image> searchPipeline = new SearchPipeline<>(this::prepareMatcher,
+            this::onSearchResults);
+
+    // Serves windowed pages until the catalog snapshot is ready; its own thread so page loads
+    // don't queue behind the full catalog query.
+    private final ExecutorService pageExecutor = Executors.newSingleThreadExecutor();
+    private final Object pagingLock = new Object();
+    private MediaPager pager; // Guarded by pagingLock
+    private boolean pagingFinished = false; // Guarded by pagingLock; set once the catalog list is applied
 
     public enum SortOrder {
         DATE_DESC, DATE_ASC
@@ -38,7 +40,20 @@ public class PicturesViewModel extends AndroidViewModel {
 
     public PicturesViewModel(@NonNull Application application) {
         super(application);
-        imageDetailsManager = new ImageDetailsManager(application);
+        searchEngine = new MediaSearchEngine(application);
+        mediaCatalog = MediaCatalog.getInstance(application);
+        mediaCatalog.addListener(catalogListener);
+    }
+
+    @Override
+    protected void onCleared() {
+        super.onCleared();
+        mediaCatalog.removeListener(catalogListener);
+        searchPipeline.shutdown();
+        synchronized (pagingLock) {
+            pager = null;
+            pagingFinished = true;
+        }
     }
 
     public LiveData<List<Image>> getImages() {
@@ -46,126 +61,89 @@ public class PicturesViewModel extends AndroidViewModel {
     }
 
     public void loadImages() {
-        executorService.execute(() -> {
-            List<Image> imageList = new ArrayList<>();
-            Uri queryUri = MediaStore.Files.getContentUri("external");
-
-            String[] projection = {
-                    MediaStore.Files.FileColumns._ID,
-                    MediaStore.Files.FileColumns.MEDIA_TYPE,
-                    MediaStore.Files.FileColumns.DATA,
-                    MediaStore.Files.FileColumns.DATE_ADDED,
-                    MediaStore.Files.FileColumns.DISPLAY_NAME
-            };
-
-            String selection = MediaStore.Files.FileColumns.MEDIA_TYPE + " IN (?, ?)";
-            String[] selectionArgs = new String[]{
-                    String.valueOf(MediaStore.Files.FileColumns.MEDIA_TYPE_IMAGE),
-                    String.valueOf(MediaStore.Files.FileColumns.MEDIA_TYPE_VIDEO)
-            };
-
-            try (Cursor cursor = getApplication().getContentResolver().query(
-                    queryUri,
-                    projection,
-                    selection,
-                    selectionArgs,
-                    null
-            )) {
-                if (cursor != null) {
-                    int idColumn = cursor.getColumnIndexOrThrow(MediaStore.Files.FileColumns._ID);
-                    int mediaTypeColumn = cursor.getColumnIndexOrThrow(MediaStore.Files.FileColumns.MEDIA_TYPE);
-                    int displayNameColumn = cursor.getColumnIndexOrThrow(MediaStore.Files.FileColumns.DISPLAY_NAME);
-                    int dateAddedColumn = cursor.getColumnIndexOrThrow(MediaStore.Files.FileColumns.DATE_ADDED);
-
-
-                    while (cursor.moveToNext()) {
-                        long id = cursor.getLong(idColumn);
-                        int mediaType = cursor.getInt(mediaTypeColumn);
-                        String displayName = cursor.getString(displayNameColumn);
-                        long dateAdded = cursor.getLong(dateAddedColumn);
-
-                        Uri contentUri;
-                        if (mediaType == MediaStore.Files.FileColumns.MEDIA_TYPE_VIDEO) {
-                            contentUri = ContentUris.withAppendedId(MediaStore.Video.Media.EXTERNAL_CONTENT_URI, id);
-                        } else {
-                            contentUri = ContentUris.withAppendedId(MediaStore.Images.Media.EXTERNAL_CONTENT_URI, id);
-                        }
-
-                        imageList.add(new Image(contentUri, mediaType, displayName, dateAdded));
-                    }
+        if (!mediaCatalog.hasSnapshot()) {
+            startPaging();
+        }
+        executorService.execute(() -> applySnapshot(mediaCatalog.sync()));
+    }
+
+    /**
+     * Tells the paged source which positions are on screen, so it can load the
+     * pages around them. Does nothing once the full list is loaded.
+     */
+    public void onVisibleRangeChanged(int firstVisible, int lastVisible) {
+        pageExecutor.execute(() -> {
+            synchronized (pagingLock) {
+                if (pager == null) {
+                    return;
+                }
+                MediaList window = pager.moveTo(firstVisible, lastVisible);
+                if (window != null) {
+                    images.postValue(window);
                 }
             }
-            allImages = imageList;
-            filterAndSortImages();
         });
     }
 
-    public void sortImages(SortOrder sortOrder) {
-        currentSortOrder = sortOrder;
-        filterAndSortImages();
+    // Cold start: show the first pages while the catalog reads the whole library.
+    private void startPaging() {
+        pageExecutor.execute(() -> {
+            synchronized (pagingLock) {
+                if (pager != null || pagingFinished) {
+                    return;
+                }
+                pager = new MediaPager(getApplication());
+                images.postValue(pager.start());
+            }
+        });
     }
 
-    public void searchImages(String query) {
-        currentSearchQuery = query;
-        filterAndSortImages();
+    private void onSnapshotChanged(MediaCatalog.Snapshot snapshot) {
+        executorService.execute(() -> {
+            // Before the first load the fragment's loadImages() will pick it up.
+            if (loadedSnapshot != null) {
+                applySnapshot(snapshot);
+            }
+        });
     }
 
-    private void filterAndSortImages() {
-        executorService.execute(() -> {
-            List<Image> filteredList = new ArrayList<>(allImages);
-
-            if (currentSearchQuery != null && !currentSearchQuery.isEmpty()) {
-                String lowerCaseQuery = currentSearchQuery.toLowerCase();
-                List<Image> tagMatchingImages = new ArrayList<>();
-                CountDownLatch latch = new CountDownLatch(filteredList.size());
-
-                // Check all images for tag matches
-                for (Image image : filteredList) {
-                    imageDetailsManager.getImageDetails(image.getUri(), details -> {
-                        boolean tagMatch = details.getTags().stream()
-                                .anyMatch(tag -> tag.toLowerCase().contains(lowerCaseQuery));
-                        if (tagMatch) {
-                            synchronized (tagMatchingImages) {
-                                tagMatchingImages.add(image);
-                            }
-                        }
-                        latch.countDown();
-                    });
-                }
+    private void applySnapshot(MediaCatalog.Snapshot snapshot) {
+        if (loadedSnapshot != null && snapshot.getVersion() <= loadedSnapshot.getVersion()) {
+            return; // Nothing changed since the last post; the LiveData still holds the list.
+        }
+        if (snapshot.isChildOf(loadedSnapshot)) {
+            allImages = MediaCatalog.applyDelta(allImages, snapshot, MediaCatalog.VISIBLE);
+        } else {
+            allImages = snapshot.getImages();
+        }
+        loadedSnapshot = snapshot;
+        synchronized (pagingLock) {
+            // From here on the pipeline posts the full list; a late page must not overwrite it.
+            pager = null;
+            pagingFinished = true;
+        }
+        searchPipeline.setSource(allImages);
+    }
 
-                try {
-                    latch.await(); // Wait for all tag lookups to complete
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                }
+    public void sortImages(SortOrder sortOrder) {
+        currentSortOrder = sortOrder;
+        searchPipeline.rerun();
+    }
 
-                SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault());
-                
-                // Filter by filename, date, OR tag match
-                filteredList = filteredList.stream()
-                        .filter(image -> {
-                            // Check if matches by filename
-                            if (image.getDisplayName() != null && image.getDisplayName().toLowerCase().contains(lowerCaseQuery)) {
-                                return true;
-                            }
-                            // Check if matches by date
-                            String formattedDate = sdf.format(new Date(image.getDateAdded() * 1000L));
-                            if (formattedDate.contains(lowerCaseQuery)) {
-                                return true;
-                            }
-                            // Check if matches by tag
-                            return tagMatchingImages.contains(image);
-                        })
-                        .collect(Collectors.toList());
-            }
+    public void searchImages(String query) {
+        searchPipeline.setQuery(query);
+    }
 
-            if (currentSortOrder == SortOrder.DATE_ASC) {
-                filteredList.sort(Comparator.comparingLong(Image::getDateAdded));
-            } else {
-                filteredList.sort(Comparator.comparingLong(Image::getDateAdded).reversed());
-            }
+    private Predicate<Image> prepareMatcher(String lowerCaseQuery) {
+        return searchEngine.substringMatcher(lowerCaseQuery);
+    }
 
-            images.postValue(filteredList);
-        });
+    private void onSearchResults(List<Image> filteredList) {
+        // The source is newest first and filtering keeps order, so sorting is at most a reversal.
+        MediaList sorted = MediaList.copyOf(filteredList);
+        if (currentSortOrder == SortOrder.DATE_ASC) {
+            sorted = sorted.reversed();
+        }
+        images.postValue(sorted);
     }
-}
\ No newline at end of file
+}
@@ -10,6 +10,7 @@ import androidx.annotation.Nullable;
 import androidx.fragment.app.Fragment;
 import androidx.lifecycle.ViewModelProvider;
 import androidx.recyclerview.widget.GridLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 import com.bretttech.gallery.ImageDataHolder;
 import com.bretttech.gallery.PhotoViewActivity;
 import com.bretttech.gallery.VideoPlayerActivity;
@@ -67,8 +68,18 @@ public class SearchFragment extends Fragment {
                     // Long click not implemented for search results
                 }
         );
-        binding.recyclerViewSearch.setLayoutManager(new GridLayoutManager(getContext(), 3));
+        GridLayoutManager layoutManager = new GridLayoutManager(getContext(), 3);
+        binding.recyclerViewSearch.setLayoutManager(layoutManager);
         binding.recyclerViewSearch.setAdapter(picturesAdapter);
+        binding.recyclerViewSearch.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                // Ask for the next page when the last row comes into view
+                if (dy > 0 && layoutManager.findLastVisibleItemPosition() >= picturesAdapter.getItemCount() - 3) {
+                    searchViewModel.loadNextPage();
+                }
+            }
+        });
     }
 
     @Override
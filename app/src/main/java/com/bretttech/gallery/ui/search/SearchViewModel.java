@@ -1,40 +1,75 @@
 package com.bretttech.gallery.ui.search;
 
 import android.app.Application;
-import android.database.Cursor;
-import android.net.Uri;
-import android.provider.MediaStore;
 import androidx.annotation.NonNull;
 import androidx.lifecycle.AndroidViewModel;
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
-import com.bretttech.gallery.data.ImageDetailsManager;
+import com.bretttech.gallery.data.MediaSearchEngine;
 import com.bretttech.gallery.ui.pictures.Image;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class SearchViewModel extends AndroidViewModel {
 
     private final MutableLiveData<List<Image>> searchResults = new MutableLiveData<>();
     private final ExecutorService executorService = Executors.newSingleThreadExecutor();
-    private final ImageDetailsManager imageDetailsManager;
+    private final MediaSearchEngine searchEngine;
+    private final AtomicLong searchGeneration = new AtomicLong();
+
+    private volatile MediaSearchEngine.Results latestResults;
+    private volatile int visibleCount = MediaSearchEngine.Results.PAGE_SIZE;
 
     public SearchViewModel(@NonNull Application application) {
         super(application);
-        imageDetailsManager = new ImageDetailsManager(application);
+        searchEngine = new MediaSearchEngine(application);
     }
 
     public LiveData<List<Image>> getSearchResults() {
         return searchResults;
     }
 
+    /**
+     * Starts a ranked library search, cancelling the previous one. Results are
+     * posted as they are found and again once the scan completes.
+     */
     public void search(String query) {
+        long generation = searchGeneration.incrementAndGet();
+        visibleCount = MediaSearchEngine.Results.PAGE_SIZE;
+        latestResults = null;
         executorService.execute(() -> {
-            List<Image> results = new ArrayList<>();
-            // Search logic here...
-            searchResults.postValue(results);
+            if (generation != searchGeneration.get()) {
+                return;
+            }
+            searchEngine.search(query, (results, complete) -> {
+                if (generation != searchGeneration.get()) {
+                    return;
+                }
+                latestResults = results;
+                searchResults.postValue(results.getTop(visibleCount));
+            }, () -> generation != searchGeneration.get());
         });
     }
-}
\ No newline at end of file
+
+    /**
+     * Shows the next page of the current results, if there is one.
+     */
+    public void loadNextPage() {
+        MediaSearchEngine.Results results = latestResults;
+        if (results == null || visibleCount >= results.size()) {
+            return;
+        }
+        visibleCount += MediaSearchEngine.Results.PAGE_SIZE;
+        int count = visibleCount;
+        executorService.execute(() -> searchResults.postValue(results.getTop(count)));
+    }
+
+    @Override
+    protected void onCleared() {
+        super.onCleared();
+        searchGeneration.incrementAndGet();
+        executorService.shutdown();
+    }
+}
@@ -35,13 +35,15 @@ import androidx.transition.TransitionManager;
 import com.bretttech.gallery.GalleryApplication;
 import com.bretttech.gallery.R;
 import com.bretttech.gallery.auth.BiometricAuthManager;
+import com.bretttech.gallery.data.MediaCatalog;
 import com.bretttech.gallery.databinding.FragmentSecureFolderBinding;
 import com.bretttech.gallery.ui.albums.Album;
 import com.bretttech.gallery.ui.albums.AlbumsAdapter;
-import com.bretttech.gallery.ui.albums.AlbumsViewModel;
 import com.bretttech.gallery.ui.albums.ChangeCoverActivity;
+import com.bretttech.gallery.utils.MediaMover;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
@@ -318,39 +320,33 @@ public class SecureFolderFragment extends Fragment implements androidx.appcompat
             if (!publicPicturesDir.exists()) publicPicturesDir.mkdirs();
 
             int movedAlbums = 0;
+            MediaMover mover = new MediaMover(secureFolderViewModel.getApplication());
             for (Album album : albumsToMove) {
                 File sourceDir = new File(album.getFolderPath());
                 File destDir = new File(publicPicturesDir, album.getName());
-                if (!destDir.exists()) destDir.mkdirs();
 
                 File[] filesToMove = sourceDir.listFiles();
-                if (filesToMove != null) {
-                    int movedFiles = 0;
-                    for (File file : filesToMove) {
-                        File destFile = ensureUniqueFile(new File(destDir, file.getName()));
-                        try (java.io.InputStream in = new java.io.FileInputStream(file);
-                             java.io.OutputStream out = new java.io.FileOutputStream(destFile)) {
-                            byte[] buf = new byte[8192];
-                            int len;
-                            while ((len = in.read(buf)) > 0) {
-                                out.write(buf, 0, len);
-                            }
-                        } catch (Exception e) {
-                            e.printStackTrace();
-                            // continue to next file
-                        }
-                        // delete original only after a successful copy
-                        if (destFile.exists()) {
-                            //noinspection ResultOfMethodCallIgnored
-                            file.delete();
-                            AlbumsViewModel.scanFile(getContext(), Uri.fromFile(destFile));
-                            movedFiles++;
-                        }
-                    }
-                    if (movedFiles > 0) movedAlbums++;
+                if (filesToMove == null) {
+                    continue;
+                }
+                List<Uri> sources = new ArrayList<>(filesToMove.length);
+                for (File file : filesToMove) {
+                    sources.add(Uri.fromFile(file));
+                }
+                MediaMover.BatchResult result;
+                try {
+                    result = mover.moveAll(sources, destDir);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                if (result.movedCount > 0) movedAlbums++;
+                // Files that failed to move are still in there; keep them rather than delete them with the folder
+                if (result.failedCount == 0) {
+                    deleteDirectory(sourceDir);
                 }
-                deleteDirectory(sourceDir);
             }
+            MediaCatalog.getInstance(secureFolderViewModel.getApplication()).invalidate();
 
             if (isAdded()) {
                 final int finalMovedAlbums = movedAlbums;
@@ -362,25 +358,6 @@ public class SecureFolderFragment extends Fragment implements androidx.appcompat
         });
     }
 
-    private File ensureUniqueFile(File file) {
-        if (!file.exists()) return file;
-        String name = file.getName();
-        String base = name;
-        String ext = "";
-        int dot = name.lastIndexOf('.');
-        if (dot != -1) {
-            base = name.substring(0, dot);
-            ext = name.substring(dot);
-        }
-        int i = 1;
-        File candidate;
-        do {
-            candidate = new File(file.getParentFile(), base + "(" + i + ")" + ext);
-            i++;
-        } while (candidate.exists());
-        return candidate;
-    }
-
     private void showDeleteConfirmation(List<Album> albumsToDelete) {
         new AlertDialog.Builder(requireContext())
                 .setTitle("Delete " + albumsToDelete.size() + " Secure Album(s)?")
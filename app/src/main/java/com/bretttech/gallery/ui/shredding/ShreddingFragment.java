@@ -16,15 +16,18 @@ import androidx.lifecycle.ViewModelProvider;
 import androidx.recyclerview.widget.GridLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
+import com.bretttech.gallery.Event;
 import com.bretttech.gallery.ImageDataHolder;
 import com.bretttech.gallery.R;
 import com.bretttech.gallery.databinding.FragmentShreddingBinding;
 import com.bretttech.gallery.ui.pictures.Image;
 import com.bretttech.gallery.ui.pictures.PicturesAdapter;
 import com.bretttech.gallery.utils.ImageShredder;
+import com.bretttech.gallery.utils.ShredPolicy;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 public class ShreddingFragment extends Fragment implements androidx.appcompat.view.ActionMode.Callback {
 
@@ -33,6 +36,7 @@ public class ShreddingFragment extends Fragment implements androidx.appcompat.vi
     private PicturesAdapter adapter;
     private List<Image> images = new ArrayList<>();
     private androidx.appcompat.view.ActionMode actionMode;
+    private Map<ShredPolicy, Double> secondsPerGb;
 
     @Nullable
     @Override
@@ -65,7 +69,18 @@ public class ShreddingFragment extends Fragment implements androidx.appcompat.vi
             }
         });
 
+        viewModel.getSecondsPerGb().observe(getViewLifecycleOwner(), timings -> secondsPerGb = timings);
+        // Re-attached after a rotation too, so a running shred keeps showing its progress.
+        viewModel.getShredProgress().observe(getViewLifecycleOwner(), progress -> {
+            if (progress == null) return;
+            binding.progressBar.setVisibility(View.VISIBLE);
+            binding.statusText.setVisibility(View.VISIBLE);
+            binding.statusText.setText(formatProgress(progress));
+        });
+        viewModel.getShredResult().observe(getViewLifecycleOwner(), this::onShredResult);
+
         viewModel.loadImages();
+        viewModel.loadPolicyTimings();
     }
 
     private void setupRecyclerView() {
@@ -112,37 +127,61 @@ public class ShreddingFragment extends Fragment implements androidx.appcompat.vi
             return;
         }
 
-        // Show confirmation
+        ShredPolicy[] policies = ShredPolicy.values();
+        String[] labels = new String[policies.length];
+        for (int i = 0; i < policies.length; i++) {
+            labels[i] = formatPolicy(policies[i]);
+        }
+        ShredPolicy[] chosen = {viewModel.getPolicy()};
+        // Only the policy in use is timed up front; others are timed once picked
+        viewModel.calibrate(chosen[0]);
+
+        // Show confirmation; there's no room for a message next to the choices, so the title warns
         new androidx.appcompat.app.AlertDialog.Builder(requireContext())
-                .setTitle("Confirm Secure Deletion")
-                .setMessage("This will permanently and securely delete " + selectedImages.size() + " image(s). This action cannot be undone.")
+                .setTitle("Permanently shred " + selectedImages.size() + " image(s)? This cannot be undone.")
+                .setSingleChoiceItems(labels, chosen[0].ordinal(), (dialog, which) -> {
+                    chosen[0] = policies[which];
+                    viewModel.calibrate(chosen[0]);
+                })
                 .setPositiveButton("Shred", (dialog, which) -> {
+                    viewModel.setPolicy(chosen[0]);
                     binding.progressBar.setVisibility(View.VISIBLE);
                     binding.statusText.setVisibility(View.VISIBLE);
                     binding.statusText.setText("Shredding " + selectedImages.size() + " image(s)...");
 
-                    viewModel.shredImages(selectedImages, new ShreddingViewModel.ShredCallback() {
-                        @Override
-                        public void onProgress(int current, int total) {
-                            binding.statusText.setText(String.format("Shredding... %d/%d", current, total));
-                        }
-
-                        @Override
-                        public void onComplete(int successCount, int failureCount) {
-                            binding.progressBar.setVisibility(View.GONE);
-                            Toast.makeText(requireContext(),
-                                    successCount + " deleted, " + failureCount + " failed",
-                                    Toast.LENGTH_SHORT).show();
-                            viewModel.loadImages();
-                            deselectAll();
-                            binding.statusText.setVisibility(View.GONE);
-                        }
-                    });
+                    viewModel.shredImages(selectedImages, chosen[0]);
                 })
                 .setNegativeButton("Cancel", null)
                 .show();
     }
 
+    private void onShredResult(Event<ShreddingViewModel.ShredResult> event) {
+        ShreddingViewModel.ShredResult result = event != null ? event.getContentIfNotHandled() : null;
+        if (result == null) return;
+        binding.progressBar.setVisibility(View.GONE);
+        Toast.makeText(requireContext(),
+                result.successCount + " deleted, " + result.failureCount + " failed",
+                Toast.LENGTH_SHORT).show();
+        viewModel.loadImages();
+        deselectAll();
+        binding.statusText.setVisibility(View.GONE);
+    }
+
+    private String formatPolicy(ShredPolicy policy) {
+        Double seconds = secondsPerGb != null ? secondsPerGb.get(policy) : null;
+        if (seconds == null) {
+            return policy.label + " (not measured yet)";
+        }
+        return seconds < 60
+                ? String.format("%s (~%.0f s/GB)", policy.label, Math.max(1, seconds))
+                : String.format("%s (~%.1f min/GB)", policy.label, seconds / 60);
+    }
+
+    private static String formatProgress(ImageShredder.ShredProgress progress) {
+        return String.format("Shredding... %d/%d (%.1f MB/s)", progress.filesDone, progress.filesTotal,
+                progress.bytesPerSecond / (1024 * 1024));
+    }
+
     @Override
     public boolean onCreateActionMode(androidx.appcompat.view.ActionMode mode, android.view.Menu menu) {
         return true;
@@ -1,120 +1,184 @@
 package com.bretttech.gallery.ui.shredding;
 
 import android.app.Application;
-import android.content.ContentResolver;
-import android.content.ContentUris;
-import android.database.Cursor;
+import android.content.Context;
+import android.content.SharedPreferences;
 import android.net.Uri;
-import android.os.Build;
-import android.provider.MediaStore;
+import android.os.SystemClock;
 
 import androidx.annotation.NonNull;
 import androidx.lifecycle.AndroidViewModel;
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
 
+import com.bretttech.gallery.Event;
+import com.bretttech.gallery.data.MediaCatalog;
 import com.bretttech.gallery.ui.pictures.Image;
 import com.bretttech.gallery.utils.ImageShredder;
+import com.bretttech.gallery.utils.ShredPolicy;
 
 import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class ShreddingViewModel extends AndroidViewModel {
 
-    public interface ShredCallback {
-        void onProgress(int current, int total);
-        void onComplete(int successCount, int failureCount);
+    private static final String PREFS_NAME = "shredding_prefs";
+    private static final String KEY_POLICY = "shred_policy";
+    private static final String KEY_SECONDS_PER_GB_PREFIX = "seconds_per_gb_";
+    // Shreds smaller than this are dominated by per-file overhead and don't update the measurement.
+    private static final long MIN_MEASURED_BYTES = 16L * 1024 * 1024;
+
+    /**
+     * Outcome of a {@link #shredImages} call.
+     */
+    public static class ShredResult {
+        public final int successCount;
+        public final int failureCount;
+
+        ShredResult(int successCount, int failureCount) {
+            this.successCount = successCount;
+            this.failureCount = failureCount;
+        }
     }
 
     private final MutableLiveData<List<Image>> images = new MutableLiveData<>();
+    private final MutableLiveData<Map<ShredPolicy, Double>> secondsPerGb = new MutableLiveData<>();
+    // Null while no shred runs. Posted from the shredding threads; observers only ever see it on the main thread.
+    private final MutableLiveData<ImageShredder.ShredProgress> shredProgress = new MutableLiveData<>();
+    private final MutableLiveData<Event<ShredResult>> shredResult = new MutableLiveData<>();
     private final ExecutorService executorService = Executors.newSingleThreadExecutor();
+    private final ExecutorService calibrationExecutor = Executors.newSingleThreadExecutor();
+    private final AtomicBoolean shredding = new AtomicBoolean();
+    private final MediaCatalog mediaCatalog;
+    private final ImageShredder shredder;
+    private final SharedPreferences prefs;
 
     public ShreddingViewModel(@NonNull Application application) {
         super(application);
+        mediaCatalog = MediaCatalog.getInstance(application);
+        shredder = new ImageShredder(application);
+        prefs = application.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
     }
 
     public LiveData<List<Image>> getImages() {
         return images;
     }
 
-    public void loadImages() {
-        executorService.execute(() -> {
-            List<Image> imageList = new ArrayList<>();
-            Uri queryUri = MediaStore.Files.getContentUri("external");
-
-            String[] projection = {
-                    MediaStore.Files.FileColumns._ID,
-                    MediaStore.Files.FileColumns.MEDIA_TYPE,
-                    MediaStore.Files.FileColumns.DISPLAY_NAME,
-                    MediaStore.Files.FileColumns.DATE_ADDED
-            };
-
-            String selection = MediaStore.Files.FileColumns.MEDIA_TYPE + " IN (?, ?)" +
-                    " AND " + MediaStore.MediaColumns.IS_TRASHED + " != 1";
-            String[] selectionArgs = {
-                    String.valueOf(MediaStore.Files.FileColumns.MEDIA_TYPE_IMAGE),
-                    String.valueOf(MediaStore.Files.FileColumns.MEDIA_TYPE_VIDEO)
-            };
-
-            try (Cursor cursor = getApplication().getContentResolver().query(
-                    queryUri,
-                    projection,
-                    selection,
-                    selectionArgs,
-                    null
-            )) {
-                if (cursor != null) {
-                    int idColumn = cursor.getColumnIndexOrThrow(MediaStore.Files.FileColumns._ID);
-                    int mediaTypeColumn = cursor.getColumnIndexOrThrow(MediaStore.Files.FileColumns.MEDIA_TYPE);
-                    int displayNameColumn = cursor.getColumnIndexOrThrow(MediaStore.Files.FileColumns.DISPLAY_NAME);
-                    int dateAddedColumn = cursor.getColumnIndexOrThrow(MediaStore.Files.FileColumns.DATE_ADDED);
-
-                    while (cursor.moveToNext()) {
-                        long id = cursor.getLong(idColumn);
-                        int mediaType = cursor.getInt(mediaTypeColumn);
-                        String displayName = cursor.getString(displayNameColumn);
-                        long dateAdded = cursor.getLong(dateAddedColumn);
-
-                        Uri contentUri;
-                        if (mediaType == MediaStore.Files.FileColumns.MEDIA_TYPE_VIDEO) {
-                            contentUri = ContentUris.withAppendedId(MediaStore.Video.Media.EXTERNAL_CONTENT_URI, id);
-                        } else {
-                            contentUri = ContentUris.withAppendedId(MediaStore.Images.Media.EXTERNAL_CONTENT_URI, id);
-                        }
-
-                        imageList.add(new Image(contentUri, mediaType, displayName, dateAdded));
-                    }
-                }
-            }
+    /**
+     * Measured seconds to shred 1 GiB with each policy; policies without a measurement are missing.
+     */
+    public LiveData<Map<ShredPolicy, Double>> getSecondsPerGb() {
+        return secondsPerGb;
+    }
 
-            images.postValue(imageList);
+    /**
+     * Throttled progress of the running shred, or null when none is running.
+     */
+    public LiveData<ImageShredder.ShredProgress> getShredProgress() {
+        return shredProgress;
+    }
+
+    public LiveData<Event<ShredResult>> getShredResult() {
+        return shredResult;
+    }
+
+    public ShredPolicy getPolicy() {
+        return ShredPolicy.fromName(prefs.getString(KEY_POLICY, null));
+    }
+
+    public void setPolicy(ShredPolicy policy) {
+        prefs.edit().putString(KEY_POLICY, policy.name()).apply();
+    }
+
+    /**
+     * Posts the stored timings. Nothing is measured here; see {@link #calibrate}.
+     */
+    public void loadPolicyTimings() {
+        executorService.execute(this::postPolicyTimings);
+    }
+
+    /**
+     * Measures {@code policy} if it has no timing yet, then posts the timings. Runs on its own
+     * executor so the scratch writes never hold up loading or shredding, and is skipped while a
+     * shred runs: that shred records a real timing anyway.
+     */
+    public void calibrate(ShredPolicy policy) {
+        calibrationExecutor.execute(() -> {
+            String key = KEY_SECONDS_PER_GB_PREFIX + policy.name();
+            if (shredding.get() || prefs.contains(key)) {
+                return;
+            }
+            double seconds = ImageShredder.measureSecondsPerGb(getApplication(), policy);
+            if (seconds > 0 && !prefs.contains(key)) {
+                prefs.edit().putFloat(key, (float) seconds).apply();
+                postPolicyTimings();
+            }
         });
     }
 
-    public void shredImages(List<Image> imagesToShred, ShredCallback callback) {
+    private void postPolicyTimings() {
+        Map<ShredPolicy, Double> timings = new EnumMap<>(ShredPolicy.class);
+        for (ShredPolicy policy : ShredPolicy.values()) {
+            float seconds = prefs.getFloat(KEY_SECONDS_PER_GB_PREFIX + policy.name(), -1);
+            if (seconds > 0) {
+                timings.put(policy, (double) seconds);
+            }
+        }
+        secondsPerGb.postValue(timings);
+    }
+
+    // Blends a real shred into the policy's timing, so it reflects this device's storage and load.
+    private void recordTiming(ShredPolicy policy, long fileBytes, long elapsedMs) {
+        if (fileBytes < MIN_MEASURED_BYTES || elapsedMs <= 0) {
+            return;
+        }
+        double measured = elapsedMs / 1000.0 * (1L << 30) / fileBytes;
+        String key = KEY_SECONDS_PER_GB_PREFIX + policy.name();
+        float previous = prefs.getFloat(key, -1);
+        double blended = previous > 0 ? (previous + measured) / 2 : measured;
+        prefs.edit().putFloat(key, (float) blended).apply();
+        postPolicyTimings();
+    }
+
+    public void loadImages() {
+        executorService.execute(() -> images.postValue(mediaCatalog.sync().getImages()));
+    }
+
+    /**
+     * Shreds the images in the background. Progress and the result arrive through
+     * {@link #getShredProgress} and {@link #getShredResult}, so nothing on the shredding threads
+     * touches a fragment that may be gone by then.
+     */
+    public void shredImages(List<Image> imagesToShred, ShredPolicy policy) {
+        List<Uri> uris = new ArrayList<>(imagesToShred.size());
+        for (Image image : imagesToShred) {
+            uris.add(image.getUri());
+        }
         executorService.execute(() -> {
             int successCount = 0;
-            int failureCount = 0;
-
-            for (int i = 0; i < imagesToShred.size(); i++) {
-                Image image = imagesToShred.get(i);
-                if (ImageShredder.shredImage(getApplication(), image.getUri())) {
-                    successCount++;
-                } else {
-                    failureCount++;
-                }
-
-                int progress = i + 1;
-                if (callback != null) {
-                    callback.onProgress(progress, imagesToShred.size());
-                }
+            long[] bytesWritten = new long[1];
+            long start = SystemClock.elapsedRealtime();
+            shredding.set(true);
+            try {
+                successCount = shredder.shredAll(uris, policy, progress -> {
+                    bytesWritten[0] = progress.bytesWritten;
+                    shredProgress.postValue(progress);
+                });
+                recordTiming(policy, bytesWritten[0] / policy.getPassCount(), SystemClock.elapsedRealtime() - start);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                shredding.set(false);
             }
 
-            if (callback != null) {
-                callback.onComplete(successCount, failureCount);
-            }
+            mediaCatalog.invalidate();
+            shredProgress.postValue(null);
+            shredResult.postValue(new Event<>(new ShredResult(successCount, uris.size() - successCount)));
         });
     }
 
@@ -122,5 +186,7 @@ public class ShreddingViewModel extends AndroidViewModel {
     protected void onCleared() {
         super.onCleared();
         executorService.shutdown();
+        calibrationExecutor.shutdown();
+        shredder.shutdown();
     }
 }
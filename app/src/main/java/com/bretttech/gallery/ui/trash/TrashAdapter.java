@@ -11,6 +11,8 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import com.bretttech.gallery.R;
 import com.bretttech.gallery.ui.pictures.Image;
+import com.bretttech.gallery.ui.pictures.MediaList;
+import com.bretttech.gallery.ui.pictures.MediaListDiffer;
 import com.bumptech.glide.Glide;
 
 import java.util.ArrayList;
@@ -18,7 +20,10 @@ import java.util.List;
 
 public class TrashAdapter extends RecyclerView.Adapter<TrashAdapter.TrashViewHolder> {
 
-    private final List<Image> trashedImages = new ArrayList<>();
+    // Partial-bind payload: only the selection overlay changed.
+    private static final Object PAYLOAD_SELECTION = new Object();
+
+    private final MediaListDiffer differ = new MediaListDiffer(this);
     private final List<Image> selectedImages = new ArrayList<>(); // NEW: Track selected items
     private final OnTrashItemClickListener listener;
     private final OnTrashItemLongClickListener longClickListener; // NEW: Long click listener
@@ -36,6 +41,7 @@ public class TrashAdapter extends RecyclerView.Adapter<TrashAdapter.TrashViewHol
     public TrashAdapter(OnTrashItemClickListener clickListener, OnTrashItemLongClickListener longClickListener) {
         this.listener = clickListener;
         this.longClickListener = longClickListener;
+        setHasStableIds(true);
     }
 
     @NonNull
@@ -45,9 +51,18 @@ public class TrashAdapter extends RecyclerView.Adapter<TrashAdapter.TrashViewHol
         return new TrashViewHolder(view);
     }
 
+    @Override
+    public void onBindViewHolder(@NonNull TrashViewHolder holder, int position, @NonNull List<Object> payloads) {
+        if (!payloads.isEmpty() && allSelectionPayloads(payloads)) {
+            bindSelection(holder, differ.getCurrentList().get(position));
+            return;
+        }
+        onBindViewHolder(holder, position);
+    }
+
     @Override
     public void onBindViewHolder(@NonNull TrashViewHolder holder, int position) {
-        Image image = trashedImages.get(position);
+        Image image = differ.getCurrentList().get(position);
         Uri uri = image.getUri();
 
         Glide.with(holder.imageView.getContext())
@@ -63,12 +78,7 @@ public class TrashAdapter extends RecyclerView.Adapter<TrashAdapter.TrashViewHol
             holder.videoIndicator.setVisibility(View.GONE);
         }
 
-        // NEW: Selection state indicator
-        if (selectedImages.contains(image)) {
-            holder.selectionOverlay.setVisibility(View.VISIBLE);
-        } else {
-            holder.selectionOverlay.setVisibility(View.GONE);
-        }
+        bindSelection(holder, image);
 
         holder.itemView.setOnClickListener(v -> listener.onTrashItemClick(image));
         holder.itemView.setOnLongClickListener(v -> {
@@ -77,18 +87,33 @@ public class TrashAdapter extends RecyclerView.Adapter<TrashAdapter.TrashViewHol
         });
     }
 
+    // NEW: Selection state indicator
+    private void bindSelection(TrashViewHolder holder, Image image) {
+        holder.selectionOverlay.setVisibility(selectedImages.contains(image) ? View.VISIBLE : View.GONE);
+    }
+
+    private static boolean allSelectionPayloads(List<Object> payloads) {
+        for (Object payload : payloads) {
+            if (payload != PAYLOAD_SELECTION) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     @Override
     public int getItemCount() {
-        return trashedImages.size();
+        return differ.getCurrentList().size();
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return differ.getCurrentList().getStableId(position);
     }
 
     public void setTrashedImages(List<Image> images) {
-        this.trashedImages.clear();
-        if (images != null) {
-            this.trashedImages.addAll(images);
-        }
-        this.selectedImages.clear(); // Clear selection on new data load
-        notifyDataSetChanged();
+        clearSelection(); // Clear selection on new data load
+        differ.submitList(MediaList.copyOf(images), null);
     }
 
     // NEW: Selection logic methods
@@ -101,13 +126,23 @@ public class TrashAdapter extends RecyclerView.Adapter<TrashAdapter.TrashViewHol
             selectedImages.add(image);
             selected = true;
         }
-        notifyDataSetChanged();
+        notifySelectionChanged(image);
         return selected;
     }
 
     public void clearSelection() {
+        List<Image> previouslySelected = new ArrayList<>(selectedImages);
         selectedImages.clear();
-        notifyDataSetChanged();
+        for (Image image : previouslySelected) {
+            notifySelectionChanged(image);
+        }
+    }
+
+    private void notifySelectionChanged(Image image) {
+        int position = differ.getCurrentList().indexOf(image);
+        if (position >= 0) {
+            notifyItemChanged(position, PAYLOAD_SELECTION);
+        }
     }
 
     public List<Image> getSelectedImages() {
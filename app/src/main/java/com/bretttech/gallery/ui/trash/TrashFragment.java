@@ -28,6 +28,7 @@ import androidx.recyclerview.widget.GridLayoutManager;
 import com.bretttech.gallery.ImageDataHolder;
 import com.bretttech.gallery.PhotoViewActivity;
 import com.bretttech.gallery.R;
+import com.bretttech.gallery.data.MediaCatalog;
 import com.bretttech.gallery.databinding.FragmentTrashBinding;
 import com.bretttech.gallery.ui.pictures.Image;
 
@@ -46,6 +47,7 @@ public class TrashFragment extends Fragment implements androidx.appcompat.view.A
 
     private final ActivityResultLauncher<IntentSenderRequest> actionResultLauncher =
             registerForActivityResult(new ActivityResultContracts.StartIntentSenderForResult(), result -> {
+                MediaCatalog.getInstance(requireContext()).invalidate();
                 trashViewModel.loadTrashedImages(); // Refresh the list
             });
 
@@ -197,6 +199,7 @@ public class TrashFragment extends Fragment implements androidx.appcompat.view.A
                 for (Uri uri : uris) {
                     contentResolver.delete(uri, null, null);
                 }
+                MediaCatalog.getInstance(requireContext()).invalidate();
                 trashViewModel.loadTrashedImages(); // Refresh the list manually
             }
         } catch (SecurityException e) {
@@ -1,47 +1,120 @@
 package com.bretttech.gallery.utils;
 
+import android.content.ContentResolver;
 import android.content.Context;
+import android.database.Cursor;
 import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.media.MediaMetadataRetriever;
 import android.net.Uri;
+import android.os.Build;
+import android.os.ParcelFileDescriptor;
+import android.os.SystemClock;
 import android.provider.MediaStore;
 import android.util.Log;
+import android.util.Size;
 
-import androidx.core.graphics.BitmapCompat;
-
+import com.bretttech.gallery.data.MediaHashStore;
+import com.bretttech.gallery.similarity.HammingGrouper;
+import com.bretttech.gallery.similarity.PerceptualHash;
+import com.bretttech.gallery.similarity.VideoSignature;
 import com.bretttech.gallery.ui.pictures.Image;
 
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
 
 /**
  * Utility class for finding duplicate or similar images using multiple strategies.
+ * Hashes are cached in {@link MediaHashStore} against each file's size and
+ * modification time, so only new or changed files are read on a rescan.
+ *
+ * A scan is coordinated on one thread. The hashing fans out to a pool sized
+ * to the device's cores, and file reads and decodes go through a narrower I/O
+ * lane so the cores don't queue up on the same flash chip. A lane permit covers
+ * the reads and the streaming decodes that read as they go; digesting and
+ * hashing run outside it.
+ *
+ * Cancelling a scan interrupts its hashing tasks, and every read loop also
+ * checks the scan's cancelled flag between chunks, so a new scan doesn't wait
+ * behind a half-read multi-gigabyte video.
  */
 public class DuplicateFinder {
     private static final String TAG = "DuplicateFinder";
+    // Computed hashes are written in batches so an interrupted scan still keeps most of its work.
+    private static final int CACHE_FLUSH_INTERVAL = 200;
+    // Concurrent file reads; flash storage gains little beyond a couple of outstanding streams.
+    private static final int IO_CONCURRENCY = 2;
+    // Minimum spacing of progress reports and of streamed groups.
+    public static final long PROGRESS_INTERVAL_MS = 250;
+    // Video signatures are cached per frame hash, e.g. "video_dct_hash".
+    private static final String VIDEO_SIGNATURE_KIND_PREFIX = "video_";
+
     private final Context context;
-    private final ExecutorService executorService;
+    private final ExecutorService executorService; // Runs one scan at a time
+    private final ExecutorService hashPool;
+    private final Semaphore ioLane = new Semaphore(IO_CONCURRENCY);
+    private final MediaHashStore hashStore;
+
+    private volatile PerceptualHash similarityHash = PerceptualHash.DEFAULT;
+    private volatile int similarityThreshold = PerceptualHash.DEFAULT.defaultThreshold; // Hamming distance
+
+    private Future<?> currentScan; // Guarded by this
+    private AtomicBoolean currentScanCancelled; // Guarded by this
 
-    private static final int HASH_SIZE = 8; // 8x8 for perceptual hash
-    private static final int SIMILARITY_THRESHOLD = 5; // Hamming distance threshold
+    private static final int DECODE_TARGET_SIZE = 64; // Short side, in pixels, of the bitmap a hash is computed from
+    private static final int PARTIAL_BLOCK_SIZE = 64 * 1024; // Head and tail bytes read for exact-match candidates
+    private static final int READ_CHUNK_SIZE = 256 * 1024; // Bytes read per I/O lane permit when hashing whole files
 
     public interface DuplicateFinderCallback {
         void onDuplicatesFound(List<DuplicateGroup> duplicateGroups);
         void onError(String error);
+
+        /**
+         * Groups confirmed since the last call, while the scan is still running.
+         * Every group also appears, in the same order, in the final
+         * {@link #onDuplicatesFound} list.
+         */
+        default void onGroupsFound(List<DuplicateGroup> newGroups) {
+        }
+
+        /**
+         * Called at most every {@link #PROGRESS_INTERVAL_MS} and at the end of each stage.
+         */
+        default void onProgress(ScanProgress progress) {
+        }
     }
 
     /**
      * Represents a group of duplicate/similar images.
      */
     public static class DuplicateGroup {
+        public static final int MATCH_EXACT = 0;
+        public static final int MATCH_SIMILAR_VIDEO = 10; // Past the PerceptualHash match types
+
         public final List<Image> images;
-        public final int matchType; // 0: exact hash, 1: perceptual similarity
+        public final int matchType; // MATCH_EXACT, or the PerceptualHash.matchType that grouped them
 
         public DuplicateGroup(List<Image> images, int matchType) {
             this.images = images;
@@ -49,94 +122,555 @@ public class DuplicateFinder {
         }
     }
 
+    /**
+     * How far one stage of a scan has got.
+     */
+    public static class ScanProgress {
+        public static final int STAGE_EXACT = 0;
+        public static final int STAGE_SIMILAR = 1;
+
+        public final int stage;
+        public final int processed;
+        public final int total;
+        public final double itemsPerSecond;
+
+        public ScanProgress(int stage, int processed, int total, double itemsPerSecond) {
+            this.stage = stage;
+            this.processed = processed;
+            this.total = total;
+            this.itemsPerSecond = itemsPerSecond;
+        }
+
+        /**
+         * Estimated time left in this stage at the current rate, or -1 before there is a rate.
+         */
+        public long getEtaMillis() {
+            if (itemsPerSecond <= 0) {
+                return -1;
+            }
+            return (long) ((total - processed) / itemsPerSecond * 1000);
+        }
+    }
+
     public DuplicateFinder(Context context) {
         this.context = context;
         this.executorService = Executors.newSingleThreadExecutor();
+        // A ThreadPoolExecutor rather than a ForkJoinPool, whose cancel(true) never interrupts a running task.
+        this.hashPool = Executors.newFixedThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors()));
+        this.hashStore = MediaHashStore.getInstance(context);
+    }
+
+    /**
+     * Selects the hash similar images are grouped by, with its default threshold.
+     * Takes effect from the next scan.
+     */
+    public void setSimilarityHash(PerceptualHash hash) {
+        setSimilarityHash(hash, hash.defaultThreshold);
+    }
+
+    /**
+     * Selects the hash similar images are grouped by and the largest Hamming
+     * distance (out of 64 bits) still counted as similar. Takes effect from
+     * the next scan.
+     */
+    public synchronized void setSimilarityHash(PerceptualHash hash, int threshold) {
+        similarityHash = hash;
+        similarityThreshold = threshold;
     }
 
     /**
      * Finds duplicates among a list of images.
      * Uses both exact hash matching and perceptual hashing for similar images.
+     * Exact groups are reported through {@link DuplicateFinderCallback#onGroupsFound}
+     * as each one is confirmed. Similar groups can only be settled once every
+     * image is hashed, so they arrive together at the end.
+     * Starting a scan cancels the previous one; a canceled scan never calls back.
      */
-    public void findDuplicates(List<Image> images, DuplicateFinderCallback callback) {
-        executorService.execute(() -> {
+    public synchronized void findDuplicates(List<Image> images, DuplicateFinderCallback callback) {
+        cancel();
+        AtomicBoolean cancelled = new AtomicBoolean();
+        currentScanCancelled = cancelled;
+        currentScan = executorService.submit(() -> {
             try {
-                List<DuplicateGroup> duplicates = new ArrayList<>();
-
-                // First pass: Find exact duplicates using file hashing
-                Map<String, List<Image>> exactHashMap = new HashMap<>();
-                for (Image image : images) {
-                    String hash = getFileHash(image.getUri());
-                    if (hash != null) {
-                        exactHashMap.computeIfAbsent(hash, k -> new ArrayList<>()).add(image);
-                    }
+                List<DuplicateGroup> duplicates = scan(images, callback, cancelled);
+                if (!cancelled.get()) {
+                    callback.onDuplicatesFound(duplicates);
+                }
+            } catch (InterruptedException | CancellationException e) {
+                // Canceled; whoever canceled is no longer waiting for a result.
+            } catch (Exception e) {
+                Log.e(TAG, "Error finding duplicates: " + e.getMessage(), e);
+                if (!cancelled.get()) {
+                    callback.onError("Failed to find duplicates: " + e.getMessage());
                 }
+            }
+        });
+    }
 
-                // Add groups with more than one image
-                for (List<Image> group : exactHashMap.values()) {
-                    if (group.size() > 1) {
-                        duplicates.add(new DuplicateGroup(group, 0));
-                    }
+    /**
+     * Stops the scan in flight. Hashes not yet started are skipped, and those
+     * already computed stay cached for the next scan.
+     */
+    public synchronized void cancel() {
+        if (currentScanCancelled != null) {
+            currentScanCancelled.set(true);
+            currentScan.cancel(true);
+            currentScanCancelled = null;
+            currentScan = null;
+        }
+    }
+
+    private List<DuplicateGroup> scan(List<Image> images, DuplicateFinderCallback callback,
+            AtomicBoolean cancelled) throws InterruptedException {
+        PerceptualHash algorithm;
+        int threshold;
+        synchronized (this) {
+            algorithm = similarityHash;
+            threshold = similarityThreshold;
+        }
+        List<DuplicateGroup> duplicates = new ArrayList<>();
+        Map<Long, long[]> fileStats = queryFileStats();
+        pruneCache(fileStats);
+
+        // First pass: Find exact duplicates using file hashing
+        Set<Image> exactDuplicates = new HashSet<>();
+        for (DuplicateGroup group : findExactDuplicates(images, fileStats, callback, cancelled)) {
+            duplicates.add(group);
+            exactDuplicates.addAll(group.images);
+        }
+
+        // Second pass: Find perceptually similar images and videos, skipping those already in an exact group
+        List<Image> stills = new ArrayList<>(images.size());
+        List<Image> videos = new ArrayList<>();
+        for (Image image : images) {
+            if (!exactDuplicates.contains(image)) {
+                (image.isVideo() ? videos : stills).add(image);
+            }
+        }
+        ProgressReporter progress = new ProgressReporter(ScanProgress.STAGE_SIMILAR, stills.size() + videos.size(),
+                callback, cancelled);
+        HashCache<Long> perceptualHashes = new HashCache<>(algorithm.cacheKind, Long.class, fileStats);
+        HashCache<byte[]> videoSignatures = new HashCache<>(VIDEO_SIGNATURE_KIND_PREFIX + algorithm.cacheKind,
+                byte[].class, fileStats);
+        List<Long> pHashes;
+        List<byte[]> signatureBytes;
+        try {
+            pHashes = hashAll(stills, perceptualHashes, uri -> getPerceptualHash(uri, algorithm),
+                    progress, cancelled);
+            signatureBytes = hashAll(videos, videoSignatures, uri -> getVideoSignature(uri, algorithm, cancelled),
+                    progress, cancelled);
+        } finally {
+            perceptualHashes.flush();
+            videoSignatures.flush();
+        }
+
+        List<Image> hashed = new ArrayList<>(stills.size());
+        long[] hashes = new long[stills.size()];
+        for (int i = 0; i < stills.size(); i++) {
+            Long pHash = pHashes.get(i);
+            if (pHash != null) {
+                hashes[hashed.size()] = pHash;
+                hashed.add(stills.get(i));
+            }
+        }
+        List<Image> signed = new ArrayList<>(videos.size());
+        VideoSignature[] signatures = new VideoSignature[videos.size()];
+        for (int i = 0; i < videos.size(); i++) {
+            byte[] bytes = signatureBytes.get(i);
+            if (bytes != null) {
+                signatures[signed.size()] = VideoSignature.fromBytes(bytes);
+                signed.add(videos.get(i));
+            }
+        }
+
+        // Add perceptual duplicate groups
+        List<DuplicateGroup> similar = new ArrayList<>();
+        for (int[] members : HammingGrouper.group(hashes, hashed.size(), threshold)) {
+            similar.add(new DuplicateGroup(pick(hashed, members), algorithm.matchType));
+        }
+        for (int[] members : VideoSignature.group(signatures, signed.size(), threshold)) {
+            similar.add(new DuplicateGroup(pick(signed, members), DuplicateGroup.MATCH_SIMILAR_VIDEO));
+        }
+        if (!similar.isEmpty() && !cancelled.get()) {
+            callback.onGroupsFound(similar);
+        }
+        duplicates.addAll(similar);
+        return duplicates;
+    }
+
+    private static List<Image> pick(List<Image> images, int[] indices) {
+        List<Image> picked = new ArrayList<>(indices.length);
+        for (int index : indices) {
+            picked.add(images.get(index));
+        }
+        return picked;
+    }
+
+    /**
+     * Exact duplicates, narrowed in stages so most files are never opened:
+     * <ol>
+     * <li>Group by MediaStore SIZE. A file with a unique size has no exact twin.</li>
+     * <li>Within a size, hash only the first and last {@link #PARTIAL_BLOCK_SIZE} bytes.</li>
+     * <li>Hash the whole file only for candidates whose head and tail still collide.</li>
+     * </ol>
+     * Each size is one task on the hash pool, so its groups are reported as
+     * soon as that size is done rather than when the whole pass is.
+     */
+    private List<DuplicateGroup> findExactDuplicates(List<Image> images, Map<Long, long[]> fileStats,
+            DuplicateFinderCallback callback, AtomicBoolean cancelled) throws InterruptedException {
+        Map<Long, List<Image>> bySize = new HashMap<>();
+        for (Image image : images) {
+            long[] stat = fileStats.get(image.getMediaStoreId());
+            if (stat != null && stat[0] > 0) {
+                bySize.computeIfAbsent(stat[0], k -> new ArrayList<>()).add(image);
+            }
+        }
+        int candidateCount = 0;
+        for (List<Image> sameSize : bySize.values()) {
+            if (sameSize.size() > 1) {
+                candidateCount += sameSize.size();
+            }
+        }
+
+        ProgressReporter progress = new ProgressReporter(ScanProgress.STAGE_EXACT, candidateCount, callback, cancelled);
+        HashCache<String> partialHashes = new HashCache<>(MediaHashStore.KIND_PARTIAL, String.class, fileStats);
+        HashCache<String> contentHashes = new HashCache<>(MediaHashStore.KIND_CONTENT, String.class, fileStats);
+        CompletionService<List<List<Image>>> completion = new ExecutorCompletionService<>(hashPool);
+        List<Future<List<List<Image>>>> tasks = new ArrayList<>();
+        try {
+            for (Map.Entry<Long, List<Image>> sameSize : bySize.entrySet()) {
+                if (sameSize.getValue().size() > 1) {
+                    tasks.add(completion.submit(() -> {
+                        List<List<Image>> groups = cancelled.get()
+                                ? new ArrayList<>()
+                                : exactGroupsOfSize(sameSize.getKey(), sameSize.getValue(), partialHashes, contentHashes,
+                                        cancelled);
+                        progress.advance(sameSize.getValue().size());
+                        return groups;
+                    }));
                 }
+            }
 
-                // Second pass: Find perceptually similar images
-                Map<String, List<Image>> perceptualHashMap = new HashMap<>();
-                for (Image image : images) {
-                    // Skip if already in an exact duplicate group
-                    if (isInGroup(image, duplicates)) {
-                        continue;
+            List<DuplicateGroup> found = new ArrayList<>();
+            int reported = 0;
+            long lastReport = SystemClock.elapsedRealtime();
+            for (int i = 0; i < tasks.size(); i++) {
+                try {
+                    for (List<Image> group : completion.take().get()) {
+                        found.add(new DuplicateGroup(group, DuplicateGroup.MATCH_EXACT));
                     }
-
-                    String pHash = getPerceptualHash(image.getUri());
-                    if (pHash != null) {
-                        // Find similar hashes
-                        for (String existingHash : perceptualHashMap.keySet()) {
-                            if (hammingDistance(pHash, existingHash) <= SIMILARITY_THRESHOLD) {
-                                perceptualHashMap.get(existingHash).add(image);
-                                pHash = null;
-                                break;
-                            }
-                        }
-
-                        if (pHash != null) {
-                            perceptualHashMap.computeIfAbsent(pHash, k -> new ArrayList<>()).add(image);
-                        }
+                } catch (ExecutionException e) {
+                    Log.e(TAG, "Error hashing images: " + e.getCause());
+                }
+                // Batch what is reported, so thousands of small groups aren't thousands of UI updates.
+                long now = SystemClock.elapsedRealtime();
+                boolean last = i == tasks.size() - 1;
+                if (found.size() > reported && (last || now - lastReport >= PROGRESS_INTERVAL_MS)) {
+                    if (cancelled.get()) {
+                        throw new CancellationException();
                     }
+                    callback.onGroupsFound(new ArrayList<>(found.subList(reported, found.size())));
+                    reported = found.size();
+                    lastReport = now;
                 }
+            }
+            return found;
+        } finally {
+            for (Future<List<List<Image>>> task : tasks) {
+                task.cancel(true); // No-op for finished tasks; skips queued ones and interrupts running ones.
+            }
+            partialHashes.flush();
+            contentHashes.flush();
+        }
+    }
+
+    // Exact groups among images that all have the given size.
+    private List<List<Image>> exactGroupsOfSize(long size, List<Image> sameSize, HashCache<String> partialHashes,
+            HashCache<String> contentHashes, AtomicBoolean cancelled) {
+        List<List<Image>> groups = new ArrayList<>();
+        for (List<Image> candidates : groupByHash(sameSize, partialHashes, uri -> getPartialHash(uri, cancelled))) {
+            if (size <= 2L * PARTIAL_BLOCK_SIZE) {
+                groups.add(candidates); // Head and tail already covered every byte.
+            } else {
+                groups.addAll(groupByHash(candidates, contentHashes, uri -> getFileHash(uri, cancelled)));
+            }
+        }
+        return groups;
+    }
+
+    // Groups of two or more images sharing a hash.
+    private static List<List<Image>> groupByHash(List<Image> images, HashCache<String> hashes,
+            Function<Uri, String> hasher) {
+        Map<String, List<Image>> byHash = new HashMap<>();
+        for (Image image : images) {
+            String hash = hashes.get(image, hasher);
+            if (hash != null) {
+                byHash.computeIfAbsent(hash, k -> new ArrayList<>()).add(image);
+            }
+        }
+        List<List<Image>> groups = new ArrayList<>();
+        for (List<Image> group : byHash.values()) {
+            if (group.size() > 1) {
+                groups.add(group);
+            }
+        }
+        return groups;
+    }
+
+    /**
+     * Hashes every image on the hash pool and waits for all of them. The
+     * result lines up with {@code images}, with null where an image could not
+     * be hashed.
+     */
+    private <T> List<T> hashAll(List<Image> images, HashCache<T> hashes, Function<Uri, T> hasher,
+            ProgressReporter progress, AtomicBoolean cancelled) throws InterruptedException {
+        List<Callable<T>> tasks = new ArrayList<>(images.size());
+        for (Image image : images) {
+            tasks.add(() -> {
+                T hash = cancelled.get() ? null : hashes.get(image, hasher);
+                progress.advance(1);
+                return hash;
+            });
+        }
+        // If the waiting scan thread is interrupted, invokeAll cancels every task with an interrupt.
+        List<Future<T>> futures = hashPool.invokeAll(tasks);
+        if (cancelled.get()) {
+            throw new CancellationException();
+        }
+        List<T> results = new ArrayList<>(futures.size());
+        for (Future<T> future : futures) {
+            try {
+                results.add(future.get());
+            } catch (ExecutionException e) {
+                Log.e(TAG, "Error hashing image: " + e.getCause());
+                results.add(null);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Counts finished items for one stage and reports throttled progress.
+     * Called from the hash pool.
+     */
+    private static final class ProgressReporter {
+        private final int stage;
+        private final int total;
+        private final DuplicateFinderCallback callback;
+        private final AtomicBoolean cancelled;
+        private final long startTime = SystemClock.elapsedRealtime();
+        private int processed; // Guarded by this
+        private long lastReport; // Guarded by this
+
+        ProgressReporter(int stage, int total, DuplicateFinderCallback callback, AtomicBoolean cancelled) {
+            this.stage = stage;
+            this.total = total;
+            this.callback = callback;
+            this.cancelled = cancelled;
+            report(0, startTime);
+        }
 
-                // Add perceptual duplicate groups
-                for (List<Image> group : perceptualHashMap.values()) {
-                    if (group.size() > 1) {
-                        duplicates.add(new DuplicateGroup(group, 1));
+        synchronized void advance(int count) {
+            processed += count;
+            long now = SystemClock.elapsedRealtime();
+            if (processed >= total || now - lastReport >= PROGRESS_INTERVAL_MS) {
+                report(processed, now);
+            }
+        }
+
+        private void report(int done, long now) {
+            if (cancelled.get()) {
+                return;
+            }
+            long elapsed = now - startTime;
+            double rate = elapsed > 0 ? done * 1000.0 / elapsed : 0;
+            lastReport = now;
+            callback.onProgress(new ScanProgress(stage, done, total, rate));
+        }
+    }
+
+    /**
+     * Reads SIZE and DATE_MODIFIED for every image and video, keyed by _ID.
+     * This is what a cached hash is validated against.
+     */
+    private Map<Long, long[]> queryFileStats() {
+        Map<Long, long[]> stats = new HashMap<>();
+        String[] projection = {
+                MediaStore.Files.FileColumns._ID,
+                MediaStore.Files.FileColumns.SIZE,
+                MediaStore.Files.FileColumns.DATE_MODIFIED };
+        String selection = MediaStore.Files.FileColumns.MEDIA_TYPE + " IN (?, ?)";
+        String[] selectionArgs = {
+                String.valueOf(MediaStore.Files.FileColumns.MEDIA_TYPE_IMAGE),
+                String.valueOf(MediaStore.Files.FileColumns.MEDIA_TYPE_VIDEO) };
+        try (Cursor cursor = context.getContentResolver().query(MediaStore.Files.getContentUri("external"),
+                projection, selection, selectionArgs, null)) {
+            if (cursor == null) {
+                return stats;
+            }
+            while (cursor.moveToNext()) {
+                stats.put(cursor.getLong(0), new long[] { cursor.getLong(1), cursor.getLong(2) });
+            }
+        }
+        return stats;
+    }
+
+    // Drops cached hashes of media that has been deleted since the last scan.
+    private void pruneCache(Map<Long, long[]> fileStats) {
+        List<Long> gone = new ArrayList<>();
+        for (Long mediaId : hashStore.loadMediaIds()) {
+            if (!fileStats.containsKey(mediaId)) {
+                gone.add(mediaId);
+            }
+        }
+        hashStore.removeAll(gone);
+    }
+
+    /**
+     * One kind of hash for one scan: cached values that still match the file
+     * are reused, and new ones are computed and written back in batches.
+     * Safe to call from the hash pool: lookups only read the loaded entries,
+     * and new entries are batched under a lock.
+     */
+    private final class HashCache<T> {
+        private final String kind;
+        private final Class<T> type;
+        private final Map<Long, long[]> fileStats;
+        private final Map<Long, MediaHashStore.Entry> cached;
+        private final List<MediaHashStore.Entry> pending = new ArrayList<>();
+
+        HashCache(String kind, Class<T> type, Map<Long, long[]> fileStats) {
+            this.kind = kind;
+            this.type = type;
+            this.fileStats = fileStats;
+            this.cached = hashStore.load(kind);
+        }
+
+        T get(Image image, Function<Uri, T> hasher) {
+            long[] stat = fileStats.get(image.getMediaStoreId());
+            if (stat == null) {
+                return hasher.apply(image.getUri()); // Not a MediaStore file; nothing to key a cache entry on.
+            }
+            MediaHashStore.Entry entry = cached.get(image.getMediaStoreId());
+            if (entry != null && entry.matches(stat[0], stat[1]) && type.isInstance(entry.getValue())) {
+                return type.cast(entry.getValue());
+            }
+            T hash = hasher.apply(image.getUri());
+            if (hash != null) {
+                List<MediaHashStore.Entry> batch = null;
+                synchronized (pending) {
+                    pending.add(new MediaHashStore.Entry(image.getMediaStoreId(), stat[0], stat[1], hash));
+                    if (pending.size() >= CACHE_FLUSH_INTERVAL) {
+                        batch = new ArrayList<>(pending);
+                        pending.clear();
                     }
                 }
+                if (batch != null) {
+                    hashStore.putAll(kind, batch);
+                }
+            }
+            return hash;
+        }
 
-                callback.onDuplicatesFound(duplicates);
-            } catch (Exception e) {
-                Log.e(TAG, "Error finding duplicates: " + e.getMessage(), e);
-                callback.onError("Failed to find duplicates: " + e.getMessage());
+        void flush() {
+            List<MediaHashStore.Entry> batch;
+            synchronized (pending) {
+                batch = new ArrayList<>(pending);
+                pending.clear();
             }
-        });
+            hashStore.putAll(kind, batch);
+        }
     }
 
     /**
-     * Gets the exact file hash (SHA-256).
+     * SHA-256 of the file's first and last {@link #PARTIAL_BLOCK_SIZE} bytes
+     * (or of the whole file when it is shorter than two blocks).
      */
-    private String getFileHash(Uri imageUri) {
+    private String getPartialHash(Uri imageUri, AtomicBoolean cancelled) {
+        ByteBuffer head = ByteBuffer.allocate(PARTIAL_BLOCK_SIZE);
+        ByteBuffer tail = ByteBuffer.allocate(PARTIAL_BLOCK_SIZE);
+        tail.limit(0); // Stays empty for files of one block or less
+        try {
+            ioLane.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt(); // Scan cancelled
+            return null;
+        }
+        try (ParcelFileDescriptor pfd = context.getContentResolver().openFileDescriptor(imageUri, "r")) {
+            if (pfd == null) return null;
+            try (FileInputStream in = new FileInputStream(pfd.getFileDescriptor())) {
+                FileChannel channel = in.getChannel();
+                long size = channel.size();
+                readFully(channel, head, 0);
+                if (cancelled.get()) {
+                    return null;
+                }
+                if (size > PARTIAL_BLOCK_SIZE) {
+                    readFully(channel, tail, Math.max(PARTIAL_BLOCK_SIZE, size - PARTIAL_BLOCK_SIZE));
+                }
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Error computing partial hash: " + e.getMessage());
+            return null;
+        } finally {
+            ioLane.release();
+        }
+
         try {
             MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            byte[] buffer = new byte[8192];
-            int bytesRead;
+            digest.update(head);
+            digest.update(tail);
+            return bytesToHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            Log.e(TAG, "Error computing partial hash: " + e.getMessage());
+            return null;
+        }
+    }
 
-            try (var is = context.getContentResolver().openInputStream(imageUri)) {
-                if (is == null) return null;
+    // Reads up to one buffer of bytes starting at position, and flips the buffer for reading.
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        buffer.clear();
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                break;
+            }
+        }
+        buffer.flip();
+    }
 
-                while ((bytesRead = is.read(buffer)) != -1) {
-                    digest.update(buffer, 0, bytesRead);
+    /**
+     * Gets the exact file hash (SHA-256). Each chunk is read under a lane
+     * permit and digested after releasing it.
+     */
+    private String getFileHash(Uri imageUri, AtomicBoolean cancelled) {
+        try (var is = context.getContentResolver().openInputStream(imageUri)) {
+            if (is == null) return null;
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] buffer = new byte[READ_CHUNK_SIZE];
+            while (true) {
+                if (cancelled.get()) {
+                    return null;
+                }
+                int length = 0;
+                ioLane.acquire();
+                try {
+                    int read;
+                    while (length < buffer.length && (read = is.read(buffer, length, buffer.length - length)) != -1) {
+                        length += read;
+                    }
+                } finally {
+                    ioLane.release();
+                }
+                digest.update(buffer, 0, length);
+                if (length < buffer.length) {
+                    break; // End of file
                 }
             }
-
             return bytesToHex(digest.digest());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt(); // Scan cancelled
+            return null;
         } catch (NoSuchAlgorithmException | IOException e) {
             Log.e(TAG, "Error computing file hash: " + e.getMessage());
             return null;
@@ -144,84 +678,162 @@ public class DuplicateFinder {
     }
 
     /**
-     * Gets the perceptual hash using average hash algorithm.
+     * Perceptual hash of the image: the decoded thumbnail is scaled to the
+     * hash's sample size and read with a single getPixels call.
      * This is more resilient to image transformations (resize, compress, etc.)
      */
-    private String getPerceptualHash(Uri imageUri) {
+    private Long getPerceptualHash(Uri imageUri, PerceptualHash algorithm) {
         try {
-            Bitmap bitmap = MediaStore.Images.Media.getBitmap(context.getContentResolver(), imageUri);
+            Bitmap bitmap = decodeForHash(imageUri);
             if (bitmap == null) return null;
+            return hashBitmap(bitmap, algorithm);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt(); // Scan cancelled
+            return null;
+        } catch (IOException e) {
+            Log.e(TAG, "Error computing perceptual hash: " + e.getMessage());
+            return null;
+        }
+    }
 
-            // Resize to HASH_SIZE x HASH_SIZE
-            Bitmap resized = Bitmap.createScaledBitmap(bitmap, HASH_SIZE, HASH_SIZE, true);
-
-            // Convert to grayscale and calculate average brightness
-            long[] pixelSum = new long[3];
-            for (int i = 0; i < resized.getWidth(); i++) {
-                for (int j = 0; j < resized.getHeight(); j++) {
-                    int pixel = resized.getPixel(i, j);
-                    pixelSum[0] += (pixel >> 16) & 0xFF; // R
-                    pixelSum[1] += (pixel >> 8) & 0xFF;  // G
-                    pixelSum[2] += pixel & 0xFF;          // B
-                }
-            }
+    // Scales the bitmap to the hash's sample size, hashes it and recycles both bitmaps.
+    private static long hashBitmap(Bitmap bitmap, PerceptualHash algorithm) {
+        int width = algorithm.sampleWidth;
+        int height = algorithm.sampleHeight;
+        Bitmap resized = Bitmap.createScaledBitmap(bitmap, width, height, true);
+        int[] pixels = new int[width * height];
+        resized.getPixels(pixels, 0, width, 0, 0, width, height);
 
-            int totalPixels = HASH_SIZE * HASH_SIZE;
-            long avgBrightness = (pixelSum[0] + pixelSum[1] + pixelSum[2]) / (3L * totalPixels);
+        if (!bitmap.isRecycled()) {
+            bitmap.recycle();
+        }
+        if (!resized.isRecycled()) {
+            resized.recycle();
+        }
 
-            // Create hash based on which pixels are above average
-            StringBuilder hash = new StringBuilder();
-            for (int i = 0; i < resized.getWidth(); i++) {
-                for (int j = 0; j < resized.getHeight(); j++) {
-                    int pixel = resized.getPixel(i, j);
-                    long brightness = ((pixel >> 16) & 0xFF) + ((pixel >> 8) & 0xFF) + (pixel & 0xFF);
-                    hash.append(brightness > avgBrightness ? "1" : "0");
-                }
-            }
+        return algorithm.hash(pixels);
+    }
 
-            if (!bitmap.isRecycled()) {
-                bitmap.recycle();
+    /**
+     * Fingerprint of a video from frames at fixed offsets from its start and
+     * its end (see {@link VideoSignature}), decoded at a small size and
+     * serialized for the hash cache. Only the container index and the frames
+     * near each sample point are read.
+     */
+    private byte[] getVideoSignature(Uri videoUri, PerceptualHash algorithm, AtomicBoolean cancelled) {
+        MediaMetadataRetriever retriever = new MediaMetadataRetriever();
+        try {
+            String duration;
+            ioLane.acquire();
+            try {
+                retriever.setDataSource(context, videoUri);
+                duration = retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_DURATION);
+            } finally {
+                ioLane.release();
             }
-            if (!resized.isRecycled()) {
-                resized.recycle();
+            long durationMs = duration != null ? Long.parseLong(duration) : 0;
+            int framesPerEnd = VideoSignature.framesPerEnd(durationMs);
+            if (framesPerEnd == 0) {
+                return null;
             }
-
-            return hash.toString();
-        } catch (IOException e) {
-            Log.e(TAG, "Error computing perceptual hash: " + e.getMessage());
+            long[] headHashes = new long[framesPerEnd];
+            long[] tailHashes = new long[framesPerEnd];
+            for (int i = 0; i < framesPerEnd; i++) {
+                Long head = getFrameHash(retriever, VideoSignature.headTimeMs(i), algorithm, cancelled);
+                Long tail = getFrameHash(retriever, VideoSignature.tailTimeMs(durationMs, i), algorithm, cancelled);
+                if (head == null || tail == null) {
+                    // Frames are compared by position, so a gap would misalign the rest
+                    return null;
+                }
+                headHashes[i] = head;
+                tailHashes[i] = tail;
+            }
+            return new VideoSignature(durationMs, headHashes, tailHashes).toBytes();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt(); // Scan cancelled
+            return null;
+        } catch (RuntimeException e) {
+            // setDataSource and the frame getters throw IllegalArgumentException/RuntimeException on bad files.
+            Log.e(TAG, "Error computing video signature: " + e.getMessage());
             return null;
+        } finally {
+            try {
+                retriever.release();
+            } catch (IOException | RuntimeException e) {
+                Log.w(TAG, "Error releasing retriever: " + e.getMessage());
+            }
         }
     }
 
-    /**
-     * Calculates Hamming distance between two binary hashes.
-     */
-    private int hammingDistance(String hash1, String hash2) {
-        if (hash1.length() != hash2.length()) {
-            return Integer.MAX_VALUE;
+    // Hash of the frame at timeMs, or null if it can't be decoded or the scan was cancelled.
+    private Long getFrameHash(MediaMetadataRetriever retriever, long timeMs, PerceptualHash algorithm,
+            AtomicBoolean cancelled) throws InterruptedException {
+        if (cancelled.get()) {
+            return null;
         }
-
-        int distance = 0;
-        for (int i = 0; i < hash1.length(); i++) {
-            if (hash1.charAt(i) != hash2.charAt(i)) {
-                distance++;
-            }
+        Bitmap frame;
+        // The retriever reads and decodes in one call, so the permit covers both; hashing runs outside.
+        // The exact frame rather than the nearest sync frame: copies are re-encoded with their own keyframes,
+        // and frames are compared by offset.
+        ioLane.acquire();
+        try {
+            frame = Build.VERSION.SDK_INT >= Build.VERSION_CODES.O_MR1
+                    ? retriever.getScaledFrameAtTime(timeMs * 1000, MediaMetadataRetriever.OPTION_CLOSEST,
+                            DECODE_TARGET_SIZE, DECODE_TARGET_SIZE)
+                    : retriever.getFrameAtTime(timeMs * 1000, MediaMetadataRetriever.OPTION_CLOSEST);
+        } finally {
+            ioLane.release();
         }
-        return distance;
+        return frame != null ? hashBitmap(frame, algorithm) : null;
     }
 
     /**
-     * Checks if an image is already in a duplicate group.
+     * Decodes a small version of the image: a few dozen pixels a side is
+     * plenty for any of the hash samples (32x32 at most), and keeps each decode in the kilobytes instead
+     * of a full-resolution bitmap. The image is streamed, never buffered whole.
      */
-    private boolean isInGroup(Image image, List<DuplicateGroup> groups) {
-        for (DuplicateGroup group : groups) {
-            for (Image img : group.images) {
-                if (img.getUri().equals(image.getUri())) {
-                    return true;
-                }
+    private Bitmap decodeForHash(Uri imageUri) throws IOException, InterruptedException {
+        ContentResolver resolver = context.getContentResolver();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            // MediaStore keeps these thumbnails cached, so most images are never decoded in full.
+            // The provider reads and decodes in one call, so the permit covers both.
+            ioLane.acquire();
+            try {
+                return resolver.loadThumbnail(imageUri, new Size(DECODE_TARGET_SIZE, DECODE_TARGET_SIZE), null);
+            } finally {
+                ioLane.release();
             }
         }
-        return false;
+
+        // Bounds first, then a second stream for the sampled decode; neither holds the whole file.
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        ioLane.acquire();
+        try (InputStream in = resolver.openInputStream(imageUri)) {
+            if (in == null) return null;
+            BitmapFactory.decodeStream(in, null, options);
+        } finally {
+            ioLane.release();
+        }
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+        // Largest power of two that keeps the short side at or above the target.
+        int sampleSize = 1;
+        while (Math.min(options.outWidth, options.outHeight) / (sampleSize * 2) >= DECODE_TARGET_SIZE) {
+            sampleSize *= 2;
+        }
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize;
+        options.inPreferredConfig = Bitmap.Config.RGB_565; // No alpha needed for brightness
+        // The decoder reads as it decodes, so the permit covers the (sampled, small) decode
+        ioLane.acquire();
+        try (InputStream in = resolver.openInputStream(imageUri)) {
+            if (in == null) return null;
+            return BitmapFactory.decodeStream(in, null, options);
+        } finally {
+            ioLane.release();
+        }
     }
 
     private String bytesToHex(byte[] bytes) {
@@ -232,7 +844,13 @@ public class DuplicateFinder {
         return sb.toString();
     }
 
+    /**
+     * Cancels the scan in flight and stops the finder's threads. The finder
+     * can't be used afterwards.
+     */
     public void shutdown() {
-        executorService.shutdown();
+        cancel();
+        executorService.shutdownNow();
+        hashPool.shutdownNow();
     }
 }
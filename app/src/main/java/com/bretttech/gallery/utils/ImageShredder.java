@@ -3,24 +3,80 @@ package com.bretttech.gallery.utils;
 import android.content.ContentResolver;
 import android.content.Context;
 import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+import android.os.SystemClock;
 import android.provider.MediaStore;
 import android.util.Log;
 
 import java.io.File;
-import java.io.InputStream;
-import java.io.OutputStream;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.util.Random;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
 
 /**
- * Utility class for securely shredding (deleting) image files.
- * Overwrites file content before deletion for enhanced privacy.
+ * Securely shreds (deletes) image files.
+ * Overwrites file content in place before deletion for enhanced privacy.
  */
 public class ImageShredder {
     private static final String TAG = "ImageShredder";
-    private static final int OVERWRITE_PASSES = 3; // Number of times to overwrite
+    // Files shredded at once. Flash write bandwidth is the limit, so more threads only add contention.
+    private static final int SHRED_CONCURRENCY = 2;
+    private static final int BUFFER_SIZE = 1024 * 1024;
+    private static final long CALIBRATION_SIZE = 32L * 1024 * 1024;
+    public static final long PROGRESS_INTERVAL_MS = 250;
+
+    // One write buffer per shredding thread, reused across files and passes.
+    private static final ThreadLocal<byte[]> BUFFERS = ThreadLocal.withInitial(() -> new byte[BUFFER_SIZE]);
+    // Keystream input; never written to.
+    private static final byte[] ZEROS = new byte[BUFFER_SIZE];
+
+    private final Context context;
+    private final ExecutorService shredPool = Executors.newFixedThreadPool(SHRED_CONCURRENCY);
+
+    /**
+     * Throttled progress of {@link #shredAll}. Called from the shredding threads, in the middle of
+     * a pass, so it must not touch UI; exceptions it throws are logged and ignored.
+     */
+    public interface ProgressListener {
+        void onProgress(ShredProgress progress);
+    }
+
+    /**
+     * How far a {@link #shredAll} call has got.
+     */
+    public static class ShredProgress {
+        public final int filesDone;
+        public final int filesTotal;
+        public final long bytesWritten; // Across all passes
+        public final double bytesPerSecond;
+
+        public ShredProgress(int filesDone, int filesTotal, long bytesWritten, double bytesPerSecond) {
+            this.filesDone = filesDone;
+            this.filesTotal = filesTotal;
+            this.bytesWritten = bytesWritten;
+            this.bytesPerSecond = bytesPerSecond;
+        }
+    }
+
+    public ImageShredder(Context context) {
+        this.context = context.getApplicationContext();
+    }
 
     /**
      * Securely shreds an image file by overwriting its content before deletion.
@@ -30,9 +86,81 @@ public class ImageShredder {
      * @return true if successfully shredded, false otherwise
      */
     public static boolean shredImage(Context context, Uri imageUri) {
+        return shred(context, imageUri, ShredPolicy.DEFAULT, null);
+    }
+
+    /**
+     * Shreds the images on a bounded pool and blocks until all are done.
+     *
+     * @return the number of images shredded successfully
+     */
+    public int shredAll(List<Uri> imageUris, ShredPolicy policy, ProgressListener listener)
+            throws InterruptedException {
+        ProgressReporter reporter = new ProgressReporter(imageUris.size(), listener);
+        List<Callable<Boolean>> tasks = new ArrayList<>(imageUris.size());
+        for (Uri uri : imageUris) {
+            tasks.add(() -> {
+                boolean shredded = shred(context, uri, policy, reporter);
+                reporter.fileDone();
+                return shredded;
+            });
+        }
+        int successCount = 0;
+        for (Future<Boolean> result : shredPool.invokeAll(tasks)) {
+            try {
+                if (result.get()) {
+                    successCount++;
+                }
+            } catch (ExecutionException e) {
+                Log.e(TAG, "Error shredding image", e.getCause());
+            }
+        }
+        return successCount;
+    }
+
+    /**
+     * Times {@code policy} on a scratch file in the cache directory, which sits on the same storage
+     * as the media. Writes {@link #CALIBRATION_SIZE} bytes per pass; call off the main thread.
+     *
+     * @return seconds to shred 1 GiB of files, or -1 if the measurement failed
+     */
+    public static double measureSecondsPerGb(Context context, ShredPolicy policy) {
+        File scratch = null;
+        try {
+            scratch = File.createTempFile("shred", null, context.getCacheDir());
+            try (RandomAccessFile file = new RandomAccessFile(scratch, "rw");
+                 FileChannel channel = file.getChannel()) {
+                byte[] buffer = BUFFERS.get();
+                // Real blocks first, so the timed passes overwrite allocated data like a shred does
+                writePass(channel, CALIBRATION_SIZE, ShredPolicy.Pattern.ZEROS, buffer, null);
+                long start = SystemClock.elapsedRealtimeNanos();
+                for (int pass = 0; pass < policy.getPassCount(); pass++) {
+                    writePass(channel, CALIBRATION_SIZE, policy.getPass(pass), buffer, null);
+                }
+                double seconds = (SystemClock.elapsedRealtimeNanos() - start) / 1e9;
+                return seconds * (1L << 30) / CALIBRATION_SIZE;
+            }
+        } catch (IOException | GeneralSecurityException e) {
+            Log.e(TAG, "Error measuring " + policy + ": " + e.getMessage(), e);
+            return -1;
+        } finally {
+            if (scratch != null && !scratch.delete()) {
+                Log.w(TAG, "Could not delete " + scratch);
+            }
+        }
+    }
+
+    /**
+     * Lets queued shreds finish, then stops the pool.
+     */
+    public void shutdown() {
+        shredPool.shutdown();
+    }
+
+    private static boolean shred(Context context, Uri imageUri, ShredPolicy policy, ProgressReporter reporter) {
         try {
             // First, overwrite the file content
-            if (!overwriteFile(context, imageUri)) {
+            if (!overwriteFile(context, imageUri, policy, reporter)) {
                 Log.w(TAG, "Failed to overwrite file, but will attempt deletion");
             }
 
@@ -45,49 +173,99 @@ public class ImageShredder {
     }
 
     /**
-     * Overwrites file content with random data multiple times.
+     * Overwrites file content once per pass of the policy.
+     * The file is opened once in "rw" mode; "w" may truncate it, leaving the old blocks untouched.
      */
-    private static boolean overwriteFile(Context context, Uri imageUri) {
-        try {
-            ContentResolver contentResolver = context.getContentResolver();
-            
-            // Get file size
-            long fileSize = getFileSize(context, imageUri);
-            if (fileSize <= 0) {
+    private static boolean overwriteFile(Context context, Uri imageUri, ShredPolicy policy,
+            ProgressReporter reporter) {
+        ContentResolver contentResolver = context.getContentResolver();
+        try (ParcelFileDescriptor pfd = contentResolver.openFileDescriptor(imageUri, "rw")) {
+            if (pfd == null) {
                 return false;
             }
+            try (FileOutputStream out = new FileOutputStream(pfd.getFileDescriptor());
+                 FileChannel channel = out.getChannel()) {
+                long fileSize = channel.size();
+                if (fileSize <= 0) {
+                    return false;
+                }
 
-            Random random = new Random();
-            byte[] overwriteBuffer;
-
-            // Perform multiple overwrite passes
-            for (int pass = 0; pass < OVERWRITE_PASSES; pass++) {
-                try (OutputStream os = contentResolver.openOutputStream(imageUri)) {
-                    if (os == null) {
-                        return false;
-                    }
-
-                    // Write random data
-                    long bytesWritten = 0;
-                    int bufferSize = Math.min((int) fileSize, 8192);
-                    overwriteBuffer = new byte[bufferSize];
-
-                    while (bytesWritten < fileSize) {
-                        random.nextBytes(overwriteBuffer);
-                        int toWrite = (int) Math.min(bufferSize, fileSize - bytesWritten);
-                        os.write(overwriteBuffer, 0, toWrite);
-                        bytesWritten += toWrite;
-                    }
+                byte[] buffer = BUFFERS.get();
+                for (int pass = 0; pass < policy.getPassCount(); pass++) {
+                    writePass(channel, fileSize, policy.getPass(pass), buffer, reporter);
                 }
+                return true;
             }
-
-            return true;
-        } catch (Exception e) {
+        } catch (IOException | GeneralSecurityException | RuntimeException e) {
             Log.e(TAG, "Error overwriting file: " + e.getMessage(), e);
             return false;
         }
     }
 
+    /**
+     * Writes one pass over the first {@code size} bytes, then syncs it.
+     */
+    private static void writePass(FileChannel channel, long size, ShredPolicy.Pattern pattern, byte[] buffer,
+            ProgressReporter reporter) throws IOException, GeneralSecurityException {
+        int blockSize = (int) Math.min(buffer.length, size);
+        Cipher keystream = null;
+        SecureRandom random = null;
+        switch (pattern) {
+            case ZEROS:
+                Arrays.fill(buffer, 0, blockSize, (byte) 0);
+                break;
+            case ONES:
+                Arrays.fill(buffer, 0, blockSize, (byte) 0xFF);
+                break;
+            case RANDOM:
+                random = new SecureRandom();
+                if (blockSize < buffer.length) {
+                    // nextBytes fills the whole array; don't generate a full buffer for a small file
+                    buffer = new byte[blockSize];
+                }
+                break;
+            case KEYSTREAM:
+                keystream = newKeystream();
+                break;
+        }
+
+        long position = 0;
+        while (position < size) {
+            int length = (int) Math.min(blockSize, size - position);
+            // Fresh bytes for every block, so no stretch of the file repeats another
+            if (keystream != null) {
+                keystream.update(ZEROS, 0, length, buffer, 0);
+            } else if (random != null) {
+                random.nextBytes(buffer);
+            }
+            ByteBuffer block = ByteBuffer.wrap(buffer, 0, length);
+            while (block.hasRemaining()) {
+                int written = channel.write(block, position);
+                position += written;
+                if (reporter != null) {
+                    reporter.bytesWritten(written);
+                }
+            }
+        }
+        // Data only: the pass has to reach storage before the next one overwrites it in cache
+        channel.force(false);
+    }
+
+    /**
+     * AES-CTR under a random key that is never stored, so the written bytes can't be reproduced.
+     */
+    private static Cipher newKeystream() throws GeneralSecurityException {
+        byte[] key = new byte[32];
+        byte[] iv = new byte[16];
+        SecureRandom random = new SecureRandom();
+        random.nextBytes(key);
+        random.nextBytes(iv);
+        Cipher cipher = Cipher.getInstance("AES/CTR/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key, "AES"), new IvParameterSpec(iv));
+        Arrays.fill(key, (byte) 0);
+        return cipher;
+    }
+
     /**
      * Deletes a file from the content provider.
      */
@@ -117,41 +295,6 @@ public class ImageShredder {
         }
     }
 
-    /**
-     * Gets the file size in bytes.
-     */
-    private static long getFileSize(Context context, Uri imageUri) {
-        try {
-            ContentResolver contentResolver = context.getContentResolver();
-            
-            // Try to get size from MediaStore
-            try (var cursor = contentResolver.query(
-                    imageUri,
-                    new String[]{MediaStore.MediaColumns.SIZE},
-                    null,
-                    null)) {
-                if (cursor != null && cursor.moveToFirst()) {
-                    int sizeIndex = cursor.getColumnIndex(MediaStore.MediaColumns.SIZE);
-                    if (sizeIndex >= 0) {
-                        return cursor.getLong(sizeIndex);
-                    }
-                }
-            }
-
-            // Try to get size by reading
-            try (InputStream is = contentResolver.openInputStream(imageUri)) {
-                if (is != null) {
-                    return is.available();
-                }
-            }
-
-            return 0;
-        } catch (Exception e) {
-            Log.e(TAG, "Error getting file size: " + e.getMessage());
-            return 0;
-        }
-    }
-
     /**
      * Gets the file path from URI.
      */
@@ -178,4 +321,53 @@ public class ImageShredder {
             return null;
         }
     }
+
+    /**
+     * Counts written bytes and finished files, and reports throttled progress.
+     */
+    private static final class ProgressReporter {
+        private final int filesTotal;
+        private final ProgressListener listener;
+        private final long startTime = SystemClock.elapsedRealtime();
+        private int filesDone; // Guarded by this
+        private long bytesWritten; // Guarded by this
+        private long lastReport; // Guarded by this
+
+        ProgressReporter(int filesTotal, ProgressListener listener) {
+            this.filesTotal = filesTotal;
+            this.listener = listener;
+            report(startTime);
+        }
+
+        synchronized void bytesWritten(long count) {
+            bytesWritten += count;
+            long now = SystemClock.elapsedRealtime();
+            if (now - lastReport >= PROGRESS_INTERVAL_MS) {
+                report(now);
+            }
+        }
+
+        synchronized void fileDone() {
+            filesDone++;
+            long now = SystemClock.elapsedRealtime();
+            if (filesDone >= filesTotal || now - lastReport >= PROGRESS_INTERVAL_MS) {
+                report(now);
+            }
+        }
+
+        private void report(long now) {
+            if (listener == null) {
+                return;
+            }
+            long elapsed = now - startTime;
+            double rate = elapsed > 0 ? bytesWritten * 1000.0 / elapsed : 0;
+            lastReport = now;
+            try {
+                listener.onProgress(new ShredProgress(filesDone, filesTotal, bytesWritten, rate));
+            } catch (RuntimeException e) {
+                // Called mid-pass: a failing listener must not cut the overwrite short
+                Log.e(TAG, "Progress listener failed", e);
+            }
+        }
+    }
 }
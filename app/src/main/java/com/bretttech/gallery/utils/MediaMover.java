@@ -0,0 +1,529 @@
+package com.bretttech.gallery.utils;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.OperationApplicationException;
+import android.database.Cursor;
+import android.media.MediaScannerConnection;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Environment;
+import android.os.ParcelFileDescriptor;
+import android.os.RemoteException;
+import android.provider.MediaStore;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.bretttech.gallery.data.MoveJournal;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Moves media files without copying them where the storage allows it.
+ * <ol>
+ *     <li>API 29+, MediaStore item staying on its volume: update RELATIVE_PATH, MediaStore moves the file.</li>
+ *     <li>Plain file, or a MediaStore item's DATA path before API 29: atomic {@link File#renameTo}.</li>
+ *     <li>Otherwise (e.g. between the secure folder and shared storage, which are different volumes):
+ *     copy with {@link FileChannel#transferTo}, so the kernel moves the bytes.</li>
+ * </ol>
+ * {@link #moveAll} runs several moves at once, then scans and deletes for the whole batch in one call each.
+ * A copied original is only deleted once the copy's size has been checked and journaled.
+ * On API 30+ the app can only update items it didn't create after the user grants write access, so callers
+ * should ask once for {@link #renameCandidates} with {@link MediaStore#createWriteRequest} before moving.
+ */
+public class MediaMover {
+    private static final String TAG = "MediaMover";
+    // Moves in flight at once: enough to overlap one file's reads with another's writes and renames.
+    private static final int MOVE_CONCURRENCY = 3;
+
+    /**
+     * What is left to do after {@link #move}. A copied item still has its source, which the caller
+     * deletes (possibly batched with others); the paths are for the media scanner.
+     */
+    public static class Result {
+        public final File destination;
+        @Nullable
+        public final Uri sourceToDelete;
+        public final List<String> pathsToScan;
+        public final long size; // Bytes copied, or -1 if the item was renamed
+
+        Result(File destination, @Nullable Uri sourceToDelete, List<String> pathsToScan, long size) {
+            this.destination = destination;
+            this.sourceToDelete = sourceToDelete;
+            this.pathsToScan = pathsToScan;
+            this.size = size;
+        }
+    }
+
+    /**
+     * Outcome of {@link #moveAll}.
+     */
+    public static class BatchResult {
+        public final int movedCount;
+        public final int failedCount;
+        /**
+         * Copied items whose sources the app may not delete on its own; pass them to one
+         * {@link MediaStore#createDeleteRequest} on API 30+.
+         */
+        public final List<Uri> sourcesNeedingConsent;
+
+        BatchResult(int movedCount, int failedCount, List<Uri> sourcesNeedingConsent) {
+            this.movedCount = movedCount;
+            this.failedCount = failedCount;
+            this.sourcesNeedingConsent = sourcesNeedingConsent;
+        }
+    }
+
+    // Batches this process is running, so resumeInterrupted() leaves them alone. Also the lock that makes
+    // starting a batch and registering it one step.
+    private static final Set<Long> activeBatches = Collections.synchronizedSet(new HashSet<>());
+
+    private final Context context;
+    private final MoveJournal journal;
+
+    public MediaMover(Context context) {
+        this.context = context.getApplicationContext();
+        journal = MoveJournal.getInstance(context);
+    }
+
+    /**
+     * Moves the items into {@code destinationDir} under their own names, made unique, on a bounded pool.
+     * Once all are done, the new files go to the media scanner in one call and the copied sources are
+     * deleted in one batch. Blocks until then. Each file's progress is journaled, so a batch cut short by
+     * the process dying is picked up by {@link #resumeInterrupted}.
+     */
+    public BatchResult moveAll(List<Uri> sources, File destinationDir) throws InterruptedException {
+        if (!destinationDir.exists() && !destinationDir.mkdirs()) {
+            return new BatchResult(0, sources.size(), new ArrayList<>());
+        }
+
+        List<MoveJournal.Entry> entries = new ArrayList<>(sources.size());
+        Set<String> reservedNames = new HashSet<>();
+        for (Uri source : sources) {
+            entries.add(new MoveJournal.Entry(source,
+                    uniqueDestination(destinationDir, getDisplayName(source), reservedNames)));
+        }
+        long batchId;
+        // Registered in the same step as the rows appear, so resumeInterrupted() can never pick this batch up
+        synchronized (activeBatches) {
+            batchId = journal.begin(entries);
+            activeBatches.add(batchId);
+        }
+        try {
+            return run(batchId, entries, false);
+        } finally {
+            activeBatches.remove(batchId);
+        }
+    }
+
+    /**
+     * The content:// sources {@link #moveAll} would move into {@code destinationDir} with a RELATIVE_PATH
+     * update rather than a copy. Items among them the app didn't create need a write grant first; without
+     * one they fall back to a full copy and a delete prompt. Empty before API 30, where no grant exists.
+     */
+    public static List<Uri> renameCandidates(List<Uri> sources, File destinationDir) {
+        List<Uri> candidates = new ArrayList<>();
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.R) {
+            return candidates;
+        }
+        for (Uri source : sources) {
+            if ("content".equals(source.getScheme()) && relativePathIn(source, destinationDir) != null) {
+                candidates.add(source);
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * Finishes batches an earlier process was killed in the middle of. Files already copied or verified
+     * aren't copied or checked again. Originals that need the user's consent to delete are left in place.
+     * Call off the main thread.
+     *
+     * @return the number of batches resumed
+     */
+    public int resumeInterrupted() throws InterruptedException {
+        List<Long> interrupted = new ArrayList<>();
+        synchronized (activeBatches) {
+            for (long batchId : journal.loadBatchIds()) {
+                if (activeBatches.add(batchId)) {
+                    interrupted.add(batchId);
+                }
+            }
+        }
+        try {
+            for (long batchId : interrupted) {
+                BatchResult result = run(batchId, journal.loadEntries(batchId), true);
+                if (!result.sourcesNeedingConsent.isEmpty()) {
+                    Log.w(TAG, "Resumed move left " + result.sourcesNeedingConsent.size() + " original(s) in place");
+                }
+            }
+        } finally {
+            activeBatches.removeAll(interrupted);
+        }
+        return interrupted.size();
+    }
+
+    private BatchResult run(long batchId, List<MoveJournal.Entry> entries, boolean resumed)
+            throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(MOVE_CONCURRENCY);
+        ExecutorCompletionService<Result> completion = new ExecutorCompletionService<>(pool);
+        Set<MoveJournal.Entry> unresolved = Collections.synchronizedSet(new HashSet<>());
+        try {
+            for (MoveJournal.Entry entry : entries) {
+                completion.submit(() -> advance(entry, resumed, unresolved));
+            }
+
+            int moved = 0;
+            List<String> pathsToScan = new ArrayList<>();
+            List<Uri> sourcesToDelete = new ArrayList<>();
+            for (int i = 0; i < entries.size(); i++) {
+                Result result;
+                try {
+                    result = completion.take().get();
+                } catch (ExecutionException e) {
+                    Log.e(TAG, "Error moving item", e.getCause());
+                    result = null;
+                }
+                if (result == null) {
+                    continue;
+                }
+                moved++;
+                pathsToScan.addAll(result.pathsToScan);
+                if (result.sourceToDelete != null) {
+                    sourcesToDelete.add(result.sourceToDelete);
+                }
+            }
+
+            if (!pathsToScan.isEmpty()) {
+                MediaScannerConnection.scanFile(context, pathsToScan.toArray(new String[0]), null, null);
+            }
+            // Deleting a source twice after a crash right here is harmless, so they aren't journaled one by one
+            List<Uri> needingConsent = deleteSources(sourcesToDelete);
+            // Unresolved entries stay journaled as they are, for the next resume to look at again
+            journal.finish(batchId, unresolved);
+            return new BatchResult(moved, entries.size() - moved, needingConsent);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Takes one file from its journaled state to verified (or moved by rename), recording each step.
+     * A resumed entry whose source can't be resolved is added to {@code unresolved} and left untouched.
+     *
+     * @return what is left to do, or null if the file could not be moved
+     */
+    @Nullable
+    private Result advance(MoveJournal.Entry entry, boolean resumed, Set<MoveJournal.Entry> unresolved) {
+        List<String> pathsToScan = listOf(entry.destination.getAbsolutePath());
+        if (entry.state == MoveJournal.STATE_COPIED && entry.destination.length() != entry.size) {
+            // Copy damaged or removed since; start it over
+            if (entry.destination.exists() && !entry.destination.delete()) {
+                return null;
+            }
+            entry.state = MoveJournal.STATE_PENDING;
+        }
+        if (entry.state == MoveJournal.STATE_PENDING) {
+            if (resumed && entry.destination.exists()) {
+                Boolean renamed = wasRenamed(entry);
+                if (renamed == null) {
+                    // Could be the only copy or a partial one; don't scan it in or delete it
+                    Log.w(TAG, "Cannot resolve " + entry.source + ", leaving " + entry.destination + " pending");
+                    unresolved.add(entry);
+                    return null;
+                }
+                if (renamed) {
+                    entry.state = MoveJournal.STATE_SOURCE_DELETED;
+                    journal.update(entry);
+                    return new Result(entry.destination, null, pathsToScan, -1);
+                }
+                // Partial copy from before the crash
+                if (!entry.destination.delete()) {
+                    return null;
+                }
+            }
+            Result result = move(entry.source, entry.destination);
+            if (result == null) {
+                return null;
+            }
+            pathsToScan = result.pathsToScan;
+            if (result.sourceToDelete == null) {
+                entry.state = MoveJournal.STATE_SOURCE_DELETED;
+                journal.update(entry);
+                return result;
+            }
+            entry.size = result.size;
+            entry.state = MoveJournal.STATE_COPIED;
+            journal.update(entry);
+        }
+        if (entry.state == MoveJournal.STATE_COPIED) {
+            if (entry.destination.length() != entry.size) {
+                Log.e(TAG, "Size mismatch after copying " + entry.source);
+                return null;
+            }
+            entry.state = MoveJournal.STATE_VERIFIED;
+            journal.update(entry);
+        }
+        Uri sourceToDelete = entry.state == MoveJournal.STATE_VERIFIED ? entry.source : null;
+        return new Result(entry.destination, sourceToDelete, pathsToScan, entry.size);
+    }
+
+    /**
+     * Whether a pending entry's destination is the source itself, moved there by a rename before a crash:
+     * MediaStore already points at the destination, or the known source file is gone.
+     *
+     * @return null if the source can't be resolved, so there is no evidence either way
+     */
+    @Nullable
+    private Boolean wasRenamed(MoveJournal.Entry entry) {
+        String sourcePath = "file".equals(entry.source.getScheme())
+                ? entry.source.getPath() : getDataPath(entry.source);
+        if (sourcePath == null) {
+            return null;
+        }
+        return sourcePath.equals(entry.destination.getAbsolutePath()) || !new File(sourcePath).exists();
+    }
+
+    /**
+     * Deletes copied sources: plain files directly, MediaStore items in one provider batch.
+     *
+     * @return sources the app isn't allowed to delete without asking the user
+     */
+    private List<Uri> deleteSources(List<Uri> sources) {
+        List<Uri> needingConsent = new ArrayList<>();
+        if (sources.isEmpty()) {
+            return needingConsent;
+        }
+        ContentResolver resolver = context.getContentResolver();
+        List<Uri> mediaSources = new ArrayList<>(sources.size());
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>(sources.size());
+        for (Uri uri : sources) {
+            if ("file".equals(uri.getScheme())) {
+                if (!new File(uri.getPath()).delete()) {
+                    Log.w(TAG, "Copied but could not delete " + uri.getPath());
+                }
+            } else {
+                mediaSources.add(uri);
+                operations.add(ContentProviderOperation.newDelete(uri).build());
+            }
+        }
+        if (operations.isEmpty()) {
+            return needingConsent;
+        }
+        try {
+            resolver.applyBatch(MediaStore.AUTHORITY, operations);
+        } catch (SecurityException e) {
+            // The batch stops at the first item the app doesn't own; sort the rest out one by one
+            for (Uri uri : mediaSources) {
+                try {
+                    resolver.delete(uri, null, null);
+                } catch (SecurityException denied) {
+                    needingConsent.add(uri);
+                }
+            }
+        } catch (RemoteException | OperationApplicationException e) {
+            Log.e(TAG, "Error deleting moved sources: " + e.getMessage(), e);
+        }
+        return needingConsent;
+    }
+
+    /**
+     * Moves a file:// or content:// item to {@code destination}, which must not exist yet.
+     *
+     * @return what is left to do, or null if the item could not be moved
+     */
+    @Nullable
+    public Result move(Uri source, File destination) {
+        try {
+            if ("file".equals(source.getScheme())) {
+                return moveFile(new File(source.getPath()), destination);
+            }
+            return moveMediaItem(source, destination);
+        } catch (IOException | RuntimeException e) {
+            Log.e(TAG, "Error moving " + source + ": " + e.getMessage(), e);
+            // Don't leave a partial copy behind
+            if (destination.exists() && !destination.delete()) {
+                Log.w(TAG, "Could not delete partial " + destination);
+            }
+            return null;
+        }
+    }
+
+    private Result moveFile(File source, File destination) throws IOException {
+        if (source.renameTo(destination)) {
+            return new Result(destination, null, listOf(destination.getAbsolutePath()), -1);
+        }
+        long size;
+        try (FileInputStream in = new FileInputStream(source)) {
+            size = transfer(in.getChannel(), destination);
+        }
+        // The original is deleted only after the copy is verified
+        return new Result(destination, Uri.fromFile(source), listOf(destination.getAbsolutePath()), size);
+    }
+
+    private Result moveMediaItem(Uri source, File destination) throws IOException {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            if (updateRelativePath(source, destination)) {
+                // MediaStore moved the file and updated its row; nothing to scan
+                return new Result(destination, null, new ArrayList<>(), -1);
+            }
+        } else {
+            String path = getDataPath(source);
+            if (path != null && new File(path).renameTo(destination)) {
+                // Scanning the old path drops its row, scanning the new one adds it
+                return new Result(destination, null, listOf(path, destination.getAbsolutePath()), -1);
+            }
+        }
+
+        ContentResolver resolver = context.getContentResolver();
+        long size;
+        try (ParcelFileDescriptor pfd = resolver.openFileDescriptor(source, "r")) {
+            if (pfd == null) {
+                throw new IOException("Cannot open " + source);
+            }
+            try (FileInputStream in = new FileInputStream(pfd.getFileDescriptor())) {
+                size = transfer(in.getChannel(), destination);
+            }
+        }
+        return new Result(destination, source, listOf(destination.getAbsolutePath()), size);
+    }
+
+    /**
+     * Renames the item in place if the destination is on the same volume under shared storage.
+     * Fails for items the app neither owns nor was granted write access to, and for paths MediaStore
+     * doesn't allow; those fall back to a copy.
+     */
+    private boolean updateRelativePath(Uri source, File destination) {
+        File parent = destination.getParentFile();
+        String relativePath = parent != null ? relativePathIn(source, parent) : null;
+        if (relativePath == null) {
+            return false;
+        }
+        ContentValues values = new ContentValues();
+        values.put(MediaStore.MediaColumns.RELATIVE_PATH, relativePath);
+        values.put(MediaStore.MediaColumns.DISPLAY_NAME, destination.getName());
+        try {
+            return context.getContentResolver().update(source, values, null, null) > 0;
+        } catch (RuntimeException e) {
+            Log.d(TAG, "RELATIVE_PATH update refused for " + source + ", copying instead: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * RELATIVE_PATH of {@code dir} if a MediaStore item can be moved there by updating its row: the item is
+     * on the primary volume and {@code dir} is under shared storage. Null otherwise.
+     */
+    @Nullable
+    private static String relativePathIn(Uri source, File dir) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.Q) {
+            return null;
+        }
+        String root = Environment.getExternalStorageDirectory().getAbsolutePath() + "/";
+        String path = dir.getAbsolutePath() + "/";
+        if (!path.startsWith(root) || path.equals(root)) {
+            return null;
+        }
+        try {
+            if (!MediaStore.VOLUME_EXTERNAL_PRIMARY.equals(MediaStore.getVolumeName(source))) {
+                return null;
+            }
+        } catch (IllegalArgumentException e) {
+            return null; // Not a MediaStore item
+        }
+        return path.substring(root.length());
+    }
+
+    private String getDisplayName(Uri source) {
+        String displayName = null;
+        if ("content".equals(source.getScheme())) {
+            String[] projection = {MediaStore.MediaColumns.DISPLAY_NAME};
+            try (Cursor cursor = context.getContentResolver().query(source, projection, null, null, null)) {
+                if (cursor != null && cursor.moveToFirst()) {
+                    displayName = cursor.getString(0);
+                }
+            } catch (RuntimeException e) {
+                // Fallback to path name is handled below
+            }
+        }
+        if (displayName == null && source.getPath() != null) {
+            displayName = new File(source.getPath()).getName();
+        }
+        return displayName != null ? displayName : "file_" + System.currentTimeMillis();
+    }
+
+    /**
+     * {@code name} in {@code dir}, numbered if taken on disk or by an earlier item of the same batch.
+     */
+    private static File uniqueDestination(File dir, String name, Set<String> reservedNames) {
+        String base = name;
+        String ext = "";
+        int dot = name.lastIndexOf('.');
+        if (dot != -1) {
+            base = name.substring(0, dot);
+            ext = name.substring(dot);
+        }
+        File candidate = new File(dir, name);
+        for (int i = 1; candidate.exists() || reservedNames.contains(candidate.getName()); i++) {
+            candidate = new File(dir, base + "(" + i + ")" + ext);
+        }
+        reservedNames.add(candidate.getName());
+        return candidate;
+    }
+
+    @Nullable
+    private String getDataPath(Uri source) {
+        String[] projection = {MediaStore.MediaColumns.DATA};
+        try (Cursor cursor = context.getContentResolver().query(source, projection, null, null, null)) {
+            if (cursor != null && cursor.moveToFirst()) {
+                return cursor.getString(0);
+            }
+        } catch (RuntimeException e) {
+            Log.w(TAG, "Error reading path of " + source + ": " + e.getMessage());
+        }
+        return null;
+    }
+
+    // Zero-copy where the kernel supports it (sendfile); transferTo may move fewer bytes than asked.
+    private static long transfer(FileChannel in, File destination) throws IOException {
+        try (FileOutputStream out = new FileOutputStream(destination);
+             FileChannel channel = out.getChannel()) {
+            long size = in.size();
+            long position = 0;
+            while (position < size) {
+                long transferred = in.transferTo(position, size - position, channel);
+                if (transferred <= 0) {
+                    throw new IOException("Transfer stalled at " + position + " of " + size);
+                }
+                position += transferred;
+            }
+            // On storage before the copy is journaled, so a power loss can't leave a deleted source and a torn copy
+            channel.force(true);
+            return size;
+        }
+    }
+
+    private static List<String> listOf(String... paths) {
+        List<String> list = new ArrayList<>(paths.length);
+        for (String path : paths) {
+            list.add(path);
+        }
+        return list;
+    }
+}
@@ -0,0 +1,159 @@
+package com.bretttech.gallery.utils;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * Runs search-as-you-type filtering off the main thread.
+ * <ul>
+ * <li>Query changes are debounced, so a burst of keystrokes costs one pass.</li>
+ * <li>A newer query or source cancels the pass in flight; a stale pass never posts.</li>
+ * <li>When the new query contains the previous one, only the previous matches are
+ * re-checked, since every matcher in this app is a case-insensitive substring test.</li>
+ * </ul>
+ */
+public class SearchPipeline<T> {
+
+    private static final String TAG = "SearchPipeline";
+    private static final long DEBOUNCE_MS = 250;
+    // How many items are matched between cancellation checks.
+    private static final int CANCEL_CHECK_INTERVAL = 256;
+
+    public interface Matcher<T> {
+        /**
+         * Does the per-query setup (e.g. an index probe) and returns the item test.
+         * Called on the pipeline thread with a non-empty, lower-cased query.
+         */
+        Predicate<T> prepare(String lowerCaseQuery);
+    }
+
+    public interface ResultListener<T> {
+        /**
+         * Called on the pipeline thread. The list may be the source itself or a
+         * cached pass, so listeners copy it before sorting or posting it.
+         */
+        void onResults(List<T> results);
+    }
+
+    private final Matcher<T> matcher;
+    private final ResultListener<T> listener;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Runnable debouncedRun = this::runNow;
+    private final AtomicLong generation = new AtomicLong();
+
+    private volatile List<T> source = Collections.emptyList();
+    private volatile long sourceVersion = 0;
+    private volatile String query = "";
+    private Future<?> inFlight;
+
+    // Only touched on the pipeline thread.
+    private String cachedQuery = null;
+    private long cachedSourceVersion = -1;
+    private List<T> cachedResults = null;
+
+    public SearchPipeline(Matcher<T> matcher, ResultListener<T> listener) {
+        this.matcher = matcher;
+        this.listener = listener;
+    }
+
+    /**
+     * Updates the query; the pass starts once typing pauses.
+     */
+    public void setQuery(String newQuery) {
+        query = newQuery != null ? newQuery.toLowerCase() : "";
+        mainHandler.removeCallbacks(debouncedRun);
+        mainHandler.postDelayed(debouncedRun, DEBOUNCE_MS);
+    }
+
+    /**
+     * Replaces the items being searched and re-runs the current query right away.
+     */
+    public void setSource(List<T> items) {
+        source = items;
+        sourceVersion++;
+        runNow();
+    }
+
+    /**
+     * Re-runs the current query right away, e.g. after a sort change.
+     */
+    public void rerun() {
+        runNow();
+    }
+
+    public void shutdown() {
+        mainHandler.removeCallbacks(debouncedRun);
+        generation.incrementAndGet();
+        executor.shutdownNow();
+    }
+
+    private synchronized void runNow() {
+        mainHandler.removeCallbacks(debouncedRun);
+        long runGeneration = generation.incrementAndGet();
+        if (inFlight != null) {
+            inFlight.cancel(true);
+        }
+        String runQuery = query;
+        List<T> runSource = source;
+        long runSourceVersion = sourceVersion;
+        if (executor.isShutdown()) {
+            return;
+        }
+        inFlight = executor.submit(() -> {
+            try {
+                List<T> results = search(runQuery, runSource, runSourceVersion, runGeneration);
+                if (generation.get() == runGeneration) {
+                    listener.onResults(results);
+                }
+            } catch (CancellationException ignored) {
+                // Superseded by a newer query or source.
+            } catch (Exception e) {
+                Log.e(TAG, "Search failed for query: " + runQuery, e);
+            }
+        });
+    }
+
+    private List<T> search(String runQuery, List<T> runSource, long runSourceVersion, long runGeneration) {
+        if (runQuery.isEmpty()) {
+            return runSource;
+        }
+
+        List<T> candidates = runSource;
+        if (cachedResults != null && cachedSourceVersion == runSourceVersion && runQuery.contains(cachedQuery)) {
+            if (runQuery.equals(cachedQuery)) {
+                return cachedResults;
+            }
+            // Narrowing the previous query: anything that matches now matched before.
+            candidates = cachedResults;
+        }
+
+        Predicate<T> predicate = matcher.prepare(runQuery);
+        List<T> results = new ArrayList<>();
+        for (int i = 0; i < candidates.size(); i++) {
+            if (i % CANCEL_CHECK_INTERVAL == 0 && (generation.get() != runGeneration || Thread.interrupted())) {
+                throw new CancellationException();
+            }
+            T item = candidates.get(i);
+            if (predicate.test(item)) {
+                results.add(item);
+            }
+        }
+
+        cachedQuery = runQuery;
+        cachedSourceVersion = runSourceVersion;
+        cachedResults = results;
+        return results;
+    }
+}
@@ -0,0 +1,49 @@
+package com.bretttech.gallery.utils;
+
+/**
+ * How {@link ImageShredder} overwrites a file before deleting it: the fill pattern of each pass.
+ */
+public enum ShredPolicy {
+    SINGLE_RANDOM("Single pass (random)", Pattern.RANDOM),
+    ZERO_FILL("Zero fill", Pattern.ZEROS),
+    DOD_3_PASS("DoD 5220.22-M (3 passes)", Pattern.ZEROS, Pattern.ONES, Pattern.RANDOM),
+    // Keystream of a throwaway AES key: hardware-accelerated, and never repeats within a file.
+    CIPHER_STREAM("Fast (discarded AES key)", Pattern.KEYSTREAM);
+
+    public static final ShredPolicy DEFAULT = SINGLE_RANDOM;
+
+    public enum Pattern {
+        ZEROS,
+        ONES,
+        RANDOM,
+        KEYSTREAM
+    }
+
+    public final String label;
+    private final Pattern[] passes;
+
+    ShredPolicy(String label, Pattern... passes) {
+        this.label = label;
+        this.passes = passes;
+    }
+
+    public int getPassCount() {
+        return passes.length;
+    }
+
+    public Pattern getPass(int index) {
+        return passes[index];
+    }
+
+    /**
+     * The policy saved under {@code name}, or {@link #DEFAULT} if it isn't one.
+     */
+    public static ShredPolicy fromName(String name) {
+        for (ShredPolicy policy : values()) {
+            if (policy.name().equals(name)) {
+                return policy;
+            }
+        }
+        return DEFAULT;
+    }
+}
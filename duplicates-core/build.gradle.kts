@@ -0,0 +1,26 @@
+// Duplicate-detection algorithms with no Android dependencies, so they can be
+// tested and benchmarked on a desktop JVM: ./gradlew :duplicates-core:test
+// and ./gradlew :duplicates-core:jmh
+// Pass -PjmhIncludes=<regex> to run only matching benchmarks.
+plugins {
+    `java-library`
+    `java-test-fixtures` // SyntheticData, shared by the tests and the benchmarks
+    alias(libs.plugins.jmh)
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_17
+    targetCompatibility = JavaVersion.VERSION_17
+}
+
+jmh {
+    jmhVersion.set(libs.versions.jmh)
+    fork.set(1) // Iteration counts are set per benchmark class
+    findProperty("jmhIncludes")?.let { includes.add(it.toString()) }
+    resultFormat.set("JSON") // build/results/jmh/results.json, for comparing runs
+}
+
+dependencies {
+    testImplementation(libs.junit)
+    "jmhImplementation"(testFixtures(project))
+}
@@ -0,0 +1,49 @@
+package com.bretttech.gallery.similarity;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to group a whole library's perceptual hashes, i.e. the similarity pass
+ * after every hash is known. Single-shot, since runs are long: on a desktop
+ * JVM, 1M hashes took about 4 s at threshold 5 and about 170 s at threshold 10,
+ * where the chunks are only 5-6 bits wide and each chunk value is shared by
+ * far more hashes (100k: about 0.14 s and 1.8 s).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+public class HammingGrouperBenchmark {
+
+    @Param({ "10000", "100000", "1000000" })
+    public int count;
+
+    // The default thresholds of AVERAGE and DCT, the narrowest and widest search.
+    @Param({ "5", "10" })
+    public int threshold;
+
+    private long[] hashes;
+
+    @Setup
+    public void setUp() {
+        hashes = SyntheticData.hashes(count, 42);
+    }
+
+    @Benchmark
+    public List<int[]> group() {
+        return HammingGrouper.group(hashes, count, threshold);
+    }
+}
@@ -0,0 +1,51 @@
+package com.bretttech.gallery.similarity;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of hashing one already-sampled picture with each algorithm. Decoding
+ * and scaling happen on the device and are not part of this.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class PerceptualHashBenchmark {
+
+    private static final int SAMPLES = 1024;
+
+    @Param({ "AVERAGE", "DIFFERENCE", "DCT" })
+    public PerceptualHash algorithm;
+
+    private int[][] samples;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        samples = new int[SAMPLES][];
+        for (int i = 0; i < SAMPLES; i++) {
+            samples[i] = SyntheticData.pixels(algorithm.sampleWidth, algorithm.sampleHeight, random);
+        }
+    }
+
+    @Benchmark
+    public long hash() {
+        int[] pixels = samples[next];
+        next = (next + 1) % SAMPLES;
+        return algorithm.hash(pixels);
+    }
+}
@@ -0,0 +1,43 @@
+package com.bretttech.gallery.similarity;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to group a library's video signatures. Clips are compared pairwise
+ * within a duration window, so this grows roughly quadratically with the
+ * number of videos.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+public class VideoSignatureBenchmark {
+
+    @Param({ "1000", "10000" })
+    public int count;
+
+    private VideoSignature[] signatures;
+
+    @Setup
+    public void setUp() {
+        signatures = SyntheticData.videoSignatures(count, 42);
+    }
+
+    @Benchmark
+    public List<int[]> group() {
+        return VideoSignature.group(signatures, count, PerceptualHash.AVERAGE.defaultThreshold);
+    }
+}
@@ -0,0 +1,106 @@
+package com.bretttech.gallery.similarity;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Groups 64-bit perceptual hashes that lie within a Hamming distance of each
+ * other, without comparing every pair.
+ * <ul>
+ * <li>Multi-index search: the hash is cut into threshold + 1 chunks. Two hashes
+ * at most threshold bits apart must agree exactly on at least one chunk
+ * (pigeonhole), so only hashes sharing a chunk value are compared.</li>
+ * <li>Identical hashes are merged up front, so a bucket of same-looking images
+ * is one entry rather than a quadratic pile of comparisons.</li>
+ * <li>Matches are joined with union-find, so groups are transitive and do not
+ * depend on the order the hashes came in.</li>
+ * </ul>
+ */
+public final class HammingGrouper {
+
+    private HammingGrouper() {
+    }
+
+    /**
+     * Groups {@code hashes[0..count)} whose Hamming distance is at most
+     * {@code threshold}, transitively. Returns the groups with two or more
+     * members as ascending index arrays, ordered by their first index.
+     */
+    public static List<int[]> group(long[] hashes, int count, int threshold) {
+        if (count < 2) {
+            return new ArrayList<>();
+        }
+
+        // Merge identical hashes; only the distinct values go through the index.
+        long[] distinct = Arrays.copyOf(hashes, count);
+        Arrays.sort(distinct);
+        int distinctCount = 0;
+        for (int i = 0; i < count; i++) {
+            if (distinctCount == 0 || distinct[distinctCount - 1] != distinct[i]) {
+                distinct[distinctCount++] = distinct[i];
+            }
+        }
+        // The lowest index with each value stands for it.
+        UnionFind sets = new UnionFind(count);
+        int[] representative = new int[distinctCount];
+        Arrays.fill(representative, -1);
+        for (int index = 0; index < count; index++) {
+            int slot = Arrays.binarySearch(distinct, 0, distinctCount, hashes[index]);
+            if (representative[slot] < 0) {
+                representative[slot] = index;
+            } else {
+                sets.union(representative[slot], index);
+            }
+        }
+
+        if (threshold > 0 && distinctCount > 1) {
+            int chunks = Math.min(threshold + 1, Long.SIZE);
+            int shift = 0;
+            for (int chunk = 0; chunk < chunks; chunk++) {
+                // Spread the 64 bits as evenly as possible over the chunks.
+                int width = (Long.SIZE - shift) / (chunks - chunk);
+                joinWithinChunk(distinct, representative, distinctCount, shift, width, threshold, sets);
+                shift += width;
+            }
+        }
+
+        return sets.groups();
+    }
+
+    /**
+     * Hamming distance between two 64-bit hashes.
+     */
+    public static int distance(long hash1, long hash2) {
+        return Long.bitCount(hash1 ^ hash2);
+    }
+
+    // Sorts the distinct hashes by one chunk and compares each run that shares its value.
+    private static void joinWithinChunk(long[] distinct, int[] representative, int distinctCount,
+            int shift, int width, int threshold, UnionFind sets) {
+        long mask = (1L << width) - 1; // At least two chunks, so width <= 32
+        long[] keyed = new long[distinctCount];
+        for (int i = 0; i < distinctCount; i++) {
+            // Chunk value in the high bits, position in the low 32, so one sort groups the runs.
+            keyed[i] = (((distinct[i] >>> shift) & mask) << 32) | i;
+        }
+        Arrays.sort(keyed);
+
+        int runStart = 0;
+        for (int i = 1; i <= distinctCount; i++) {
+            if (i < distinctCount && (keyed[i] >>> 32) == (keyed[runStart] >>> 32)) {
+                continue;
+            }
+            for (int a = runStart; a < i; a++) {
+                int first = (int) keyed[a];
+                for (int b = a + 1; b < i; b++) {
+                    int second = (int) keyed[b];
+                    if (distance(distinct[first], distinct[second]) <= threshold) {
+                        sets.union(representative[first], representative[second]);
+                    }
+                }
+            }
+            runStart = i;
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.bretttech.gallery.similarity;
+
+import java.util.Arrays;
+
+/**
+ * The perceptual hashes DuplicateFinder can group similar images by. Each one
+ * turns a small ARGB sample of the image (as filled by one Bitmap.getPixels
+ * call) into 64 bits, which are compared by Hamming distance.
+ * <ul>
+ * <li>{@link #AVERAGE}: brightness above or below the mean. Cheapest, but
+ * easily thrown off by exposure and contrast changes.</li>
+ * <li>{@link #DIFFERENCE}: brightness gradient between neighbouring pixels.
+ * About as cheap, and steadier under exposure changes.</li>
+ * <li>{@link #DCT}: signs of the low-frequency DCT coefficients against their
+ * median. The most robust to recompression and small edits, and the most
+ * expensive to compute.</li>
+ * </ul>
+ */
+public enum PerceptualHash {
+
+    AVERAGE(1, "average_hash", "aHash", 8, 8, 5) {
+        @Override
+        public long hash(int[] pixels) {
+            int[] gray = toGray(pixels);
+            long sum = 0;
+            for (int value : gray) {
+                sum += value;
+            }
+            long hash = 0;
+            for (int value : gray) {
+                hash = (hash << 1) | (value * (long) gray.length > sum ? 1 : 0);
+            }
+            return hash;
+        }
+    },
+
+    DIFFERENCE(2, "difference_hash", "dHash", 9, 8, 8) {
+        @Override
+        public long hash(int[] pixels) {
+            int[] gray = toGray(pixels);
+            long hash = 0;
+            for (int y = 0; y < 8; y++) {
+                for (int x = 0; x < 8; x++) {
+                    int left = gray[y * 9 + x];
+                    hash = (hash << 1) | (left < gray[y * 9 + x + 1] ? 1 : 0);
+                }
+            }
+            return hash;
+        }
+    },
+
+    DCT(3, "dct_hash", "pHash", 32, 32, 10) {
+        @Override
+        public long hash(int[] pixels) {
+            int[] gray = toGray(pixels);
+            double[] coefficients = lowFrequencyDct(gray);
+            // Median of the 63 AC coefficients; the DC term only carries overall brightness.
+            double[] sorted = new double[63];
+            System.arraycopy(coefficients, 1, sorted, 0, 63);
+            Arrays.sort(sorted);
+            double median = sorted[31];
+            long hash = 0;
+            for (double coefficient : coefficients) {
+                hash = (hash << 1) | (coefficient > median ? 1 : 0);
+            }
+            return hash;
+        }
+    };
+
+    public static final PerceptualHash DEFAULT = AVERAGE;
+
+    // DCT-II basis for a 32-sample row, only the 8 lowest frequencies: DCT_BASIS[u][x].
+    private static final double[][] DCT_BASIS = new double[8][32];
+
+    static {
+        for (int u = 0; u < 8; u++) {
+            for (int x = 0; x < 32; x++) {
+                DCT_BASIS[u][x] = Math.cos((2 * x + 1) * u * Math.PI / 64);
+            }
+        }
+    }
+
+    /** Value of DuplicateFinder.DuplicateGroup.matchType for groups found with this hash. */
+    public final int matchType;
+    /** MediaHashStore kind the hash is cached under. */
+    public final String cacheKind;
+    /** Short name for display. */
+    public final String label;
+    public final int sampleWidth;
+    public final int sampleHeight;
+    /** Largest Hamming distance still treated as the same picture. */
+    public final int defaultThreshold;
+
+    PerceptualHash(int matchType, String cacheKind, String label, int sampleWidth, int sampleHeight,
+            int defaultThreshold) {
+        this.matchType = matchType;
+        this.cacheKind = cacheKind;
+        this.label = label;
+        this.sampleWidth = sampleWidth;
+        this.sampleHeight = sampleHeight;
+        this.defaultThreshold = defaultThreshold;
+    }
+
+    /**
+     * Hashes {@code sampleWidth x sampleHeight} ARGB pixels in row-major order.
+     */
+    public abstract long hash(int[] pixels);
+
+    /**
+     * The hash whose groups carry {@code matchType}, or null for exact matches.
+     */
+    public static PerceptualHash forMatchType(int matchType) {
+        for (PerceptualHash hash : values()) {
+            if (hash.matchType == matchType) {
+                return hash;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The hash saved under {@code name}, or {@link #DEFAULT} if it isn't one.
+     */
+    public static PerceptualHash fromName(String name) {
+        for (PerceptualHash hash : values()) {
+            if (hash.name().equals(name)) {
+                return hash;
+            }
+        }
+        return DEFAULT;
+    }
+
+    // Luma in 0..255 per pixel (ITU-R BT.601 weights, integer math).
+    private static int[] toGray(int[] pixels) {
+        int[] gray = new int[pixels.length];
+        for (int i = 0; i < pixels.length; i++) {
+            int pixel = pixels[i];
+            gray[i] = (((pixel >> 16) & 0xFF) * 299 + ((pixel >> 8) & 0xFF) * 587 + (pixel & 0xFF) * 114) / 1000;
+        }
+        return gray;
+    }
+
+    // The top-left 8x8 block of the 32x32 DCT-II, row-major. Separable: rows first, then columns.
+    private static double[] lowFrequencyDct(int[] gray) {
+        double[] rows = new double[32 * 8]; // rows[y * 8 + u]
+        for (int y = 0; y < 32; y++) {
+            for (int u = 0; u < 8; u++) {
+                double sum = 0;
+                for (int x = 0; x < 32; x++) {
+                    sum += gray[y * 32 + x] * DCT_BASIS[u][x];
+                }
+                rows[y * 8 + u] = sum;
+            }
+        }
+        double[] block = new double[64]; // block[v * 8 + u]
+        for (int v = 0; v < 8; v++) {
+            for (int u = 0; u < 8; u++) {
+                double sum = 0;
+                for (int y = 0; y < 32; y++) {
+                    sum += rows[y * 8 + u] * DCT_BASIS[v][y];
+                }
+                block[v * 8 + u] = sum;
+            }
+        }
+        return block;
+    }
+}
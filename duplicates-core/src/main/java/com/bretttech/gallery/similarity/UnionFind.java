@@ -0,0 +1,72 @@
+package com.bretttech.gallery.similarity;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Disjoint sets over 0..n-1 with path halving and union by size.
+ */
+final class UnionFind {
+    private final int[] parent;
+    private final int[] size;
+
+    UnionFind(int n) {
+        parent = new int[n];
+        size = new int[n];
+        for (int i = 0; i < n; i++) {
+            parent[i] = i;
+            size[i] = 1;
+        }
+    }
+
+    int find(int x) {
+        while (parent[x] != x) {
+            parent[x] = parent[parent[x]];
+            x = parent[x];
+        }
+        return x;
+    }
+
+    void union(int a, int b) {
+        int rootA = find(a);
+        int rootB = find(b);
+        if (rootA == rootB) {
+            return;
+        }
+        if (size[rootA] < size[rootB]) {
+            int swap = rootA;
+            rootA = rootB;
+            rootB = swap;
+        }
+        parent[rootB] = rootA;
+        size[rootA] += size[rootB];
+    }
+
+    /**
+     * The sets with two or more members as ascending index arrays, ordered by
+     * their first index.
+     */
+    List<int[]> groups() {
+        int count = parent.length;
+        int[] sizes = new int[count];
+        for (int i = 0; i < count; i++) {
+            sizes[find(i)]++;
+        }
+        int[][] members = new int[count][];
+        int[] filled = new int[count];
+        List<int[]> groups = new ArrayList<>();
+        // Indices ascend, so each group is created at its first member and filled in order.
+        for (int i = 0; i < count; i++) {
+            int root = find(i);
+            if (sizes[root] < 2) {
+                continue;
+            }
+            if (members[root] == null) {
+                members[root] = new int[sizes[root]];
+                groups.add(members[root]);
+            }
+            members[root][filled[root]++] = i;
+        }
+        return groups;
+    }
+}
@@ -0,0 +1,163 @@
+package com.bretttech.gallery.similarity;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compact fingerprint of a video: its duration and the perceptual hashes of
+ * frames at fixed offsets from its start and from its end. Two clips match when
+ * their durations are close and the frames at the same offsets from one end
+ * look alike. A copy trimmed at one end keeps the offsets from the other end
+ * aligned, so re-encoded, resized and one-end-trimmed copies are found without
+ * reading either file in full; a copy trimmed at both ends is not.
+ *
+ * File size is not part of the signature: re-encoding and resizing change it
+ * by any factor, so it can't rule a match out. Duration is the coarse filter.
+ */
+public final class VideoSignature {
+
+    // Offsets of the sampled frames from each end. The later ones reach past a shared intro or outro.
+    private static final long[] ANCHOR_OFFSETS_MS = { 500, 2_000, 8_000, 30_000, 90_000 };
+    // Durations may differ by this fraction of the longer clip (a trim of up to a fifth).
+    private static final double MAX_DURATION_DIFFERENCE = 0.2;
+    // Aligned frames that may fail to match, e.g. across a fade or a re-timed cut.
+    private static final int MAX_MISSED_FRAMES = 1;
+
+    private final long durationMs;
+    private final long[] headHashes; // Frames at ANCHOR_OFFSETS_MS from the start
+    private final long[] tailHashes; // Frames at ANCHOR_OFFSETS_MS before the end
+
+    public VideoSignature(long durationMs, long[] headHashes, long[] tailHashes) {
+        this.durationMs = durationMs;
+        this.headHashes = headHashes;
+        this.tailHashes = tailHashes;
+    }
+
+    public long getDurationMs() {
+        return durationMs;
+    }
+
+    public long[] getHeadHashes() {
+        return headHashes.clone();
+    }
+
+    public long[] getTailHashes() {
+        return tailHashes.clone();
+    }
+
+    /**
+     * Frames sampled from each end of a clip this long: one per offset that
+     * falls inside it.
+     */
+    public static int framesPerEnd(long durationMs) {
+        int count = 0;
+        while (count < ANCHOR_OFFSETS_MS.length && ANCHOR_OFFSETS_MS[count] < durationMs) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Time of the i-th frame sampled from the start.
+     */
+    public static long headTimeMs(int index) {
+        return ANCHOR_OFFSETS_MS[index];
+    }
+
+    /**
+     * Time of the i-th frame sampled from the end.
+     */
+    public static long tailTimeMs(long durationMs, int index) {
+        return durationMs - ANCHOR_OFFSETS_MS[index];
+    }
+
+    /**
+     * Whether the two clips look like copies of each other, comparing frames
+     * with the given Hamming threshold.
+     */
+    public boolean isSimilarTo(VideoSignature other, int threshold) {
+        long longer = Math.max(durationMs, other.durationMs);
+        if (Math.abs(durationMs - other.durationMs) > longer * MAX_DURATION_DIFFERENCE) {
+            return false;
+        }
+        return alignedMatch(headHashes, other.headHashes, threshold)
+                || alignedMatch(tailHashes, other.tailHashes, threshold);
+    }
+
+    // Whether the frames both clips have at the same offsets match: all but MAX_MISSED_FRAMES of them, and
+    // at least two unless only one is compared. A shorter clip has fewer offsets; only the common ones count.
+    private static boolean alignedMatch(long[] frames, long[] otherFrames, int threshold) {
+        int compared = Math.min(frames.length, otherFrames.length);
+        if (compared == 0) {
+            return false;
+        }
+        int matching = 0;
+        for (int i = 0; i < compared; i++) {
+            if (HammingGrouper.distance(frames[i], otherFrames[i]) <= threshold) {
+                matching++;
+            }
+        }
+        return matching >= Math.max(compared - MAX_MISSED_FRAMES, Math.min(compared, 2));
+    }
+
+    /**
+     * Groups {@code signatures[0..count)} that are similar, transitively.
+     * Clips are compared only with those of a compatible duration. Returns the
+     * groups with two or more members as ascending index arrays.
+     */
+    public static List<int[]> group(VideoSignature[] signatures, int count, int threshold) {
+        if (count < 2) {
+            return new ArrayList<>();
+        }
+        Integer[] byDuration = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            byDuration[i] = i;
+        }
+        Arrays.sort(byDuration, (a, b) -> Long.compare(signatures[a].durationMs, signatures[b].durationMs));
+
+        UnionFind sets = new UnionFind(count);
+        for (int i = 0; i < count; i++) {
+            VideoSignature shorter = signatures[byDuration[i]];
+            long maxDuration = (long) (shorter.durationMs / (1 - MAX_DURATION_DIFFERENCE));
+            for (int j = i + 1; j < count && signatures[byDuration[j]].durationMs <= maxDuration; j++) {
+                if (shorter.isSimilarTo(signatures[byDuration[j]], threshold)) {
+                    sets.union(byDuration[i], byDuration[j]);
+                }
+            }
+        }
+        return sets.groups();
+    }
+
+    /**
+     * Serialized form for the hash cache: the duration, the number of head
+     * frames, then the head and tail frame hashes.
+     */
+    public byte[] toBytes() {
+        ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES * (2 + headHashes.length + tailHashes.length));
+        buffer.putLong(durationMs);
+        buffer.putLong(headHashes.length);
+        for (long frame : headHashes) {
+            buffer.putLong(frame);
+        }
+        for (long frame : tailHashes) {
+            buffer.putLong(frame);
+        }
+        return buffer.array();
+    }
+
+    public static VideoSignature fromBytes(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        long durationMs = buffer.getLong();
+        long[] headHashes = new long[(int) buffer.getLong()];
+        for (int i = 0; i < headHashes.length; i++) {
+            headHashes[i] = buffer.getLong();
+        }
+        long[] tailHashes = new long[buffer.remaining() / Long.BYTES];
+        for (int i = 0; i < tailHashes.length; i++) {
+            tailHashes[i] = buffer.getLong();
+        }
+        return new VideoSignature(durationMs, headHashes, tailHashes);
+    }
+}
@@ -0,0 +1,142 @@
+package com.bretttech.gallery.similarity;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HammingGrouperTest {
+
+    private static final int COUNT = 2000;
+
+    @Test
+    public void group_matchesPairwiseReference_forThresholdsUpToTen() {
+        for (int threshold = 0; threshold <= 10; threshold++) {
+            long[] hashes = SyntheticData.hashes(COUNT, threshold);
+            assertGroupsEqual("threshold " + threshold, referenceGroups(hashes, threshold),
+                    HammingGrouper.group(hashes, COUNT, threshold));
+        }
+    }
+
+    @Test
+    public void group_matchesPairwiseReference_atFullWidth() {
+        // More chunks than bits: every hash lands in one group.
+        long[] hashes = SyntheticData.hashes(COUNT, 64);
+        List<int[]> groups = HammingGrouper.group(hashes, COUNT, 64);
+        assertGroupsEqual("threshold 64", referenceGroups(hashes, 64), groups);
+        assertEquals(1, groups.size());
+    }
+
+    @Test
+    public void group_ignoresHashesPastCount() {
+        long[] hashes = { 0L, 1L, 0L, 1L };
+        List<int[]> groups = HammingGrouper.group(hashes, 2, 0);
+        assertTrue(groups.isEmpty());
+    }
+
+    @Test
+    public void group_doesNotDependOnInputOrder() {
+        Random random = new Random(7);
+        for (int threshold : new int[] { 0, 3, 5, 10 }) {
+            long[] hashes = SyntheticData.hashes(COUNT, 100 + threshold);
+            List<Integer> order = new ArrayList<>();
+            for (int i = 0; i < COUNT; i++) {
+                order.add(i);
+            }
+            Collections.shuffle(order, random);
+            long[] shuffled = new long[COUNT];
+            for (int i = 0; i < COUNT; i++) {
+                shuffled[i] = hashes[order.get(i)];
+            }
+
+            // Map the shuffled groups back to original indices and put them in canonical order.
+            List<int[]> mapped = new ArrayList<>();
+            for (int[] group : HammingGrouper.group(shuffled, COUNT, threshold)) {
+                int[] original = new int[group.length];
+                for (int i = 0; i < group.length; i++) {
+                    original[i] = order.get(group[i]);
+                }
+                Arrays.sort(original);
+                mapped.add(original);
+            }
+            mapped.sort((a, b) -> Integer.compare(a[0], b[0]));
+
+            assertGroupsEqual("threshold " + threshold, HammingGrouper.group(hashes, COUNT, threshold), mapped);
+        }
+    }
+
+    @Test
+    public void distance_countsDifferingBits() {
+        assertEquals(0, HammingGrouper.distance(0x1234L, 0x1234L));
+        assertEquals(1, HammingGrouper.distance(0L, Long.MIN_VALUE));
+        assertEquals(64, HammingGrouper.distance(0L, -1L));
+    }
+
+    @Test
+    public void unionFind_groupsAscendingByFirstMember() {
+        UnionFind sets = new UnionFind(6);
+        sets.union(4, 1);
+        sets.union(5, 0);
+        sets.union(1, 2);
+        List<int[]> groups = sets.groups();
+        assertEquals(2, groups.size());
+        assertEquals("[0, 5]", Arrays.toString(groups.get(0)));
+        assertEquals("[1, 2, 4]", Arrays.toString(groups.get(1)));
+    }
+
+    // Every pair compared directly, joined with a union-find of its own.
+    private static List<int[]> referenceGroups(long[] hashes, int threshold) {
+        int[] parent = new int[hashes.length];
+        for (int i = 0; i < parent.length; i++) {
+            parent[i] = i;
+        }
+        for (int i = 0; i < hashes.length; i++) {
+            for (int j = i + 1; j < hashes.length; j++) {
+                if (Long.bitCount(hashes[i] ^ hashes[j]) <= threshold) {
+                    parent[root(parent, i)] = root(parent, j);
+                }
+            }
+        }
+        List<List<Integer>> members = new ArrayList<>();
+        for (int i = 0; i < hashes.length; i++) {
+            members.add(new ArrayList<>());
+        }
+        for (int i = 0; i < hashes.length; i++) {
+            members.get(root(parent, i)).add(i);
+        }
+        List<int[]> groups = new ArrayList<>();
+        for (List<Integer> group : members) {
+            if (group.size() >= 2) {
+                groups.add(group.stream().mapToInt(Integer::intValue).toArray());
+            }
+        }
+        groups.sort((a, b) -> Integer.compare(a[0], b[0]));
+        return groups;
+    }
+
+    private static int root(int[] parent, int x) {
+        while (parent[x] != x) {
+            parent[x] = parent[parent[x]];
+            x = parent[x];
+        }
+        return x;
+    }
+
+    private static void assertGroupsEqual(String message, List<int[]> expected, List<int[]> actual) {
+        assertEquals(message, toString(expected), toString(actual));
+    }
+
+    private static String toString(List<int[]> groups) {
+        StringBuilder text = new StringBuilder();
+        for (int[] group : groups) {
+            text.append(Arrays.toString(group)).append('\n');
+        }
+        return text.toString();
+    }
+}
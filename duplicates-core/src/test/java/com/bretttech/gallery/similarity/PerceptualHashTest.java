@@ -0,0 +1,81 @@
+package com.bretttech.gallery.similarity;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PerceptualHashTest {
+
+    private static final int SCENES = 50;
+
+    @Test
+    public void hash_isDeterministic() {
+        for (PerceptualHash algorithm : PerceptualHash.values()) {
+            int[] pixels = SyntheticData.pixels(algorithm.sampleWidth, algorithm.sampleHeight, new Random(1));
+            assertEquals(algorithm.label, algorithm.hash(pixels), algorithm.hash(pixels.clone()));
+        }
+    }
+
+    @Test
+    public void hash_keepsBrighterCopyWithinThreshold() {
+        for (PerceptualHash algorithm : PerceptualHash.values()) {
+            Random random = new Random(2);
+            for (int scene = 0; scene < SCENES; scene++) {
+                int[] pixels = SyntheticData.pixels(algorithm.sampleWidth, algorithm.sampleHeight, random);
+                long original = algorithm.hash(pixels);
+                long brighter = algorithm.hash(brighten(pixels, 20));
+                assertTrue(algorithm.label + " scene " + scene,
+                        HammingGrouper.distance(original, brighter) <= algorithm.defaultThreshold);
+            }
+        }
+    }
+
+    @Test
+    public void hash_separatesUnrelatedScenes() {
+        for (PerceptualHash algorithm : PerceptualHash.values()) {
+            Random random = new Random(3);
+            int close = 0;
+            for (int scene = 0; scene < SCENES; scene++) {
+                long first = algorithm.hash(SyntheticData.pixels(algorithm.sampleWidth, algorithm.sampleHeight, random));
+                long second = algorithm.hash(SyntheticData.pixels(algorithm.sampleWidth, algorithm.sampleHeight, random));
+                if (HammingGrouper.distance(first, second) <= algorithm.defaultThreshold) {
+                    close++;
+                }
+            }
+            // Random scenes can share a layout now and then, but not often.
+            assertTrue(algorithm.label + ": " + close + " close pairs", close <= SCENES / 10);
+        }
+    }
+
+    @Test
+    public void fromName_fallsBackToDefault() {
+        for (PerceptualHash algorithm : PerceptualHash.values()) {
+            assertEquals(algorithm, PerceptualHash.fromName(algorithm.name()));
+        }
+        assertEquals(PerceptualHash.DEFAULT, PerceptualHash.fromName(null));
+        assertEquals(PerceptualHash.DEFAULT, PerceptualHash.fromName("unknown"));
+    }
+
+    @Test
+    public void forMatchType_roundTrips() {
+        for (PerceptualHash algorithm : PerceptualHash.values()) {
+            assertEquals(algorithm, PerceptualHash.forMatchType(algorithm.matchType));
+        }
+        assertNull(PerceptualHash.forMatchType(0));
+    }
+
+    private static int[] brighten(int[] pixels, int amount) {
+        int[] brighter = new int[pixels.length];
+        for (int i = 0; i < pixels.length; i++) {
+            int red = Math.min(255, ((pixels[i] >> 16) & 0xFF) + amount);
+            int green = Math.min(255, ((pixels[i] >> 8) & 0xFF) + amount);
+            int blue = Math.min(255, (pixels[i] & 0xFF) + amount);
+            brighter[i] = 0xFF000000 | red << 16 | green << 8 | blue;
+        }
+        return brighter;
+    }
+}
@@ -0,0 +1,138 @@
+package com.bretttech.gallery.similarity;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class VideoSignatureTest {
+
+    private static final int THRESHOLD = PerceptualHash.DEFAULT.defaultThreshold;
+    private static final long DURATION_MS = 5 * 60 * 1000;
+
+    private final Random random = new Random(11);
+
+    @Test
+    public void isSimilarTo_matchesReencodedCopy() {
+        VideoSignature original = randomClip(DURATION_MS);
+        VideoSignature copy = new VideoSignature(DURATION_MS, nudge(original.getHeadHashes()),
+                nudge(original.getTailHashes()));
+        assertTrue(original.isSimilarTo(copy, THRESHOLD));
+        assertTrue(copy.isSimilarTo(original, THRESHOLD));
+    }
+
+    @Test
+    public void isSimilarTo_matchesCopyTrimmedAtEnd() {
+        VideoSignature original = randomClip(DURATION_MS);
+        long trimmedMs = DURATION_MS - 30_000;
+        // The start lines up; the frames near the new end are unrelated to the old ones.
+        VideoSignature trimmed = new VideoSignature(trimmedMs, nudge(original.getHeadHashes()),
+                randomHashes(VideoSignature.framesPerEnd(trimmedMs)));
+        assertTrue(original.isSimilarTo(trimmed, THRESHOLD));
+    }
+
+    @Test
+    public void isSimilarTo_matchesCopyTrimmedAtStart() {
+        VideoSignature original = randomClip(DURATION_MS);
+        long trimmedMs = DURATION_MS - 30_000;
+        VideoSignature trimmed = new VideoSignature(trimmedMs,
+                randomHashes(VideoSignature.framesPerEnd(trimmedMs)), nudge(original.getTailHashes()));
+        assertTrue(original.isSimilarTo(trimmed, THRESHOLD));
+    }
+
+    @Test
+    public void isSimilarTo_toleratesOneMissedFrame() {
+        VideoSignature original = randomClip(DURATION_MS);
+        long[] head = original.getHeadHashes();
+        head[2] = ~head[2];
+        VideoSignature copy = new VideoSignature(DURATION_MS, head, randomHashes(head.length));
+        assertTrue(original.isSimilarTo(copy, THRESHOLD));
+
+        head[3] = ~head[3];
+        assertFalse(original.isSimilarTo(new VideoSignature(DURATION_MS, head, randomHashes(head.length)),
+                THRESHOLD));
+    }
+
+    @Test
+    public void isSimilarTo_rejectsUnrelatedClip() {
+        assertFalse(randomClip(DURATION_MS).isSimilarTo(randomClip(DURATION_MS), THRESHOLD));
+    }
+
+    @Test
+    public void isSimilarTo_rejectsDistantDuration() {
+        VideoSignature original = randomClip(DURATION_MS);
+        long longerMs = DURATION_MS * 2;
+        VideoSignature longer = new VideoSignature(longerMs, original.getHeadHashes(), original.getTailHashes());
+        assertFalse(original.isSimilarTo(longer, THRESHOLD));
+    }
+
+    @Test
+    public void framesPerEnd_countsOffsetsInsideClip() {
+        assertEquals(0, VideoSignature.framesPerEnd(400));
+        assertEquals(1, VideoSignature.framesPerEnd(1_000));
+        assertEquals(5, VideoSignature.framesPerEnd(DURATION_MS));
+        for (int i = 0; i < VideoSignature.framesPerEnd(DURATION_MS); i++) {
+            assertEquals(DURATION_MS - VideoSignature.headTimeMs(i), VideoSignature.tailTimeMs(DURATION_MS, i));
+        }
+    }
+
+    @Test
+    public void bytes_roundTrip() {
+        VideoSignature original = new VideoSignature(DURATION_MS, randomHashes(5), randomHashes(4));
+        VideoSignature restored = VideoSignature.fromBytes(original.toBytes());
+        assertEquals(original.getDurationMs(), restored.getDurationMs());
+        assertArrayEquals(original.getHeadHashes(), restored.getHeadHashes());
+        assertArrayEquals(original.getTailHashes(), restored.getTailHashes());
+    }
+
+    @Test
+    public void group_matchesPairwiseReference() {
+        int count = 1000;
+        VideoSignature[] signatures = SyntheticData.videoSignatures(count, 5);
+        List<int[]> groups = VideoSignature.group(signatures, count, THRESHOLD);
+        assertFalse(groups.isEmpty());
+
+        UnionFind reference = new UnionFind(count);
+        for (int i = 0; i < count; i++) {
+            for (int j = i + 1; j < count; j++) {
+                if (signatures[i].isSimilarTo(signatures[j], THRESHOLD)) {
+                    reference.union(i, j);
+                }
+            }
+        }
+        List<int[]> expected = reference.groups();
+        assertEquals(expected.size(), groups.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(Arrays.toString(expected.get(i)), Arrays.toString(groups.get(i)));
+        }
+    }
+
+    private VideoSignature randomClip(long durationMs) {
+        int frames = VideoSignature.framesPerEnd(durationMs);
+        return new VideoSignature(durationMs, randomHashes(frames), randomHashes(frames));
+    }
+
+    private long[] randomHashes(int count) {
+        long[] hashes = new long[count];
+        for (int i = 0; i < count; i++) {
+            hashes[i] = random.nextLong();
+        }
+        return hashes;
+    }
+
+    // A re-encoded frame: a couple of bits off.
+    private long[] nudge(long[] hashes) {
+        long[] nudged = hashes.clone();
+        for (int i = 0; i < nudged.length; i++) {
+            nudged[i] ^= 1L << random.nextInt(Long.SIZE);
+            nudged[i] ^= 1L << random.nextInt(Long.SIZE);
+        }
+        return nudged;
+    }
+}
@@ -0,0 +1,91 @@
+package com.bretttech.gallery.similarity;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Reproducible inputs shaped like a photo library: mostly unrelated pictures,
+ * with a share of near-duplicates (bursts, edits, re-saves) of earlier ones.
+ */
+final class SyntheticData {
+
+    // Fraction of items that are a near-duplicate of an earlier one.
+    private static final double NEAR_DUPLICATE_SHARE = 0.25;
+    // Bits flipped in a near-duplicate, at most.
+    private static final int MAX_FLIPPED_BITS = 6;
+
+    private SyntheticData() {
+    }
+
+    static long[] hashes(int count, long seed) {
+        Random random = new Random(seed);
+        long[] hashes = new long[count];
+        for (int i = 0; i < count; i++) {
+            if (i > 0 && random.nextDouble() < NEAR_DUPLICATE_SHARE) {
+                hashes[i] = flipBits(hashes[random.nextInt(i)], random);
+            } else {
+                hashes[i] = random.nextLong();
+            }
+        }
+        return hashes;
+    }
+
+    static VideoSignature[] videoSignatures(int count, long seed) {
+        Random random = new Random(seed);
+        VideoSignature[] signatures = new VideoSignature[count];
+        for (int i = 0; i < count; i++) {
+            if (i > 0 && random.nextDouble() < NEAR_DUPLICATE_SHARE) {
+                // A re-encode: slightly different frames, possibly trimmed at the end.
+                VideoSignature original = signatures[random.nextInt(i)];
+                long durationMs = (long) (original.getDurationMs() * (0.85 + random.nextDouble() * 0.15));
+                int frames = VideoSignature.framesPerEnd(durationMs);
+                long[] head = Arrays.copyOf(original.getHeadHashes(), frames);
+                for (int f = 0; f < frames; f++) {
+                    head[f] = flipBits(head[f], random);
+                }
+                signatures[i] = new VideoSignature(durationMs, head, randomHashes(frames, random));
+            } else {
+                long durationMs = 1000 + random.nextInt(10 * 60 * 1000);
+                int frames = VideoSignature.framesPerEnd(durationMs);
+                signatures[i] = new VideoSignature(durationMs, randomHashes(frames, random),
+                        randomHashes(frames, random));
+            }
+        }
+        return signatures;
+    }
+
+    private static long[] randomHashes(int count, Random random) {
+        long[] hashes = new long[count];
+        for (int i = 0; i < count; i++) {
+            hashes[i] = random.nextLong();
+        }
+        return hashes;
+    }
+
+    /**
+     * ARGB pixels of a smooth random scene with a little noise, the kind of
+     * sample a downscaled photo gives.
+     */
+    static int[] pixels(int width, int height, Random random) {
+        double fx = 0.1 + random.nextDouble();
+        double fy = 0.1 + random.nextDouble();
+        double phase = random.nextDouble() * Math.PI;
+        int[] pixels = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                double wave = Math.sin(x * fx + phase) * Math.cos(y * fy);
+                int value = Math.max(0, Math.min(255, (int) (128 + 100 * wave) + random.nextInt(9) - 4));
+                pixels[y * width + x] = 0xFF000000 | value << 16 | (255 - value) << 8 | (value / 2);
+            }
+        }
+        return pixels;
+    }
+
+    private static long flipBits(long hash, Random random) {
+        int flips = random.nextInt(MAX_FLIPPED_BITS + 1);
+        for (int i = 0; i < flips; i++) {
+            hash ^= 1L << random.nextInt(Long.SIZE);
+        }
+        return hash;
+    }
+}
@@ -22,3 +22,4 @@ dependencyResolutionManagement {
 
 rootProject.name = "Gallery"
 include(":app")
+include(":duplicates-core")